@@ -22,30 +22,62 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import io.appform.dropwizard.sharding.admin.BlacklistShardTask;
+import io.appform.dropwizard.sharding.admin.HotKeysTask;
 import io.appform.dropwizard.sharding.admin.UnblacklistShardTask;
 import io.appform.dropwizard.sharding.caching.LookupCache;
 import io.appform.dropwizard.sharding.caching.RelationalCache;
+import io.appform.dropwizard.sharding.config.BlacklistConfig;
+import io.appform.dropwizard.sharding.config.BulkheadConfig;
+import io.appform.dropwizard.sharding.config.HotKeyConfig;
+import io.appform.dropwizard.sharding.config.KeyLockConfig;
+import io.appform.dropwizard.sharding.config.ReadReplicaConfig;
+import io.appform.dropwizard.sharding.config.ReplicaConsistency;
+import io.appform.dropwizard.sharding.config.ReplicaSelection;
+import io.appform.dropwizard.sharding.config.ScatterGatherConfig;
+import io.appform.dropwizard.sharding.config.ShardExecutorType;
 import io.appform.dropwizard.sharding.config.ShardedHibernateFactory;
+import io.appform.dropwizard.sharding.config.SlowOperationLogConfig;
+import io.appform.dropwizard.sharding.dao.AsyncLookupDao;
+import io.appform.dropwizard.sharding.dao.AsyncRelationalDao;
+import io.appform.dropwizard.sharding.dao.AsyncWrapperDao;
 import io.appform.dropwizard.sharding.dao.CacheableLookupDao;
 import io.appform.dropwizard.sharding.dao.CacheableRelationalDao;
 import io.appform.dropwizard.sharding.dao.LookupDao;
 import io.appform.dropwizard.sharding.dao.RelationalDao;
 import io.appform.dropwizard.sharding.dao.WrapperDao;
 import io.appform.dropwizard.sharding.healthcheck.HealthCheckManager;
+import io.appform.dropwizard.sharding.jfr.FlightRecorderEvents;
+import io.appform.dropwizard.sharding.replicas.ReplicaSelector;
+import io.appform.dropwizard.sharding.replicas.ReplicatedDataSourceFactory;
+import io.appform.dropwizard.sharding.replicas.UnitOfWorkFilter;
 import io.appform.dropwizard.sharding.sharding.BucketIdExtractor;
 import io.appform.dropwizard.sharding.sharding.InMemoryLocalShardBlacklistingStore;
 import io.appform.dropwizard.sharding.sharding.ShardBlacklistingStore;
 import io.appform.dropwizard.sharding.sharding.ShardManager;
 import io.appform.dropwizard.sharding.sharding.impl.ConsistentHashBucketIdExtractor;
+import io.appform.dropwizard.sharding.utils.DaoMetrics;
+import io.appform.dropwizard.sharding.utils.HotKeys;
+import io.appform.dropwizard.sharding.utils.KeyLocks;
+import io.appform.dropwizard.sharding.utils.ScatterGatherExecutor;
+import io.appform.dropwizard.sharding.utils.ShardBulkhead;
+import io.appform.dropwizard.sharding.utils.ShardCircuitBreaker;
 import io.appform.dropwizard.sharding.utils.ShardCalculator;
+import io.appform.dropwizard.sharding.utils.ShardExecutorProvider;
+import io.appform.dropwizard.sharding.utils.ShardExecutors;
+import io.appform.dropwizard.sharding.utils.ShardScope;
+import io.appform.dropwizard.sharding.utils.SlowOperationLog;
+import io.appform.dropwizard.sharding.utils.TransactionListener;
+import io.appform.dropwizard.sharding.utils.TransactionListeners;
 import io.dropwizard.Configuration;
 import io.dropwizard.ConfiguredBundle;
 import io.dropwizard.db.PooledDataSourceFactory;
 import io.dropwizard.hibernate.AbstractDAO;
 import io.dropwizard.hibernate.HibernateBundle;
 import io.dropwizard.hibernate.SessionFactoryFactory;
+import io.dropwizard.lifecycle.ExecutorServiceManager;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
@@ -58,6 +90,8 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -80,6 +114,16 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
     private String dbNamespace;
     @Getter
     private int numShards;
+    @Getter
+    private ScatterGatherExecutor scatterGatherExecutor = ScatterGatherExecutor.serial();
+    @Getter
+    private ShardExecutors shardExecutors;
+    @Getter
+    private KeyLocks keyLocks = KeyLocks.disabled();
+    @Getter
+    private HotKeys hotKeys = HotKeys.disabled();
+    private final List<TransactionListener> transactionListeners = Lists.newArrayList();
+    private ShardExecutorProvider shardExecutorProvider;
 
     private ShardInfoProvider shardInfoProvider;
 
@@ -119,6 +163,7 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
         this.numShards = Integer.parseInt(numShardsEnv);
         val blacklistingStore = getBlacklistingStore();
         this.shardManager = createShardManager(numShards, blacklistingStore);
+        this.shardManager.initBlacklist();
         this.shardInfoProvider = new ShardInfoProvider(dbNamespace);
         this.healthCheckManager = new HealthCheckManager(dbNamespace, shardInfoProvider, blacklistingStore, shardManager);
         IntStream.range(0, numShards).forEach(
@@ -130,7 +175,7 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
 
                     @Override
                     public PooledDataSourceFactory getDataSourceFactory(T t) {
-                        return getConfig(t).getShards().get(shard);
+                        return shardDataSourceFactory(getConfig(t), shard);
                     }
                 })
         );
@@ -143,9 +188,31 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
             throw new RuntimeException("Shard count provided through environment does not match the size of the shard configuration list");
         }
         sessionFactories = shardBundles.stream().map(HibernateBundle::getSessionFactory).collect(Collectors.toList());
+        val slowOperationLog = createSlowOperationLog(getConfig(configuration).getSlowOperations());
+        sessionFactories.forEach(sessionFactory -> DaoMetrics.register(sessionFactory,
+                                                                       environment.metrics(),
+                                                                       dbNamespace,
+                                                                       slowOperationLog));
+        val blacklistConfig = getConfig(configuration).getBlacklist();
+        if (null != blacklistConfig && null != blacklistConfig.getRefreshInterval()) {
+            shardManager.setBlacklistRefreshInterval(blacklistConfig.getRefreshInterval().getQuantity(),
+                                                     blacklistConfig.getRefreshInterval().getUnit());
+        }
+        shardExecutorProvider = getShardExecutorProvider(getConfig(configuration));
+        scatterGatherExecutor = createScatterGatherExecutor(getConfig(configuration).getScatterGather(), environment);
+        shardExecutors = createShardExecutors(getConfig(configuration), environment);
+        keyLocks = createKeyLocks(getConfig(configuration).getKeyLocks(), environment);
+        hotKeys = createHotKeys(getConfig(configuration).getHotKeys(), environment);
+        registerBulkheads(getConfig(configuration), environment);
+        registerCircuitBreakers(blacklistConfig);
+        registerTransactionListeners();
+        registerUnitOfWorkFilter(getConfig(configuration).getReadReplicas(), environment);
         environment.admin().addTask(new BlacklistShardTask(shardManager));
         environment.admin().addTask(new UnblacklistShardTask(shardManager));
-        healthCheckManager.manageHealthChecks(getConfig(configuration).getBlacklist(), environment);
+        if (hotKeys.isEnabled()) {
+            environment.admin().addTask(new HotKeysTask(hotKeys));
+        }
+        healthCheckManager.manageHealthChecks(blacklistConfig, environment);
     }
 
 
@@ -156,6 +223,13 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
         shardBundles.forEach(hibernateBundle -> bootstrap.addBundle((ConfiguredBundle) hibernateBundle));
     }
 
+    /**
+     * Reports every shard transaction to the listener. Listeners need to be added before the bundle is run.
+     */
+    public void addTransactionListener(TransactionListener listener) {
+        transactionListeners.add(Preconditions.checkNotNull(listener, "Listener can't be null"));
+    }
+
     @VisibleForTesting
     public void runBundles(T configuration, Environment environment) {
         shardBundles.forEach(hibernateBundle -> {
@@ -180,6 +254,157 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
 
     protected abstract ShardedHibernateFactory getConfig(T config);
 
+    private ScatterGatherExecutor createScatterGatherExecutor(ScatterGatherConfig config, Environment environment) {
+        if (null == config) {
+            return ScatterGatherExecutor.serial();
+        }
+        if (config.isSerial()) {
+            return new ScatterGatherExecutor(null, config);
+        }
+        val poolName = String.format("dbshard-scatter-%s", dbNamespace);
+        return new ScatterGatherExecutor(createExecutor(poolName, config.getPoolSize(), environment), config);
+    }
+
+    private void registerBulkheads(ShardedHibernateFactory config, Environment environment) {
+        final BulkheadConfig bulkheadConfig = config.getBulkhead();
+        if (null == bulkheadConfig || !bulkheadConfig.isEnabled()) {
+            return;
+        }
+        IntStream.range(0, numShards).forEach(shard -> {
+            val maxConcurrentCalls = null == bulkheadConfig.getMaxConcurrentCalls()
+                                     ? config.getShards().get(shard).getMaxSize()
+                                     : bulkheadConfig.getMaxConcurrentCalls();
+            ShardBulkhead.register(sessionFactories.get(shard),
+                                   new ShardBulkhead(shard,
+                                                     maxConcurrentCalls,
+                                                     bulkheadConfig.getMaxWait().getQuantity(),
+                                                     bulkheadConfig.getMaxWait().getUnit(),
+                                                     environment.metrics(),
+                                                     dbNamespace));
+        });
+    }
+
+    private void registerCircuitBreakers(BlacklistConfig blacklistConfig) {
+        if (null == blacklistConfig || !blacklistConfig.isAutoBlacklist()) {
+            return;
+        }
+        IntStream.range(0, numShards)
+                .forEach(shard -> ShardCircuitBreaker.register(sessionFactories.get(shard),
+                                                               new ShardCircuitBreaker(shard,
+                                                                                       shardManager,
+                                                                                       blacklistConfig)));
+    }
+
+    private void registerTransactionListeners() {
+        final List<TransactionListener> listeners = Lists.newArrayList(transactionListeners);
+        if (FlightRecorderEvents.isAvailable()) {
+            listeners.add(FlightRecorderEvents.transactionListener());
+        }
+        if (listeners.isEmpty()) {
+            return;
+        }
+        IntStream.range(0, numShards)
+                .forEach(shard -> TransactionListeners.register(sessionFactories.get(shard),
+                                                                new TransactionListeners(dbNamespace,
+                                                                                         shard,
+                                                                                         listeners)));
+    }
+
+    private SlowOperationLog createSlowOperationLog(SlowOperationLogConfig config) {
+        if (null == config || !config.isEnabled()) {
+            return SlowOperationLog.disabled();
+        }
+        return new SlowOperationLog(config);
+    }
+
+    private HotKeys createHotKeys(HotKeyConfig config, Environment environment) {
+        if (null == config || !config.isEnabled()) {
+            return HotKeys.disabled();
+        }
+        return new HotKeys(config, numShards, shardManager.numBuckets(), environment.metrics(), dbNamespace);
+    }
+
+    private KeyLocks createKeyLocks(KeyLockConfig config, Environment environment) {
+        if (null == config || !config.isEnabled()) {
+            return KeyLocks.disabled();
+        }
+        return new KeyLocks(config, environment.metrics(), dbNamespace);
+    }
+
+    private ShardExecutors createShardExecutors(ShardedHibernateFactory config, Environment environment) {
+        val shardExecutors = IntStream.range(0, numShards)
+                .mapToObj(shard -> createExecutor(String.format("dbshard-async-%s-%d", dbNamespace, shard),
+                                                  config.getShards().get(shard).getMaxSize(),
+                                                  environment))
+                .collect(Collectors.toList());
+        val fanOutPoolSize = null == config.getScatterGather()
+                             ? ScatterGatherConfig.builder().build().getPoolSize()
+                             : config.getScatterGather().getPoolSize();
+        val fanOutExecutor = createExecutor(String.format("dbshard-async-%s-fanout", dbNamespace),
+                                            fanOutPoolSize,
+                                            environment);
+        return new ShardExecutors(sessionFactories, shardExecutors, fanOutExecutor);
+    }
+
+    private ExecutorService createExecutor(String poolName, int poolSize, Environment environment) {
+        val executorService = shardExecutorProvider.create(poolName, poolSize);
+        environment.lifecycle().manage(new ExecutorServiceManager(executorService, Duration.seconds(5), poolName));
+        return executorService;
+    }
+
+    /**
+     * Provides the executors used for scatter gather, multi gets and async daos. Override to plug in a custom
+     * executor implementation. By default this follows executorType in the shard config.
+     */
+    protected ShardExecutorProvider getShardExecutorProvider(ShardedHibernateFactory config) {
+        val executorType = null == config.getExecutorType() ? ShardExecutorType.AUTO : config.getExecutorType();
+        switch (executorType) {
+            case VIRTUAL:
+                return ShardExecutorProvider.virtualThreads();
+            case PLATFORM:
+                return ShardExecutorProvider.platformThreads();
+            case AUTO:
+            default:
+                return ShardExecutorProvider.defaultProvider();
+        }
+    }
+
+    /**
+     * Picks the replica to serve read only transactions from on shards with read replicas. Override to plug in a
+     * custom selection strategy. By default this follows selection in the read replica config.
+     */
+    protected ReplicaSelector getReplicaSelector(ReadReplicaConfig config) {
+        if (config.getSelection() == ReplicaSelection.LEAST_BUSY) {
+            return ReplicaSelector.leastBusy();
+        }
+        return ReplicaSelector.roundRobin();
+    }
+
+    private void registerUnitOfWorkFilter(ReadReplicaConfig config, Environment environment) {
+        if (null != config
+                && null != config.getShards()
+                && !config.getShards().isEmpty()
+                && config.getConsistency() == ReplicaConsistency.READ_YOUR_WRITES) {
+            environment.jersey().register(new UnitOfWorkFilter());
+        }
+    }
+
+    private PooledDataSourceFactory shardDataSourceFactory(ShardedHibernateFactory config, int shard) {
+        val primary = config.getShards().get(shard);
+        val replicaConfig = config.getReadReplicas();
+        if (null == replicaConfig || null == replicaConfig.getShards() || replicaConfig.getShards().isEmpty()) {
+            return primary;
+        }
+        Preconditions.checkArgument(replicaConfig.getShards().size() == config.getShards().size(),
+                                    "Read replicas need to be configured for every shard. " +
+                                            "Use an empty list for shards without replicas.");
+        val replicas = replicaConfig.getShards().get(shard);
+        if (null == replicas || replicas.isEmpty()) {
+            return primary;
+        }
+        return new ReplicatedDataSourceFactory(primary, replicas, getReplicaSelector(replicaConfig), replicaConfig);
+    }
+
     protected ShardBlacklistingStore getBlacklistingStore() {
         return new InMemoryLocalShardBlacklistingStore();
     }
@@ -187,35 +412,42 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
     public <EntityType, T extends Configuration>
     LookupDao<EntityType> createParentObjectDao(Class<EntityType> clazz) {
         return new LookupDao<>(this.sessionFactories, clazz,
-                new ShardCalculator<>(this.shardManager, new ConsistentHashBucketIdExtractor<>(this.shardManager)));
+                shardCalculator(new ConsistentHashBucketIdExtractor<>(this.shardManager), clazz),
+                this.scatterGatherExecutor,
+                this.keyLocks);
     }
 
     public <EntityType, T extends Configuration>
     CacheableLookupDao<EntityType> createParentObjectDao(Class<EntityType> clazz,
                                                          LookupCache<EntityType> cacheManager) {
         return new CacheableLookupDao<>(this.sessionFactories, clazz,
-                new ShardCalculator<>(this.shardManager, new ConsistentHashBucketIdExtractor<>(this.shardManager)),
+                shardCalculator(new ConsistentHashBucketIdExtractor<>(this.shardManager), clazz),
+                this.scatterGatherExecutor,
+                this.keyLocks,
                 cacheManager);
     }
 
     public <EntityType, T extends Configuration>
     LookupDao<EntityType> createParentObjectDao(Class<EntityType> clazz,
                                                 BucketIdExtractor<String> bucketIdExtractor) {
-        return new LookupDao<>(this.sessionFactories, clazz, new ShardCalculator<>(this.shardManager, bucketIdExtractor));
+        return new LookupDao<>(this.sessionFactories, clazz, shardCalculator(bucketIdExtractor, clazz),
+                this.scatterGatherExecutor, this.keyLocks);
     }
 
     public <EntityType, T extends Configuration>
     CacheableLookupDao<EntityType> createParentObjectDao(Class<EntityType> clazz,
                                                          BucketIdExtractor<String> bucketIdExtractor,
                                                          LookupCache<EntityType> cacheManager) {
-        return new CacheableLookupDao<>(this.sessionFactories, clazz, new ShardCalculator<>(this.shardManager, bucketIdExtractor), cacheManager);
+        return new CacheableLookupDao<>(this.sessionFactories, clazz, shardCalculator(bucketIdExtractor, clazz),
+                this.scatterGatherExecutor, this.keyLocks, cacheManager);
     }
 
 
     public <EntityType, T extends Configuration>
     RelationalDao<EntityType> createRelatedObjectDao(Class<EntityType> clazz) {
         return new RelationalDao<>(this.sessionFactories, clazz,
-                new ShardCalculator<>(this.shardManager, new ConsistentHashBucketIdExtractor<>(this.shardManager)));
+                shardCalculator(new ConsistentHashBucketIdExtractor<>(this.shardManager), clazz),
+                this.scatterGatherExecutor);
     }
 
 
@@ -223,8 +455,8 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
     CacheableRelationalDao<EntityType> createRelatedObjectDao(Class<EntityType> clazz, RelationalCache<EntityType> cacheManager) {
         return new CacheableRelationalDao<>(this.sessionFactories,
                 clazz,
-                new ShardCalculator<>(this.shardManager,
-                        new ConsistentHashBucketIdExtractor<>(this.shardManager)),
+                shardCalculator(new ConsistentHashBucketIdExtractor<>(this.shardManager), clazz),
+                this.scatterGatherExecutor,
                 cacheManager);
     }
 
@@ -232,14 +464,16 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
     public <EntityType, T extends Configuration>
     RelationalDao<EntityType> createRelatedObjectDao(Class<EntityType> clazz,
                                                      BucketIdExtractor<String> bucketIdExtractor) {
-        return new RelationalDao<>(this.sessionFactories, clazz, new ShardCalculator<>(this.shardManager, bucketIdExtractor));
+        return new RelationalDao<>(this.sessionFactories, clazz, shardCalculator(bucketIdExtractor, clazz),
+                this.scatterGatherExecutor);
     }
 
     public <EntityType, T extends Configuration>
     CacheableRelationalDao<EntityType> createRelatedObjectDao(Class<EntityType> clazz,
                                                               BucketIdExtractor<String> bucketIdExtractor,
                                                               RelationalCache<EntityType> cacheManager) {
-        return new CacheableRelationalDao<>(this.sessionFactories, clazz, new ShardCalculator<>(this.shardManager, bucketIdExtractor), cacheManager);
+        return new CacheableRelationalDao<>(this.sessionFactories, clazz, shardCalculator(bucketIdExtractor, clazz),
+                this.scatterGatherExecutor, cacheManager);
     }
 
 
@@ -247,13 +481,13 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
     WrapperDao<EntityType, DaoType> createWrapperDao(Class<DaoType> daoTypeClass) {
         return new WrapperDao<>(this.sessionFactories,
                 daoTypeClass,
-                new ShardCalculator<>(this.shardManager, new ConsistentHashBucketIdExtractor<>(this.shardManager)));
+                shardCalculator(new ConsistentHashBucketIdExtractor<>(this.shardManager), daoTypeClass));
     }
 
     public <EntityType, DaoType extends AbstractDAO<EntityType>, T extends Configuration>
     WrapperDao<EntityType, DaoType> createWrapperDao(Class<DaoType> daoTypeClass,
                                                      BucketIdExtractor<String> bucketIdExtractor) {
-        return new WrapperDao<>(this.sessionFactories, daoTypeClass, new ShardCalculator<>(this.shardManager, bucketIdExtractor));
+        return new WrapperDao<>(this.sessionFactories, daoTypeClass, shardCalculator(bucketIdExtractor, daoTypeClass));
     }
 
     public <EntityType, DaoType extends AbstractDAO<EntityType>, T extends Configuration>
@@ -262,6 +496,33 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
                                                      Class[] extraConstructorParamObjects) {
         return new WrapperDao<>(this.sessionFactories, daoTypeClass,
                 extraConstructorParamClasses, extraConstructorParamObjects,
-                new ShardCalculator<>(this.shardManager, new ConsistentHashBucketIdExtractor<>(this.shardManager)));
+                shardCalculator(new ConsistentHashBucketIdExtractor<>(this.shardManager), daoTypeClass));
+    }
+
+    private <K> ShardCalculator<K> shardCalculator(BucketIdExtractor<K> bucketIdExtractor, Class<?> entityClass) {
+        return new ShardCalculator<>(this.shardManager, bucketIdExtractor, this.hotKeys, this.dbNamespace, entityClass);
+    }
+
+    /**
+     * Runs the work as a single unit of work. Dao calls inside it share one session and transaction per shard they
+     * touch, which are committed once the work returns. See {@link ShardScope} for details.
+     */
+    public <R> R inShardScope(Callable<R> work) throws Exception {
+        return ShardScope.execute(work);
+    }
+
+    public <EntityType, T extends Configuration>
+    AsyncLookupDao<EntityType> createAsyncParentObjectDao(LookupDao<EntityType> dao) {
+        return new AsyncLookupDao<>(dao, this.shardExecutors);
+    }
+
+    public <EntityType, T extends Configuration>
+    AsyncRelationalDao<EntityType> createAsyncRelatedObjectDao(RelationalDao<EntityType> dao) {
+        return new AsyncRelationalDao<>(dao, this.shardExecutors);
+    }
+
+    public <EntityType, DaoType extends AbstractDAO<EntityType>, T extends Configuration>
+    AsyncWrapperDao<EntityType, DaoType> createAsyncWrapperDao(WrapperDao<EntityType, DaoType> dao) {
+        return new AsyncWrapperDao<>(dao, this.shardExecutors);
     }
 }
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.admin;
+
+import io.appform.dropwizard.sharding.utils.HotKeys;
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Prints the hottest keys and buckets of every shard, or of the shard passed as shardId.
+ */
+public class HotKeysTask extends Task {
+    private final HotKeys hotKeys;
+
+    public HotKeysTask(HotKeys hotKeys) {
+        super("hotkeys");
+        this.hotKeys = hotKeys;
+    }
+
+    @Override
+    public void execute(Map<String, List<String>> map, PrintWriter out) throws Exception {
+        final IntStream shards = map.containsKey("shardId")
+                                 ? IntStream.of(TaskUtils.parseShardParam(map))
+                                 : IntStream.range(0, hotKeys.numShards());
+        shards.forEach(shard -> {
+            out.printf("shard %d%n", shard);
+            out.println("  keys:");
+            hotKeys.topKeys(shard)
+                    .forEach(key -> out.printf("    %s %d (+/- %d)%n", key.getKey(), key.getCount(), key.getError()));
+            out.println("  buckets:");
+            hotKeys.topBuckets(shard)
+                    .forEach(bucket -> out.printf("    %s %d%n", bucket.getKey(), bucket.getCount()));
+        });
+        out.flush();
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.caching;
+
+import lombok.Value;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Opt in identity map for a request. While a cache is open on a thread, {@link io.appform.dropwizard.sharding.dao.LookupDao#get(String)}
+ * and {@link io.appform.dropwizard.sharding.dao.RelationalDao#get(String, Object)} keep the entities they load keyed
+ * by entity class, shard and key, and return the same instance for repeated reads instead of querying the shard
+ * again. Writes through the same daos evict the affected entries: lookup dao writes evict the key written, relational
+ * dao writes evict all cached entities of the type on the shard.
+ * Writes made any other way (other processes, native queries, wrapper daos) are not seen while the cache is open, so
+ * keep it short lived, typically one request:
+ * <pre>
+ * try (RequestEntityCache.Scope scope = RequestEntityCache.open()) {
+ *     ...
+ * }
+ * </pre>
+ * The cache is bound to the thread that opened it. Calls on other threads (parallel scatter gather, async daos) do not
+ * use it. Nested opens join the outer cache.
+ */
+public final class RequestEntityCache {
+    private static final ThreadLocal<RequestEntityCache> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Closes the cache opened on the thread.
+     */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    @Value
+    private static class EntityKey {
+        Class<?> entityClass;
+        int shardId;
+        Object key;
+    }
+
+    private final Map<EntityKey, Object> entities = new HashMap<>();
+
+    private RequestEntityCache() {}
+
+    /**
+     * Opens a cache on the current thread. Joins the cache already open on the thread if there is one, in which case
+     * closing the returned scope is a no-op.
+     */
+    public static Scope open() {
+        if (null != CURRENT.get()) {
+            return () -> { };
+        }
+        CURRENT.set(new RequestEntityCache());
+        return CURRENT::remove;
+    }
+
+    /**
+     * Runs the work with a cache open on the current thread.
+     */
+    public static <R> R execute(Callable<R> work) throws Exception {
+        try (Scope scope = open()) {
+            return work.call();
+        }
+    }
+
+    public static boolean isActive() {
+        return null != CURRENT.get();
+    }
+
+    /**
+     * @return Cached entity, or null if no cache is open or the entity has not been read yet
+     */
+    public static <T> T get(Class<T> entityClass, int shardId, Object key) {
+        final RequestEntityCache cache = CURRENT.get();
+        if (null == cache) {
+            return null;
+        }
+        return entityClass.cast(cache.entities.get(new EntityKey(entityClass, shardId, key)));
+    }
+
+    public static void put(Class<?> entityClass, int shardId, Object key, Object entity) {
+        final RequestEntityCache cache = CURRENT.get();
+        if (null != cache && null != entity) {
+            cache.entities.put(new EntityKey(entityClass, shardId, key), entity);
+        }
+    }
+
+    public static void evict(Class<?> entityClass, int shardId, Object key) {
+        final RequestEntityCache cache = CURRENT.get();
+        if (null != cache) {
+            cache.entities.remove(new EntityKey(entityClass, shardId, key));
+        }
+    }
+
+    /**
+     * Evicts all cached entities of the type on the shard.
+     */
+    public static void evictShard(Class<?> entityClass, int shardId) {
+        final RequestEntityCache cache = CURRENT.get();
+        if (null != cache) {
+            cache.entities.keySet().removeIf(entityKey -> entityKey.getEntityClass() == entityClass
+                    && entityKey.getShardId() == shardId);
+        }
+    }
+}
@@ -1,10 +1,16 @@
 package io.appform.dropwizard.sharding.config;
 
+import io.dropwizard.util.Duration;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -13,4 +19,60 @@ public class BlacklistConfig {
 
     private boolean skipNativeHealthcheck;
 
+    /**
+     * How often blacklisting state is reloaded from the {@link io.appform.dropwizard.sharding.sharding.ShardBlacklistingStore}
+     */
+    @NotNull
+    @Builder.Default
+    private Duration refreshInterval = Duration.seconds(15);
+
+    /**
+     * Blacklist shards automatically when their error rate or p99 latency crosses the thresholds below, and bring
+     * them back once probe calls succeed again
+     */
+    private boolean autoBlacklist;
+
+    /**
+     * Fraction of calls failing with database errors within the evaluation window that trips a shard
+     */
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    @Builder.Default
+    private double errorRateThreshold = 0.5;
+
+    /**
+     * p99 latency of transactions within the evaluation window that trips a shard
+     */
+    @NotNull
+    @Builder.Default
+    private Duration latencyThreshold = Duration.seconds(5);
+
+    /**
+     * Minimum number of calls within the evaluation window before a shard can be tripped
+     */
+    @Min(1)
+    @Builder.Default
+    private int minCalls = 20;
+
+    /**
+     * Window over which error rate and latency are evaluated
+     */
+    @NotNull
+    @Builder.Default
+    private Duration evaluationWindow = Duration.seconds(10);
+
+    /**
+     * Time a tripped shard stays blacklisted before probe calls are let through
+     */
+    @NotNull
+    @Builder.Default
+    private Duration openDuration = Duration.seconds(30);
+
+    /**
+     * Number of probe calls that need to succeed for a tripped shard to be brought back
+     */
+    @Min(1)
+    @Builder.Default
+    private int probeCalls = 5;
+
 }
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.config;
+
+import io.dropwizard.util.Duration;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Limits the number of calls in flight on every shard, so that a slow shard can't tie up all request threads.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkheadConfig {
+
+    /**
+     * Limit calls per shard
+     */
+    private boolean enabled;
+
+    /**
+     * Maximum number of calls in flight on a single shard. Defaults to the max pool size of the shard.
+     */
+    @Min(1)
+    private Integer maxConcurrentCalls;
+
+    /**
+     * Time a call waits for a slot on a saturated shard before it is rejected
+     */
+    @NotNull
+    @Builder.Default
+    private Duration maxWait = Duration.milliseconds(50);
+}
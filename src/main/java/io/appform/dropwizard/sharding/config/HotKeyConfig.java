@@ -0,0 +1,66 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.config;
+
+import io.dropwizard.util.Duration;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Tracks the most frequently routed keys and buckets of every shard from a sample of lookups.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HotKeyConfig {
+
+    /**
+     * Track hot keys and buckets
+     */
+    private boolean enabled;
+
+    /**
+     * Fraction of lookups sampled
+     */
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    @Builder.Default
+    private double sampleRate = 0.01;
+
+    /**
+     * Number of keys and buckets tracked per shard
+     */
+    @Min(1)
+    @Builder.Default
+    private int topK = 32;
+
+    /**
+     * Counts are halved every interval, so that keys that cooled down drop out
+     */
+    @NotNull
+    @Builder.Default
+    private Duration decayInterval = Duration.minutes(1);
+}
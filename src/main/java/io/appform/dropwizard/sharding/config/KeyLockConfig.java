@@ -0,0 +1,56 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.config;
+
+import io.dropwizard.util.Duration;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Controls the node local key locks taken by lookup daos before locking rows for write.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class KeyLockConfig {
+
+    /**
+     * Queue writers for the same key on this node before they lock the row in the database
+     */
+    private boolean enabled;
+
+    /**
+     * Number of locks keys are spread over. Keys sharing a stripe wait for each other.
+     */
+    @Min(1)
+    @Builder.Default
+    private int stripes = 1024;
+
+    /**
+     * Maximum time to wait for the local lock. Callers that wait longer go to the database without it.
+     */
+    @NotNull
+    @Builder.Default
+    private Duration maxWait = Duration.seconds(1);
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.config;
+
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.util.Duration;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Singular;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+/**
+ * Read replicas for shards. Read only transactions are served from a replica of the shard when it has any,
+ * writes and locking reads always go to the primary.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReadReplicaConfig {
+
+    /**
+     * Replicas for every shard, in the same order as the shards. Use an empty list for shards without replicas.
+     */
+    @NotNull
+    @Valid
+    @Singular
+    private List<List<DataSourceFactory>> shards;
+
+    @NotNull
+    @Builder.Default
+    private ReplicaSelection selection = ReplicaSelection.ROUND_ROBIN;
+
+    @NotNull
+    @Builder.Default
+    private ReplicaConsistency consistency = ReplicaConsistency.EVENTUAL;
+
+    /**
+     * Time after a write within which replicas may not have caught up with it. With READ_YOUR_WRITES consistency
+     * reads on the shard stay on the primary for this long after the unit of work last wrote to it. Keep this above
+     * the replication lag the replicas usually run at.
+     */
+    @NotNull
+    @Builder.Default
+    private Duration maxLag = Duration.seconds(1);
+}
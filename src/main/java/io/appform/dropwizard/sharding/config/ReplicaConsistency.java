@@ -0,0 +1,33 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.config;
+
+/**
+ * Consistency of reads served from read replicas.
+ */
+public enum ReplicaConsistency {
+    /**
+     * Read only transactions always go to a replica and may not see recent writes
+     */
+    EVENTUAL,
+    /**
+     * Read only transactions that follow a write to the same shard in the same unit of work (a request thread and
+     * the shard calls it fans out to) go to the primary till replicas are expected to have caught up
+     */
+    READ_YOUR_WRITES
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.config;
+
+/**
+ * How a read replica is picked for a read only transaction on a shard.
+ */
+public enum ReplicaSelection {
+    /**
+     * Replicas are used one after the other
+     */
+    ROUND_ROBIN,
+    /**
+     * Replica with the fewest connections in use
+     */
+    LEAST_BUSY
+}
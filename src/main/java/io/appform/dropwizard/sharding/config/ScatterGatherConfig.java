@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.config;
+
+import io.dropwizard.util.Duration;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Controls how queries that fan out to all shards (scatter gather, counts etc) are executed.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScatterGatherConfig {
+
+    /**
+     * Run shard queries one after the other on the calling thread, like older versions did
+     */
+    private boolean serial;
+
+    /**
+     * Number of threads shared by all fan out calls made through daos created by the bundle
+     */
+    @Min(1)
+    @Builder.Default
+    private int poolSize = 32;
+
+    /**
+     * Maximum number of shards a single fan out call queries at the same time
+     */
+    @Min(1)
+    @Builder.Default
+    private int maxParallelism = 16;
+
+    /**
+     * Time within which all shards need to respond for a single fan out call
+     */
+    @NotNull
+    @Builder.Default
+    private Duration timeout = Duration.seconds(30);
+
+    /**
+     * Maximum number of keys sent in a single IN list by multi key lookups. Larger per shard key sets are split into
+     * multiple queries. Keep this within the limits of the database in use.
+     */
+    @Min(1)
+    @Builder.Default
+    private int maxInListSize = 1000;
+}
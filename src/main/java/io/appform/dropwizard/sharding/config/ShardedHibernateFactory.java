@@ -43,4 +43,36 @@ public class ShardedHibernateFactory {
 
     @Valid
     private BlacklistConfig blacklist;
+
+    @Valid
+    private ReadReplicaConfig readReplicas;
+
+    @Valid
+    @NotNull
+    @Builder.Default
+    private ScatterGatherConfig scatterGather = new ScatterGatherConfig();
+
+    @Valid
+    @NotNull
+    @Builder.Default
+    private BulkheadConfig bulkhead = new BulkheadConfig();
+
+    @Valid
+    @NotNull
+    @Builder.Default
+    private KeyLockConfig keyLocks = new KeyLockConfig();
+
+    @Valid
+    @NotNull
+    @Builder.Default
+    private SlowOperationLogConfig slowOperations = new SlowOperationLogConfig();
+
+    @Valid
+    @NotNull
+    @Builder.Default
+    private HotKeyConfig hotKeys = new HotKeyConfig();
+
+    @NotNull
+    @Builder.Default
+    private ShardExecutorType executorType = ShardExecutorType.AUTO;
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.config;
+
+import io.dropwizard.util.Duration;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Logs dao operations slower than a threshold along with the shard, key and criteria they ran with.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlowOperationLogConfig {
+
+    /**
+     * Log slow operations
+     */
+    private boolean enabled;
+
+    /**
+     * Operations taking longer than this are logged
+     */
+    @NotNull
+    @Builder.Default
+    private Duration threshold = Duration.seconds(1);
+
+    /**
+     * Fraction of slow operations to log
+     */
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    @Builder.Default
+    private double sampleRate = 1.0;
+
+    /**
+     * Maximum number of slow operations logged per second. Operations beyond it are counted and reported with the
+     * next one logged.
+     */
+    @Min(1)
+    @Builder.Default
+    private int maxPerSecond = 10;
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.dao;
+
+import io.appform.dropwizard.sharding.utils.ShardExecutors;
+import lombok.Getter;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Asynchronous view of a {@link LookupDao}. Single key calls run on the executor for the shard of the key and calls
+ * spanning shards run on the fan out executor, see {@link ShardExecutors}.
+ * Every call runs in its own transaction on the executor thread, so these can't take part in a transaction
+ * started on the calling thread, use the {@link LookupDao} directly for that.
+ */
+public class AsyncLookupDao<T> {
+    @Getter
+    private final LookupDao<T> dao;
+    private final ShardExecutors shardExecutors;
+
+    public AsyncLookupDao(LookupDao<T> dao, ShardExecutors shardExecutors) {
+        this.dao = dao;
+        this.shardExecutors = shardExecutors;
+    }
+
+    /**
+     * @see LookupDao#get(String)
+     */
+    public CompletableFuture<Optional<T>> get(String key) {
+        return shardExecutors.onShard(dao.getShardCalculator(), key, () -> dao.get(key));
+    }
+
+    /**
+     * @see LookupDao#get(String, Function)
+     */
+    public <U> CompletableFuture<U> get(String key, Function<T, U> handler) {
+        return shardExecutors.onShard(dao.getShardCalculator(), key, () -> dao.get(key, handler));
+    }
+
+    /**
+     * @see LookupDao#exists(String)
+     */
+    public CompletableFuture<Boolean> exists(String key) {
+        return shardExecutors.onShard(dao.getShardCalculator(), key, () -> dao.exists(key));
+    }
+
+    /**
+     * @see LookupDao#save(Object)
+     */
+    public CompletableFuture<Optional<T>> save(T entity) {
+        return save(entity, t -> t).thenApply(Optional::ofNullable);
+    }
+
+    /**
+     * @see LookupDao#save(Object, Function)
+     */
+    public <U> CompletableFuture<U> save(T entity, Function<T, U> handler) {
+        final String key;
+        try {
+            key = dao.getKeyField().get(entity).toString();
+        }
+        catch (Exception e) {
+            return ShardExecutors.failed(e);
+        }
+        return shardExecutors.onShard(dao.getShardCalculator(), key, () -> dao.save(entity, handler));
+    }
+
+    /**
+     * @see LookupDao#saveAll(Collection, int)
+     */
+    public CompletableFuture<List<ShardSaveResult<T>>> saveAll(Collection<T> entities, int batchSize) {
+        return shardExecutors.onAllShards(() -> dao.saveAll(entities, batchSize));
+    }
+
+    /**
+     * @see LookupDao#update(String, Function)
+     */
+    public CompletableFuture<Boolean> update(String id, Function<Optional<T>, T> updater) {
+        return shardExecutors.onShard(dao.getShardCalculator(), id, () -> dao.update(id, updater));
+    }
+
+    /**
+     * @see LookupDao#updateInLock(String, Function)
+     */
+    public CompletableFuture<Boolean> updateInLock(String id, Function<Optional<T>, T> updater) {
+        return shardExecutors.onShard(dao.getShardCalculator(), id, () -> dao.updateInLock(id, updater));
+    }
+
+    /**
+     * @see LookupDao#delete(String)
+     */
+    public CompletableFuture<Boolean> delete(String id) {
+        return shardExecutors.onShard(dao.getShardCalculator(), id, () -> dao.delete(id));
+    }
+
+    /**
+     * @see LookupDao#get(List)
+     */
+    public CompletableFuture<List<T>> get(List<String> keys) {
+        return shardExecutors.onAllShards(() -> dao.get(keys));
+    }
+
+    /**
+     * @see LookupDao#getAsMap(List)
+     */
+    public CompletableFuture<Map<String, T>> getAsMap(List<String> keys) {
+        return shardExecutors.onAllShards(() -> dao.getAsMap(keys));
+    }
+
+    /**
+     * @see LookupDao#scatterGather(DetachedCriteria)
+     */
+    public CompletableFuture<List<T>> scatterGather(DetachedCriteria criteria) {
+        return shardExecutors.onAllShards(() -> dao.scatterGather(criteria));
+    }
+
+    /**
+     * @see LookupDao#scatterGather(DetachedCriteria, List, String, int)
+     */
+    public CompletableFuture<KeysetPage<T>> scatterGather(
+            DetachedCriteria criteria,
+            List<Order> orders,
+            String cursor,
+            int pageSize) {
+        return shardExecutors.onAllShards(() -> dao.scatterGather(criteria, orders, cursor, pageSize));
+    }
+
+    /**
+     * @see LookupDao#count(DetachedCriteria)
+     */
+    public CompletableFuture<List<Long>> count(DetachedCriteria criteria) {
+        return shardExecutors.onAllShards(() -> dao.count(criteria));
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.dao;
+
+import io.appform.dropwizard.sharding.utils.ShardExecutors;
+import lombok.Getter;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Asynchronous view of a {@link RelationalDao}. Calls for a parent key run on the executor for the shard of the
+ * parent key and calls spanning shards run on the fan out executor, see {@link ShardExecutors}.
+ * Every call runs in its own transaction on the executor thread, so these can't take part in a transaction
+ * started on the calling thread (for example a {@link LookupDao.LockedContext}), use the {@link RelationalDao}
+ * directly for that.
+ */
+public class AsyncRelationalDao<T> {
+    @Getter
+    private final RelationalDao<T> dao;
+    private final ShardExecutors shardExecutors;
+
+    public AsyncRelationalDao(RelationalDao<T> dao, ShardExecutors shardExecutors) {
+        this.dao = dao;
+        this.shardExecutors = shardExecutors;
+    }
+
+    /**
+     * @see RelationalDao#get(String, Object)
+     */
+    public CompletableFuture<Optional<T>> get(String parentKey, Object key) {
+        return shardExecutors.onShard(dao.getShardCalculator(), parentKey, () -> dao.get(parentKey, key));
+    }
+
+    /**
+     * @see RelationalDao#get(String, Object, Function)
+     */
+    public <U> CompletableFuture<U> get(String parentKey, Object key, Function<T, U> function) {
+        return shardExecutors.onShard(dao.getShardCalculator(), parentKey, () -> dao.get(parentKey, key, function));
+    }
+
+    /**
+     * @see RelationalDao#exists(String, Object)
+     */
+    public CompletableFuture<Boolean> exists(String parentKey, Object key) {
+        return shardExecutors.onShard(dao.getShardCalculator(), parentKey, () -> dao.exists(parentKey, key));
+    }
+
+    /**
+     * @see RelationalDao#save(String, Object)
+     */
+    public CompletableFuture<Optional<T>> save(String parentKey, T entity) {
+        return shardExecutors.onShard(dao.getShardCalculator(), parentKey, () -> dao.save(parentKey, entity));
+    }
+
+    /**
+     * @see RelationalDao#saveAll(String, Collection, int)
+     */
+    public CompletableFuture<Boolean> saveAll(String parentKey, Collection<T> entities, int batchSize) {
+        return shardExecutors.onShard(dao.getShardCalculator(), parentKey,
+                                      () -> dao.saveAll(parentKey, entities, batchSize));
+    }
+
+    /**
+     * @see RelationalDao#update(String, Object, Function)
+     */
+    public CompletableFuture<Boolean> update(String parentKey, Object id, Function<T, T> updater) {
+        return shardExecutors.onShard(dao.getShardCalculator(), parentKey, () -> dao.update(parentKey, id, updater));
+    }
+
+    /**
+     * @see RelationalDao#update(String, DetachedCriteria, Function)
+     */
+    public CompletableFuture<Boolean> update(String parentKey, DetachedCriteria criteria, Function<T, T> updater) {
+        return shardExecutors.onShard(dao.getShardCalculator(), parentKey,
+                                      () -> dao.update(parentKey, criteria, updater));
+    }
+
+    /**
+     * @see RelationalDao#updateUsingQuery(String, UpdateOperationMeta)
+     */
+    public CompletableFuture<Integer> updateUsingQuery(String parentKey, UpdateOperationMeta updateOperationMeta) {
+        return shardExecutors.onShard(dao.getShardCalculator(), parentKey,
+                                      () -> dao.updateUsingQuery(parentKey, updateOperationMeta));
+    }
+
+    /**
+     * @see RelationalDao#select(String, DetachedCriteria, int, int)
+     */
+    public CompletableFuture<List<T>> select(String parentKey, DetachedCriteria criteria, int first, int numResults) {
+        return shardExecutors.onShard(dao.getShardCalculator(), parentKey,
+                                      () -> dao.select(parentKey, criteria, first, numResults));
+    }
+
+    /**
+     * @see RelationalDao#select(String, DetachedCriteria, List, String, int)
+     */
+    public CompletableFuture<KeysetPage<T>> select(
+            String parentKey,
+            DetachedCriteria criteria,
+            List<Order> orders,
+            String cursor,
+            int numResults) {
+        return shardExecutors.onShard(dao.getShardCalculator(), parentKey,
+                                      () -> dao.select(parentKey, criteria, orders, cursor, numResults));
+    }
+
+    /**
+     * @see RelationalDao#count(String, DetachedCriteria)
+     */
+    public CompletableFuture<Long> count(String parentKey, DetachedCriteria criteria) {
+        return shardExecutors.onShard(dao.getShardCalculator(), parentKey, () -> dao.count(parentKey, criteria));
+    }
+
+    /**
+     * @see RelationalDao#countScatterGather(DetachedCriteria)
+     */
+    public CompletableFuture<List<Long>> countScatterGather(DetachedCriteria criteria) {
+        return shardExecutors.onAllShards(() -> dao.countScatterGather(criteria));
+    }
+
+    /**
+     * @see RelationalDao#scatterGather(DetachedCriteria, int, int)
+     */
+    public CompletableFuture<List<T>> scatterGather(DetachedCriteria criteria, int start, int numRows) {
+        return shardExecutors.onAllShards(() -> dao.scatterGather(criteria, start, numRows));
+    }
+
+    /**
+     * @see RelationalDao#scatterGather(DetachedCriteria, List, int, int)
+     */
+    public CompletableFuture<List<T>> scatterGather(
+            DetachedCriteria criteria,
+            List<Order> orders,
+            int start,
+            int numRows) {
+        return shardExecutors.onAllShards(() -> dao.scatterGather(criteria, orders, start, numRows));
+    }
+
+    /**
+     * @see RelationalDao#scatterGather(DetachedCriteria, List, String, int)
+     */
+    public CompletableFuture<KeysetPage<T>> scatterGather(
+            DetachedCriteria criteria,
+            List<Order> orders,
+            String cursor,
+            int numRows) {
+        return shardExecutors.onAllShards(() -> dao.scatterGather(criteria, orders, cursor, numRows));
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.dao;
+
+import io.appform.dropwizard.sharding.utils.ShardExecutors;
+import io.dropwizard.hibernate.AbstractDAO;
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Asynchronous view of a {@link WrapperDao}. Calls run on the executor for the shard of the parent key, see
+ * {@link ShardExecutors}. Methods of the custom dao annotated with
+ * {@link io.appform.dropwizard.sharding.sharding.ShardedTransaction} open and close their transaction on the executor
+ * thread.
+ */
+public class AsyncWrapperDao<T, DaoType extends AbstractDAO<T>> {
+    @Getter
+    private final WrapperDao<T, DaoType> dao;
+    private final ShardExecutors shardExecutors;
+
+    public AsyncWrapperDao(WrapperDao<T, DaoType> dao, ShardExecutors shardExecutors) {
+        this.dao = dao;
+        this.shardExecutors = shardExecutors;
+    }
+
+    /**
+     * Runs the call against the dao for the shard of the parent key.
+     *
+     * @param parentKey key that will be used to find the shard
+     * @param call      Call to make on the dao for the shard
+     * @return Future completed with the result of the call
+     */
+    public <U> CompletableFuture<U> forParent(String parentKey, Function<DaoType, U> call) {
+        return shardExecutors.onShard(dao.getShardCalculator(), parentKey, () -> call.apply(dao.forParent(parentKey)));
+    }
+}
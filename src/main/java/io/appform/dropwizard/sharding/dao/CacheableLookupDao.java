@@ -20,6 +20,8 @@ package io.appform.dropwizard.sharding.dao;
 import io.appform.dropwizard.sharding.caching.LookupCache;
 import io.appform.dropwizard.sharding.exceptions.DaoFwdException;
 import io.appform.dropwizard.sharding.sharding.LookupKey;
+import io.appform.dropwizard.sharding.utils.KeyLocks;
+import io.appform.dropwizard.sharding.utils.ScatterGatherExecutor;
 import io.appform.dropwizard.sharding.utils.ShardCalculator;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.SessionFactory;
@@ -48,6 +50,25 @@ public class CacheableLookupDao<T> extends LookupDao<T> {
         this.cache = cache;
     }
 
+    public CacheableLookupDao(List<SessionFactory> sessionFactories,
+                              Class<T> entityClass,
+                              ShardCalculator<String> shardCalculator,
+                              ScatterGatherExecutor scatterGatherExecutor,
+                              LookupCache<T> cache) {
+        super(sessionFactories, entityClass, shardCalculator, scatterGatherExecutor);
+        this.cache = cache;
+    }
+
+    public CacheableLookupDao(List<SessionFactory> sessionFactories,
+                              Class<T> entityClass,
+                              ShardCalculator<String> shardCalculator,
+                              ScatterGatherExecutor scatterGatherExecutor,
+                              KeyLocks keyLocks,
+                              LookupCache<T> cache) {
+        super(sessionFactories, entityClass, shardCalculator, scatterGatherExecutor, keyLocks);
+        this.cache = cache;
+    }
+
     /**
      * Read through an object on the basis of key (value of field annotated with {@link LookupKey}) from cache.
      * Cache miss will be delegated to {@link LookupDao#get(String)} method.
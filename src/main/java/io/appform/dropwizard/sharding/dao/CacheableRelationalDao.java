@@ -18,6 +18,7 @@
 package io.appform.dropwizard.sharding.dao;
 
 import io.appform.dropwizard.sharding.caching.RelationalCache;
+import io.appform.dropwizard.sharding.utils.ScatterGatherExecutor;
 import io.appform.dropwizard.sharding.utils.ShardCalculator;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.DetachedCriteria;
@@ -39,6 +40,14 @@ public class CacheableRelationalDao<T> extends RelationalDao<T> {
         this.cache = cache;
     }
 
+    public CacheableRelationalDao(List<SessionFactory> sessionFactories, Class<T> entityClass,
+                                  ShardCalculator<String> shardCalculator,
+                                  ScatterGatherExecutor scatterGatherExecutor,
+                                  RelationalCache<T> cache) {
+        super(sessionFactories, entityClass, shardCalculator, scatterGatherExecutor);
+        this.cache = cache;
+    }
+
     @Override
     public Optional<T> get(String parentKey, Object key) {
         if(cache.exists(parentKey, key)) {
@@ -17,33 +17,57 @@
 
 package io.appform.dropwizard.sharding.dao;
 
+import com.github.rholder.retry.Attempt;
+import com.github.rholder.retry.RetryException;
+import com.github.rholder.retry.RetryerBuilder;
+import com.github.rholder.retry.StopStrategies;
+import com.github.rholder.retry.StopStrategy;
+import com.github.rholder.retry.WaitStrategies;
+import com.github.rholder.retry.WaitStrategy;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import io.appform.dropwizard.sharding.caching.RequestEntityCache;
+import io.appform.dropwizard.sharding.exceptions.OptimisticUpdateConflictException;
 import io.appform.dropwizard.sharding.sharding.LookupKey;
 import io.appform.dropwizard.sharding.sharding.ShardManager;
+import io.appform.dropwizard.sharding.utils.DaoMetrics;
+import io.appform.dropwizard.sharding.utils.KeyLocks;
+import io.appform.dropwizard.sharding.utils.ScatterGatherExecutor;
 import io.appform.dropwizard.sharding.utils.ShardCalculator;
 import io.appform.dropwizard.sharding.utils.TransactionHandler;
 import io.appform.dropwizard.sharding.utils.Transactions;
 import io.dropwizard.hibernate.AbstractDAO;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import lombok.var;
 import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.reflect.FieldUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.hibernate.LockMode;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StaleStateException;
 import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.query.Query;
 
+import javax.persistence.OptimisticLockException;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.*;
 import java.util.stream.Collectors;
 
@@ -57,6 +81,12 @@ import java.util.stream.Collectors;
 @Slf4j
 public class LookupDao<T> implements ShardedDao<T> {
 
+    private static final int OPTIMISTIC_UPDATE_ATTEMPTS = 5;
+    private static final StopStrategy DEFAULT_OPTIMISTIC_STOP_STRATEGY
+            = StopStrategies.stopAfterAttempt(OPTIMISTIC_UPDATE_ATTEMPTS);
+    private static final WaitStrategy DEFAULT_OPTIMISTIC_WAIT_STRATEGY
+            = WaitStrategies.randomWait(5, TimeUnit.MILLISECONDS, 50, TimeUnit.MILLISECONDS);
+
     /**
      * This DAO wil be used to perform the ops inside a shard
      */
@@ -106,6 +136,29 @@ public class LookupDao<T> implements ShardedDao<T> {
             return persist(entity);
         }
 
+        /**
+         * Save a batch of elements. Inserts are sent to the database in JDBC batches of batchSize, and the session is
+         * flushed and cleared after every batch to keep it from growing with the number of entities.
+         *
+         * @param entities  Objects to save
+         * @param batchSize Number of entities per JDBC batch
+         * @return The saved entities
+         */
+        List<T> saveAll(List<T> entities, int batchSize) {
+            final Session session = currentSession();
+            session.setJdbcBatchSize(batchSize);
+            int pending = 0;
+            for (T entity : entities) {
+                persist(entity);
+                if (++pending == batchSize) {
+                    session.flush();
+                    session.clear();
+                    pending = 0;
+                }
+            }
+            return entities;
+        }
+
         void update(T entity) {
             currentSession().evict(entity); //Detach .. otherwise update is a no-op
             currentSession().update(entity);
@@ -147,15 +200,22 @@ public class LookupDao<T> implements ShardedDao<T> {
         }
     }
 
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
     private List<LookupDaoPriv> daos;
     private final Class<T> entityClass;
 
     @Getter
     private final ShardCalculator<String> shardCalculator;
+    private final ScatterGatherExecutor scatterGatherExecutor;
+    private final KeyLocks keyLocks;
+    private final DaoMetrics metrics;
     private final Field keyField;
+    private final OrderedScatterGather<T> orderedScatterGather;
 
     /**
      * Creates a new sharded DAO. The number of managed shards and bucketing is controlled by the {@link ShardManager}.
+     * Queries across shards are run serially.
      *
      * @param sessionFactories a session provider for each shard
      * @param shardCalculator  calculator for shards
@@ -164,9 +224,44 @@ public class LookupDao<T> implements ShardedDao<T> {
             List<SessionFactory> sessionFactories,
             Class<T> entityClass,
             ShardCalculator<String> shardCalculator) {
+        this(sessionFactories, entityClass, shardCalculator, ScatterGatherExecutor.serial());
+    }
+
+    /**
+     * Creates a new sharded DAO. The number of managed shards and bucketing is controlled by the {@link ShardManager}.
+     *
+     * @param sessionFactories      a session provider for each shard
+     * @param shardCalculator       calculator for shards
+     * @param scatterGatherExecutor executor used to run queries across shards
+     */
+    public LookupDao(
+            List<SessionFactory> sessionFactories,
+            Class<T> entityClass,
+            ShardCalculator<String> shardCalculator,
+            ScatterGatherExecutor scatterGatherExecutor) {
+        this(sessionFactories, entityClass, shardCalculator, scatterGatherExecutor, KeyLocks.disabled());
+    }
+
+    /**
+     * Creates a new sharded DAO. The number of managed shards and bucketing is controlled by the {@link ShardManager}.
+     *
+     * @param sessionFactories      a session provider for each shard
+     * @param shardCalculator       calculator for shards
+     * @param scatterGatherExecutor executor used to run queries across shards
+     * @param keyLocks              node local locks taken before locking rows for write
+     */
+    public LookupDao(
+            List<SessionFactory> sessionFactories,
+            Class<T> entityClass,
+            ShardCalculator<String> shardCalculator,
+            ScatterGatherExecutor scatterGatherExecutor,
+            KeyLocks keyLocks) {
+        this.keyLocks = keyLocks;
+        this.metrics = DaoMetrics.forDao(sessionFactories, entityClass);
         this.daos = sessionFactories.stream().map(LookupDaoPriv::new).collect(Collectors.toList());
         this.entityClass = entityClass;
         this.shardCalculator = shardCalculator;
+        this.scatterGatherExecutor = scatterGatherExecutor;
 
         Field fields[] = FieldUtils.getFieldsWithAnnotation(entityClass, LookupKey.class);
         Preconditions.checkArgument(fields.length != 0, "At least one field needs to be sharding key");
@@ -183,10 +278,12 @@ public class LookupDao<T> implements ShardedDao<T> {
         }
         Preconditions.checkArgument(ClassUtils.isAssignable(keyField.getType(), String.class),
                                     "Key field must be a string");
+        this.orderedScatterGather = new OrderedScatterGather<>(entityClass, keyField, scatterGatherExecutor);
     }
 
     /**
      * Get an object on the basis of key (value of field annotated with {@link LookupKey}) from any shard.
+     * Repeated reads are served from the {@link RequestEntityCache} if one is open on the thread.
      * <b>Note:</b> Lazy loading will not work once the object is returned.
      * If you need lazy loading functionality use the alternate {@link #get(String, Function)} method.
      *
@@ -195,7 +292,14 @@ public class LookupDao<T> implements ShardedDao<T> {
      * @throws Exception if backing dao throws
      */
     public Optional<T> get(String key) throws Exception {
-        return Optional.ofNullable(get(key, t -> t));
+        int shardId = shardCalculator.shardId(key);
+        final T cached = RequestEntityCache.get(entityClass, shardId, key);
+        if (null != cached) {
+            return Optional.of(cached);
+        }
+        final T entity = get(shardId, key, t -> t);
+        RequestEntityCache.put(entityClass, shardId, key, entity);
+        return Optional.ofNullable(entity);
     }
 
     /**
@@ -210,9 +314,18 @@ public class LookupDao<T> implements ShardedDao<T> {
      * @throws Exception if backing dao throws
      */
     public <U> U get(String key, Function<T, U> handler) throws Exception {
-        int shardId = shardCalculator.shardId(key);
+        return get(shardCalculator.shardId(key), key, handler);
+    }
+
+    private <U> U get(int shardId, String key, Function<T, U> handler) {
         LookupDaoPriv dao = daos.get(shardId);
-        return Transactions.execute(dao.sessionFactory, true, dao::get, key, handler);
+        final long start = metrics.start();
+        try {
+            return Transactions.execute(dao.sessionFactory, true, dao::get, key, handler);
+        }
+        finally {
+            metrics.record("get", shardId, start, key, null);
+        }
     }
 
     /**
@@ -256,57 +369,234 @@ public class LookupDao<T> implements ShardedDao<T> {
         int shardId = shardCalculator.shardId(key);
         log.debug("Saving entity of type {} with key {} to shard {}", entityClass.getSimpleName(), key, shardId);
         LookupDaoPriv dao = daos.get(shardId);
-        return Transactions.execute(dao.sessionFactory, false, dao::save, entity, handler);
+        final long start = metrics.start();
+        try {
+            return Transactions.execute(dao.sessionFactory, false, dao::save, entity, handler);
+        }
+        finally {
+            RequestEntityCache.evict(entityClass, shardId, key);
+            metrics.record("save", shardId, start, key, null);
+        }
+    }
+
+    /**
+     * Save multiple objects, each to the shard for its key (value of field annotated with {@link LookupKey}), using
+     * the default batch size.
+     *
+     * @param entities Entities to save
+     * @return Outcome of the save on every shard that received entities, ordered by shard id
+     * @see #saveAll(Collection, int)
+     */
+    public List<ShardSaveResult<T>> saveAll(Collection<T> entities) {
+        return saveAll(entities, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Save multiple objects, each to the shard for its key (value of field annotated with {@link LookupKey}).
+     * Entities are grouped by shard and every group is saved in a single transaction, using JDBC batches of batchSize
+     * and clearing the session after every batch. Shards are written to in parallel using the
+     * {@link ScatterGatherExecutor} provided to the dao.
+     * A failure on one shard rolls back the entities on that shard only and is reported in the result for the shard.
+     * <b>Note:</b> Hibernate can't batch inserts for entities with database generated (identity) ids.
+     *
+     * @param entities  Entities to save
+     * @param batchSize Number of entities sent to the database per JDBC batch
+     * @return Outcome of the save on every shard that received entities, ordered by shard id
+     */
+    public List<ShardSaveResult<T>> saveAll(Collection<T> entities, int batchSize) {
+        Preconditions.checkArgument(batchSize > 0, "Batch size must be positive");
+        final Map<Integer, List<T>> entitiesByShard = new TreeMap<>();
+        for (T entity : entities) {
+            entitiesByShard.computeIfAbsent(shardCalculator.shardId(keyOf(entity)), shardId -> new ArrayList<>())
+                    .add(entity);
+        }
+        entitiesByShard.forEach((shardId, shardEntities) -> shardEntities.forEach(
+                entity -> RequestEntityCache.evict(entityClass, shardId, keyOf(entity))));
+        return scatterGatherExecutor.scatter(new ArrayList<>(entitiesByShard.entrySet()), shardEntities -> {
+            final int shardId = shardEntities.getKey();
+            final LookupDaoPriv dao = daos.get(shardId);
+            final long start = metrics.start();
+            try {
+                Transactions.execute(dao.sessionFactory, false,
+                                     batch -> dao.saveAll(batch, batchSize), shardEntities.getValue());
+                return new ShardSaveResult<>(shardId, shardEntities.getValue(), null);
+            }
+            catch (Exception e) {
+                log.error("Error saving {} entities of type {} to shard {}",
+                          shardEntities.getValue().size(), entityClass.getSimpleName(), shardId, e);
+                return new ShardSaveResult<>(shardId, shardEntities.getValue(), e);
+            }
+            finally {
+                metrics.record("saveAll", shardId, start);
+            }
+        });
     }
 
     public boolean updateInLock(String id, Function<Optional<T>, T> updater) {
         int shardId = shardCalculator.shardId(id);
         LookupDaoPriv dao = daos.get(shardId);
-        return updateImpl(id, dao::getLockedForWrite, updater, dao);
+        final long start = metrics.start();
+        try (KeyLocks.Held lock = keyLocks.acquire(id)) {
+            return updateImpl(shardId, id, dao::getLockedForWrite, updater, dao);
+        }
+        finally {
+            metrics.record("updateInLock", shardId, start, id, null);
+        }
     }
 
     public boolean update(String id, Function<Optional<T>, T> updater) {
         int shardId = shardCalculator.shardId(id);
         LookupDaoPriv dao = daos.get(shardId);
-        return updateImpl(id, dao::get, updater, dao);
+        final long start = metrics.start();
+        try {
+            return updateImpl(shardId, id, dao::get, updater, dao);
+        }
+        finally {
+            metrics.record("update", shardId, start, id, null);
+        }
+    }
+
+    /**
+     * Updates the entity without holding a row lock while the updater runs. The entity is read and the updater is
+     * called outside any transaction, and the result is written back in a short transaction that relies on the
+     * entity's {@link javax.persistence.Version} column to detect concurrent modifications. On a conflict the whole
+     * read-update-write cycle is retried, so the updater must be safe to call more than once.
+     * Inside a {@link io.appform.dropwizard.sharding.utils.ShardScope} the write is committed with the scope, so
+     * conflicts surface there and are not retried.
+     * Retries up to {@value #OPTIMISTIC_UPDATE_ATTEMPTS} times with a small random backoff.
+     *
+     * @param id      Id of the object
+     * @param updater Function to generate the updated entity. Return null to skip the update.
+     * @return true if the entity was updated, false if the updater returned null
+     * @throws OptimisticUpdateConflictException if the update kept conflicting with other writers
+     */
+    public boolean updateOptimistic(String id, Function<Optional<T>, T> updater) {
+        return updateOptimistic(id, updater, DEFAULT_OPTIMISTIC_STOP_STRATEGY, DEFAULT_OPTIMISTIC_WAIT_STRATEGY);
+    }
+
+    /**
+     * Same as {@link #updateOptimistic(String, Function)} with a custom retry policy.
+     *
+     * @param id           Id of the object
+     * @param updater      Function to generate the updated entity. Return null to skip the update.
+     * @param stopStrategy When to stop retrying on conflicts
+     * @param waitStrategy How long to wait between attempts
+     * @return true if the entity was updated, false if the updater returned null
+     * @throws OptimisticUpdateConflictException if the update kept conflicting with other writers
+     */
+    public boolean updateOptimistic(
+            String id,
+            Function<Optional<T>, T> updater,
+            StopStrategy stopStrategy,
+            WaitStrategy waitStrategy) {
+        int shardId = shardCalculator.shardId(id);
+        LookupDaoPriv dao = daos.get(shardId);
+        Preconditions.checkState(isVersioned(dao.sessionFactory),
+                                 "Entity %s needs a @Version field for optimistic updates",
+                                 entityClass.getSimpleName());
+        final long start = metrics.start();
+        try {
+            return RetryerBuilder.<Boolean>newBuilder()
+                    .retryIfException(LookupDao::isStaleState)
+                    .withStopStrategy(stopStrategy)
+                    .withWaitStrategy(waitStrategy)
+                    .build()
+                    .call(() -> {
+                        RequestEntityCache.evict(entityClass, shardId, id);
+                        final T entity = Transactions.executeOnPrimary(dao.sessionFactory, true, dao::get, id,
+                                                                       Function.identity(), true);
+                        final T newEntity = updater.apply(Optional.ofNullable(entity));
+                        if (null == newEntity) {
+                            return false;
+                        }
+                        return Transactions.execute(dao.sessionFactory, false, updated -> {
+                            dao.update(updated);
+                            return true;
+                        }, newEntity);
+                    });
+        }
+        catch (RetryException e) {
+            final Attempt<?> lastAttempt = e.getLastFailedAttempt();
+            throw new OptimisticUpdateConflictException(id, e.getNumberOfFailedAttempts(),
+                                                        lastAttempt.hasException()
+                                                        ? lastAttempt.getExceptionCause()
+                                                        : null);
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException("Error updating entity: " + id, e.getCause());
+        }
+        finally {
+            RequestEntityCache.evict(entityClass, shardId, id);
+            metrics.record("updateOptimistic", shardId, start, id, null);
+        }
+    }
+
+    private boolean isVersioned(SessionFactory sessionFactory) {
+        return sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getMetamodel()
+                .entityPersister(entityClass)
+                .isVersioned();
+    }
+
+    private static boolean isStaleState(Throwable t) {
+        for (Throwable cause = t; null != cause; cause = cause.getCause()) {
+            if (cause instanceof StaleStateException || cause instanceof OptimisticLockException) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public int updateUsingQuery(String id, UpdateOperationMeta updateOperationMeta) {
         int shardId = shardCalculator.shardId(id);
         LookupDaoPriv dao = daos.get(shardId);
-        return Transactions.execute(dao.sessionFactory, false, dao::update, updateOperationMeta);
+        RequestEntityCache.evictShard(entityClass, shardId);
+        final long start = metrics.start();
+        try {
+            return Transactions.execute(dao.sessionFactory, false, dao::update, updateOperationMeta);
+        }
+        finally {
+            metrics.record("updateUsingQuery", shardId, start, id, updateOperationMeta);
+        }
     }
 
     private boolean updateImpl(
+            int shardId,
             String id,
             Function<String, T> getter,
             Function<Optional<T>, T> updater,
             LookupDaoPriv dao) {
         try {
-            return Transactions.<T, String, Boolean>execute(dao.sessionFactory, true, getter, id, entity -> {
+            return Transactions.<T, String, Boolean>executeOnPrimary(dao.sessionFactory, true, getter, id, entity -> {
                 T newEntity = updater.apply(Optional.ofNullable(entity));
                 if (null == newEntity) {
                     return false;
                 }
                 dao.update(newEntity);
                 return true;
-            });
+            }, true);
         }
         catch (Exception e) {
             throw new RuntimeException("Error updating entity: " + id, e);
         }
+        finally {
+            RequestEntityCache.evict(entityClass, shardId, id);
+        }
     }
 
     public LockedContext<T> lockAndGetExecutor(String id) {
         int shardId = shardCalculator.shardId(id);
         LookupDaoPriv dao = daos.get(shardId);
-        return new LockedContext<>(shardId, dao.sessionFactory, dao::getLockedForWrite, id);
+        RequestEntityCache.evict(entityClass, shardId, id);
+        return new LockedContext<>(shardId, dao.sessionFactory, dao::getLockedForWrite, id, keyLocks)
+                .withMetrics(metrics);
     }
 
     public ReadOnlyContext<T> readOnlyExecutor(String id) {
         int shardId = shardCalculator.shardId(id);
         LookupDaoPriv dao = daos.get(shardId);
-        return new ReadOnlyContext<>(shardId, dao.sessionFactory, key -> dao.getLocked(key, LockMode.NONE), null, id);
+        return new ReadOnlyContext<>(shardId, dao.sessionFactory, key -> dao.getLocked(key, LockMode.NONE), null, id)
+                .withMetrics(metrics);
     }
 
     public ReadOnlyContext<T> readOnlyExecutor(String id, Supplier<Boolean> entityPopulator) {
@@ -316,7 +606,8 @@ public class LookupDao<T> implements ShardedDao<T> {
                                      dao.sessionFactory,
                                      key -> dao.getLocked(key, LockMode.NONE),
                                      entityPopulator,
-                                     id);
+                                     id)
+                .withMetrics(metrics);
     }
 
     public LockedContext<T> saveAndGetExecutor(T entity) {
@@ -329,81 +620,180 @@ public class LookupDao<T> implements ShardedDao<T> {
         }
         int shardId = shardCalculator.shardId(id);
         LookupDaoPriv dao = daos.get(shardId);
-        return new LockedContext<>(shardId, dao.sessionFactory, dao::save, entity);
+        RequestEntityCache.evict(entityClass, shardId, id);
+        return new LockedContext<>(shardId, dao.sessionFactory, dao::save, entity)
+                .withMetrics(metrics);
     }
 
     /**
      * Queries using the specified criteria across all shards and returns the result.
-     * <b>Note:</b> This method runs the query serially and it's usage is not recommended.
+     * <b>Note:</b> Shards are queried in parallel using the {@link ScatterGatherExecutor} provided to the dao.
+     * This still touches every shard, so use sparingly.
      *
      * @param criteria The selct criteria
      * @return List of elements or empty if none match
      */
     public List<T> scatterGather(DetachedCriteria criteria) {
-        return daos.stream().map(dao -> {
-            try {
-                return Transactions.execute(dao.sessionFactory, true, dao::select, criteria);
-            }
-            catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-        }).flatMap(Collection::stream).collect(Collectors.toList());
+        final long start = metrics.start();
+        try {
+            return scatterGatherExecutor.scatter(daos, dao -> {
+                try {
+                    return Transactions.execute(dao.sessionFactory, true, dao::select,
+                                                scatterGatherExecutor.criteriaForShard(criteria));
+                }
+                catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }).stream().flatMap(Collection::stream).collect(Collectors.toList());
+        }
+        finally {
+            metrics.record("scatterGather", DaoMetrics.ALL_SHARDS, start, null, criteria);
+        }
+    }
+
+    /**
+     * Queries using the specified criteria across all shards and returns the next page of results sorted by the given
+     * orders across all shards.
+     * The orders and page size are pushed down to every shard, and every shard only reads the rows that sort after the
+     * last row it returned on the previous page (as recorded in the cursor). The shard results are merged as they are
+     * read, so memory use is bounded by the page size and a deep page costs the same as the first one.
+     * The key field is used as the last order to make the ordering total.
+     * <b>Note:</b> Orders can only refer to {@link Comparable} fields of the entity and the criteria should not carry
+     * orders of its own. Sort fields need to be non-null, a row with a null sort value fails the call with an
+     * {@link IllegalStateException}.
+     *
+     * @param criteria The select criteria
+     * @param orders   Orders to sort the results by
+     * @param cursor   Cursor returned along with the previous page, null for the first page
+     * @param pageSize Maximum number of rows to be returned
+     * @return Page of elements along with the cursor for the next page
+     */
+    public KeysetPage<T> scatterGather(DetachedCriteria criteria, List<Order> orders, String cursor, int pageSize) {
+        final long start = metrics.start();
+        try {
+            return orderedScatterGather.keysetPage(daos.stream()
+                                                           .map(dao -> dao.sessionFactory)
+                                                           .collect(Collectors.toList()),
+                                                   criteria, orders, cursor, pageSize);
+        }
+        finally {
+            metrics.record("scatterGather", DaoMetrics.ALL_SHARDS, start, cursor, criteria);
+        }
     }
 
     /**
      * Queries using the specified criteria across all shards and returns the counts of rows satisfying the criteria.
-     * <b>Note:</b> This method runs the query serially and it's usage is not recommended.
+     * <b>Note:</b> Shards are queried in parallel using the {@link ScatterGatherExecutor} provided to the dao.
+     * This still touches every shard, so use sparingly.
      *
      * @param criteria The select criteria
      * @return List of counts in each shard
      */
     public List<Long> count(DetachedCriteria criteria) {
-        return daos.stream().map(dao -> {
-            try {
-                return Transactions.execute(dao.sessionFactory, true, dao::count, criteria);
-            }
-            catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-        }).collect(Collectors.toList());
+        final long start = metrics.start();
+        try {
+            return scatterGatherExecutor.scatter(daos, dao -> {
+                try {
+                    return Transactions.execute(dao.sessionFactory, true, dao::count,
+                                                scatterGatherExecutor.criteriaForShard(criteria));
+                }
+                catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+        finally {
+            metrics.record("count", DaoMetrics.ALL_SHARDS, start, null, criteria);
+        }
     }
 
     /**
-     * Queries across various shards and returns the results.
-     * <b>Note:</b> This method runs the query serially and is efficient over scatterGather and serial get of all key
+     * Looks up multiple keys across shards and returns the entities found, in the order of the keys.
+     * Keys are grouped by shard and the shards are queried in parallel using the {@link ScatterGatherExecutor}
+     * provided to the dao. Shards with a large number of keys are queried in chunks of at most
+     * {@link ScatterGatherExecutor#getMaxInListSize()} keys.
+     * Keys that are not found are skipped, keys repeated in the input are returned once.
      *
      * @param keys The list of lookup keys
      * @return List of elements or empty if none match
      */
     public List<T> get(List<String> keys) {
-        Map<Integer, List<String>> lookupKeysGroupByShards = keys.stream()
-                .collect(
-                        Collectors.groupingBy(shardCalculator::shardId, Collectors.toList()));
+        return new ArrayList<>(getAsMap(keys).values());
+    }
 
-        return lookupKeysGroupByShards.keySet().stream().map(shardId -> {
-            try {
-                DetachedCriteria criteria = DetachedCriteria.forClass(entityClass)
-                        .add(Restrictions.in(keyField.getName(), lookupKeysGroupByShards.get(shardId)));
-                return Transactions.execute(daos.get(shardId).sessionFactory,
-                                            true,
-                                            daos.get(shardId)::select,
-                                            criteria);
-            }
-            catch (Exception e) {
-                throw new RuntimeException(e);
+    /**
+     * Same as {@link #get(List)}, but returns the entities keyed by their lookup key.
+     *
+     * @param keys The list of lookup keys
+     * @return Map of key to entity, iterating in the order of the keys. Keys that are not found are skipped.
+     */
+    public Map<String, T> getAsMap(List<String> keys) {
+        final List<Pair<Integer, List<String>>> batches = new ArrayList<>();
+        keys.stream()
+                .distinct()
+                .collect(Collectors.groupingBy(shardCalculator::shardId, Collectors.toList()))
+                .forEach((shardId, shardKeys) -> Lists.partition(shardKeys, scatterGatherExecutor.getMaxInListSize())
+                        .forEach(chunk -> batches.add(Pair.of(shardId, chunk))));
+        final Map<String, T> found = new HashMap<>();
+        final long start = metrics.start();
+        try {
+            scatterGatherExecutor.scatter(batches, batch -> {
+                try {
+                    final LookupDaoPriv dao = daos.get(batch.getKey());
+                    final DetachedCriteria criteria = DetachedCriteria.forClass(entityClass)
+                            .add(Restrictions.in(keyField.getName(), batch.getValue()));
+                    return Transactions.execute(dao.sessionFactory, true, dao::select, criteria);
+                }
+                catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }).forEach(entities -> entities.forEach(entity -> found.put(keyOf(entity), entity)));
+        }
+        finally {
+            metrics.record("multiGet", DaoMetrics.ALL_SHARDS, start);
+        }
+        final Map<String, T> results = new LinkedHashMap<>();
+        keys.forEach(key -> {
+            final T entity = found.get(key);
+            if (null != entity) {
+                results.put(key, entity);
             }
-        }).flatMap(Collection::stream).collect(Collectors.toList());
+        });
+        return results;
+    }
+
+    private String keyOf(T entity) {
+        try {
+            return keyField.get(entity).toString();
+        }
+        catch (IllegalAccessException e) {
+            throw new IllegalStateException("Could not read key field " + keyField.getName(), e);
+        }
     }
 
     public <U> U runInSession(String id, Function<Session, U> handler) {
         int shardId = shardCalculator.shardId(id);
         LookupDaoPriv dao = daos.get(shardId);
-        return Transactions.execute(dao.sessionFactory, handler);
+        RequestEntityCache.evictShard(entityClass, shardId);
+        final long start = metrics.start();
+        try {
+            return Transactions.execute(dao.sessionFactory, handler);
+        }
+        finally {
+            metrics.record("runInSession", shardId, start, id, null);
+        }
     }
 
     public boolean delete(String id) {
         int shardId = shardCalculator.shardId(id);
-        return Transactions.execute(daos.get(shardId).sessionFactory, false, daos.get(shardId)::delete, id);
+        RequestEntityCache.evict(entityClass, shardId, id);
+        final long start = metrics.start();
+        try {
+            return Transactions.execute(daos.get(shardId).sessionFactory, false, daos.get(shardId)::delete, id);
+        }
+        finally {
+            metrics.record("delete", shardId, start, id, null);
+        }
     }
 
     protected Field getKeyField() {
@@ -419,6 +809,8 @@ public class LookupDao<T> implements ShardedDao<T> {
         private final String key;
         private final List<Function<T, Void>> operations = Lists.newArrayList();
         private final boolean skipTransaction;
+        @Getter(AccessLevel.NONE)
+        private DaoMetrics metrics = DaoMetrics.disabled();
 
         public ReadOnlyContext(
                 int shardId,
@@ -436,6 +828,11 @@ public class LookupDao<T> implements ShardedDao<T> {
         }
 
 
+        ReadOnlyContext<T> withMetrics(DaoMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
         public ReadOnlyContext<T> apply(Function<T, Void> handler) {
             this.operations.add(handler);
             return this;
@@ -487,17 +884,23 @@ public class LookupDao<T> implements ShardedDao<T> {
         }
 
         public Optional<T> execute() {
-            var result = executeImpl();
-            if (null == result
-                    && null != entityPopulator
-                    && Boolean.TRUE.equals(entityPopulator.get())) {//Try to populate entity (maybe from cold store etc)
-                result = executeImpl();
+            final long start = metrics.start();
+            try {
+                var result = executeImpl(true);
+                if (null == result
+                        && null != entityPopulator
+                        && Boolean.TRUE.equals(entityPopulator.get())) {//Try to populate entity (maybe from cold store etc)
+                    result = executeImpl(false); //Replicas may not have the populated entity yet
+                }
+                return Optional.ofNullable(result);
+            }
+            finally {
+                metrics.record("readOnlyContext", shardId, start, key, null);
             }
-            return Optional.ofNullable(result);
         }
 
-        private T executeImpl() {
-            TransactionHandler transactionHandler = new TransactionHandler(sessionFactory, true, this.skipTransaction);
+        private T executeImpl(boolean replicaRead) {
+            TransactionHandler transactionHandler = new TransactionHandler(sessionFactory, true, this.skipTransaction, replicaRead);
             transactionHandler.beforeStart();
             try {
                 T result = getter.apply(key);
@@ -507,9 +910,9 @@ public class LookupDao<T> implements ShardedDao<T> {
                 operations.forEach(operation -> operation.apply(result));
                 return result;
             }
-            catch (Exception e) {
-                transactionHandler.onError();
-                throw e;
+            catch (Throwable t) {
+                transactionHandler.onError(t);
+                throw t;
             }
             finally {
                 transactionHandler.afterEnd();
@@ -537,13 +940,26 @@ public class LookupDao<T> implements ShardedDao<T> {
         private String key;
         private List<Function<T, Void>> operations = Lists.newArrayList();
         private final Mode mode;
+        private final KeyLocks keyLocks;
+        @Getter(AccessLevel.NONE)
+        private DaoMetrics metrics = DaoMetrics.disabled();
 
         public LockedContext(int shardId, SessionFactory sessionFactory, Function<String, T> getter, String key) {
+            this(shardId, sessionFactory, getter, key, KeyLocks.disabled());
+        }
+
+        public LockedContext(
+                int shardId,
+                SessionFactory sessionFactory,
+                Function<String, T> getter,
+                String key,
+                KeyLocks keyLocks) {
             this.shardId = shardId;
             this.sessionFactory = sessionFactory;
             this.function = getter;
             this.key = key;
             this.mode = Mode.READ;
+            this.keyLocks = keyLocks;
         }
 
         public LockedContext(int shardId, SessionFactory sessionFactory, Function<T, T> saver, T entity) {
@@ -552,6 +968,12 @@ public class LookupDao<T> implements ShardedDao<T> {
             this.saver = saver;
             this.entity = entity;
             this.mode = Mode.INSERT;
+            this.keyLocks = KeyLocks.disabled();
+        }
+
+        LockedContext<T> withMetrics(DaoMetrics metrics) {
+            this.metrics = metrics;
+            return this;
         }
 
         public LockedContext<T> mutate(Mutator<T> mutator) {
@@ -679,20 +1101,26 @@ public class LookupDao<T> implements ShardedDao<T> {
         }
 
         public T execute() {
-            TransactionHandler transactionHandler = new TransactionHandler(sessionFactory, false);
-            transactionHandler.beforeStart();
-            try {
-                T result = generateEntity();
-                operations
-                        .forEach(operation -> operation.apply(result));
-                return result;
-            }
-            catch (Exception e) {
-                transactionHandler.onError();
-                throw e;
+            final long start = metrics.start();
+            try (KeyLocks.Held lock = keyLocks.acquire(key)) {
+                TransactionHandler transactionHandler = new TransactionHandler(sessionFactory, false);
+                transactionHandler.beforeStart();
+                try {
+                    T result = generateEntity();
+                    operations
+                            .forEach(operation -> operation.apply(result));
+                    return result;
+                }
+                catch (Throwable t) {
+                    transactionHandler.onError(t);
+                    throw t;
+                }
+                finally {
+                    transactionHandler.afterEnd();
+                }
             }
             finally {
-                transactionHandler.afterEnd();
+                metrics.record("lockedContext", shardId, start, key, null);
             }
         }
 
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.dao;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+import io.appform.dropwizard.sharding.utils.KWayMerge;
+import io.appform.dropwizard.sharding.utils.ScatterGatherExecutor;
+import io.dropwizard.jackson.Jackson;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.SerializationUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Sorted reads across a set of shards. Orders and limits are pushed down to every shard, and the per shard results are
+ * streamed through forward only cursors and merged with {@link KWayMerge}, so memory use is bounded by the page size
+ * irrespective of the number of shards.
+ */
+@Slf4j
+final class OrderedScatterGather<T> {
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+
+    /**
+     * Contents of the opaque keyset cursor. Holds the sort values of the last row returned from every shard.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class CursorState {
+        private String sort;
+        private List<List<Object>> positions;
+        private Set<Integer> exhausted;
+    }
+
+    private final Class<T> entityClass;
+    private final Field keyField;
+    private final ScatterGatherExecutor scatterGatherExecutor;
+
+    OrderedScatterGather(Class<T> entityClass, Field keyField, ScatterGatherExecutor scatterGatherExecutor) {
+        this.entityClass = entityClass;
+        this.keyField = keyField;
+        this.scatterGatherExecutor = scatterGatherExecutor;
+    }
+
+    /**
+     * Reads numRows rows starting at row start of the merged results.
+     */
+    List<T> page(
+            List<SessionFactory> sessionFactories,
+            DetachedCriteria criteria,
+            List<Order> orders,
+            int start,
+            int numRows) {
+        Preconditions.checkArgument(start >= 0, "Start can't be negative");
+        Preconditions.checkArgument(numRows >= 0, "Number of rows can't be negative");
+        final ShardSortOrder<T> sortOrder = new ShardSortOrder<>(entityClass, keyField, orders);
+        if (0 == numRows) {
+            //A limit of zero is no limit to hibernate, so shards would be read in full
+            return Collections.emptyList();
+        }
+        final int maxResults = (int) Math.min(Integer.MAX_VALUE, (long) start + numRows);
+        return withCursors(sessionFactories, criteria, sortOrder, null, maxResults,
+                           cursors -> KWayMerge.merge(cursors, sortOrder.getComparator(), start, numRows));
+    }
+
+    /**
+     * Reads the page following the position recorded in the cursor. Every shard only reads rows sorting after the last
+     * row it returned, so the cost of a page does not depend on how deep it is.
+     */
+    KeysetPage<T> keysetPage(
+            List<SessionFactory> sessionFactories,
+            DetachedCriteria criteria,
+            List<Order> orders,
+            String cursor,
+            int pageSize) {
+        Preconditions.checkArgument(pageSize > 0, "Page size needs to be positive");
+        final ShardSortOrder<T> sortOrder = new ShardSortOrder<>(entityClass, keyField, orders);
+        final int numShards = sessionFactories.size();
+        final CursorState state = null == cursor
+                                  ? new CursorState(sortOrder.toString(),
+                                                    new ArrayList<>(Collections.nCopies(numShards, null)),
+                                                    new HashSet<>())
+                                  : decode(cursor, sortOrder, numShards);
+        final int[] returned = new int[numShards];
+        return withCursors(sessionFactories, criteria, sortOrder, state, pageSize, cursors -> {
+            final List<T> items = KWayMerge.merge(cursors, sortOrder.getComparator(), 0, pageSize,
+                                                  (entity, shard) -> {
+                                                      state.getPositions().set(shard, sortOrder.valuesOf(entity));
+                                                      returned[shard]++;
+                                                  });
+            for (int shard = 0; shard < numShards; shard++) {
+                final ShardCursor<T> shardCursor = cursors.get(shard);
+                if (shardCursor.isEnded()
+                        && shardCursor.getRowsRead() < pageSize
+                        && shardCursor.getRowsRead() == returned[shard]) {
+                    state.getExhausted().add(shard);
+                }
+            }
+            return new KeysetPage<>(items, state.getExhausted().size() == numShards ? null : encode(state));
+        });
+    }
+
+    private <R> R withCursors(
+            List<SessionFactory> sessionFactories,
+            DetachedCriteria criteria,
+            ShardSortOrder<T> sortOrder,
+            CursorState state,
+            int maxResults,
+            Function<List<ShardCursor<T>>, R> merger) {
+        final List<ShardCursor<T>> openCursors = new CopyOnWriteArrayList<>();
+        final AtomicBoolean done = new AtomicBoolean();
+        try {
+            final List<Integer> shards = IntStream.range(0, sessionFactories.size())
+                    .boxed()
+                    .collect(Collectors.toList());
+            final List<ShardCursor<T>> cursors = scatterGatherExecutor.scatter(shards, shard -> {
+                if (null != state && state.getExhausted().contains(shard)) {
+                    return ShardCursor.<T>empty();
+                }
+                final DetachedCriteria shardCriteria = SerializationUtils.clone(criteria);
+                if (null != state && null != state.getPositions().get(shard)) {
+                    shardCriteria.add(sortOrder.after(state.getPositions().get(shard)));
+                }
+                sortOrder.getOrders().forEach(shardCriteria::addOrder);
+                final ShardCursor<T> cursor = ShardCursor.open(sessionFactories.get(shard), shardCriteria, sortOrder, maxResults);
+                openCursors.add(cursor);
+                if (done.get()) {
+                    //Scatter has already failed, nobody else will close this one
+                    cursor.close();
+                }
+                return cursor;
+            });
+            return merger.apply(cursors);
+        }
+        finally {
+            done.set(true);
+            openCursors.forEach(cursor -> {
+                try {
+                    cursor.close();
+                }
+                catch (Exception e) {
+                    log.error("Error closing shard cursor", e);
+                }
+            });
+        }
+    }
+
+    private static String encode(CursorState state) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(state));
+        }
+        catch (Exception e) {
+            throw new IllegalStateException("Could not create cursor", e);
+        }
+    }
+
+    private CursorState decode(String cursor, ShardSortOrder<T> sortOrder, int numShards) {
+        final CursorState state;
+        try {
+            state = MAPPER.readValue(Base64.getUrlDecoder().decode(cursor), CursorState.class);
+        }
+        catch (Exception e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+        Preconditions.checkArgument(sortOrder.toString().equals(state.getSort()),
+                                    "Cursor was created for a different sort order");
+        Preconditions.checkArgument(null != state.getPositions() && state.getPositions().size() == numShards,
+                                    "Cursor was created for a different set of shards");
+        if (null == state.getExhausted()) {
+            state.setExhausted(new HashSet<>());
+        }
+        final List<Class<?>> types = sortOrder.types();
+        for (int shard = 0; shard < numShards; shard++) {
+            final List<Object> position = state.getPositions().get(shard);
+            if (null == position) {
+                continue;
+            }
+            Preconditions.checkArgument(position.size() == types.size(), "Invalid cursor");
+            final List<Object> values = new ArrayList<>(position.size());
+            for (int i = 0; i < position.size(); i++) {
+                try {
+                    values.add(MAPPER.convertValue(position.get(i), types.get(i)));
+                }
+                catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid cursor", e);
+                }
+            }
+            state.getPositions().set(shard, values);
+        }
+        return state;
+    }
+}
@@ -18,6 +18,9 @@
 package io.appform.dropwizard.sharding.dao;
 
 import com.google.common.base.Preconditions;
+import io.appform.dropwizard.sharding.caching.RequestEntityCache;
+import io.appform.dropwizard.sharding.utils.DaoMetrics;
+import io.appform.dropwizard.sharding.utils.ScatterGatherExecutor;
 import io.appform.dropwizard.sharding.utils.ShardCalculator;
 import io.appform.dropwizard.sharding.utils.Transactions;
 import io.dropwizard.hibernate.AbstractDAO;
@@ -28,6 +31,7 @@ import lombok.val;
 import org.apache.commons.lang3.reflect.FieldUtils;
 import org.hibernate.*;
 import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.query.Query;
@@ -35,12 +39,15 @@ import org.hibernate.query.Query;
 import javax.persistence.Id;
 import java.lang.reflect.Field;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.BooleanSupplier;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * A dao used to work with entities related to a parent shard. The parent may or maynot be physically present.
@@ -81,6 +88,25 @@ public class RelationalDao<T> implements ShardedDao<T> {
             return true;
         }
 
+        /**
+         * Saves entities as they are read from the source. Inserts are sent to the database in JDBC batches of
+         * batchSize, and the session is flushed and cleared after every batch, so memory use does not depend on the
+         * number of entities.
+         */
+        long saveAll(Iterator<T> entities, int batchSize) {
+            final Session session = currentSession();
+            session.setJdbcBatchSize(batchSize);
+            long saved = 0;
+            while (entities.hasNext()) {
+                persist(entities.next());
+                if (++saved % batchSize == 0) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+            return saved;
+        }
+
         void update(T oldEntity, T entity) {
             currentSession().evict(oldEntity); //Detach .. otherwise update is a no-op
             currentSession().update(entity);
@@ -129,10 +155,13 @@ public class RelationalDao<T> implements ShardedDao<T> {
     private final Class<T> entityClass;
     @Getter
     private final ShardCalculator<String> shardCalculator;
+    private final ScatterGatherExecutor scatterGatherExecutor;
     private final Field keyField;
+    private final OrderedScatterGather<T> orderedScatterGather;
+    private final DaoMetrics metrics;
 
     /**
-     * Create a relational DAO.
+     * Create a relational DAO. Queries across shards are run serially.
      * @param sessionFactories List of session factories. One for each shard.
      * @param entityClass The class for which the dao will be used.
      * @param shardCalculator
@@ -140,9 +169,25 @@ public class RelationalDao<T> implements ShardedDao<T> {
     public RelationalDao(
             List<SessionFactory> sessionFactories, Class<T> entityClass,
             ShardCalculator<String> shardCalculator ) {
+        this(sessionFactories, entityClass, shardCalculator, ScatterGatherExecutor.serial());
+    }
+
+    /**
+     * Create a relational DAO.
+     * @param sessionFactories List of session factories. One for each shard.
+     * @param entityClass The class for which the dao will be used.
+     * @param shardCalculator {@link ShardCalculator} for finding shard
+     * @param scatterGatherExecutor Executor used to run queries across shards
+     */
+    public RelationalDao(
+            List<SessionFactory> sessionFactories, Class<T> entityClass,
+            ShardCalculator<String> shardCalculator,
+            ScatterGatherExecutor scatterGatherExecutor) {
         this.shardCalculator = shardCalculator;
+        this.scatterGatherExecutor = scatterGatherExecutor;
         this.daos = sessionFactories.stream().map(RelationalDaoPriv::new).collect(Collectors.toList());
         this.entityClass = entityClass;
+        this.metrics = DaoMetrics.forDao(sessionFactories, entityClass);
 
         Field fields[] = FieldUtils.getFieldsWithAnnotation(entityClass, Id.class);
         Preconditions.checkArgument(fields.length != 0, "A field needs to be designated as @Id");
@@ -156,17 +201,51 @@ public class RelationalDao<T> implements ShardedDao<T> {
                 throw new IllegalArgumentException("Invalid class, DAO cannot be created.", e);
             }
         }
+        this.orderedScatterGather = new OrderedScatterGather<>(entityClass, keyField, scatterGatherExecutor);
     }
 
 
+    /**
+     * Get an entity by key from the shard of the parent. Repeated reads are served from the
+     * {@link RequestEntityCache} if one is open on the thread.
+     */
     public Optional<T> get(String parentKey, Object key) throws Exception {
-        return Optional.ofNullable(get(parentKey, key, t-> t));
+        int shardId = shardCalculator.shardId(parentKey);
+        final T cached = RequestEntityCache.get(entityClass, shardId, key);
+        if (null != cached) {
+            return Optional.of(cached);
+        }
+        RelationalDaoPriv dao = daos.get(shardId);
+        final long start = metrics.start();
+        try {
+            final T entity = Transactions.execute(dao.sessionFactory, true, dao::get, key, t -> t);
+            RequestEntityCache.put(entityClass, shardId, key, entity);
+            return Optional.ofNullable(entity);
+        }
+        finally {
+            metrics.record("get", shardId, start, parentKey, key);
+        }
     }
 
     public<U> U get(String parentKey, Object key, Function<T, U> function) {
         int shardId = shardCalculator.shardId(parentKey);
         RelationalDaoPriv dao = daos.get(shardId);
-        return Transactions.execute(dao.sessionFactory, true, dao::get, key, function);
+        final long start = metrics.start();
+        try {
+            return Transactions.execute(dao.sessionFactory, true, dao::get, key, function);
+        }
+        finally {
+            metrics.record("get", shardId, start, parentKey, key);
+        }
+    }
+
+    /**
+     * Dao for a write on the shard. Evicts the entities of this type cached for the shard, as the write may change
+     * any of them.
+     */
+    private RelationalDaoPriv writeDao(int shardId) {
+        RequestEntityCache.evictShard(entityClass, shardId);
+        return daos.get(shardId);
     }
 
     public Optional<T> save(String parentKey, T entity) throws Exception {
@@ -175,28 +254,88 @@ public class RelationalDao<T> implements ShardedDao<T> {
 
     public <U> U save(String parentKey, T entity, Function<T, U> handler) {
         int shardId = shardCalculator.shardId(parentKey);
-        RelationalDaoPriv dao = daos.get(shardId);
-        return Transactions.execute(dao.sessionFactory, false, dao::save, entity, handler);
+        RelationalDaoPriv dao = writeDao(shardId);
+        final long start = metrics.start();
+        try {
+            return Transactions.execute(dao.sessionFactory, false, dao::save, entity, handler);
+        }
+        finally {
+            metrics.record("save", shardId, start, parentKey, null);
+        }
     }
 
     public boolean saveAll(String parentKey, Collection<T> entities) {
         int shardId = shardCalculator.shardId(parentKey);
-        RelationalDaoPriv dao = daos.get(shardId);
-        return Transactions.execute(dao.sessionFactory, false, dao::saveAll, entities);
+        RelationalDaoPriv dao = writeDao(shardId);
+        final long start = metrics.start();
+        try {
+            return Transactions.execute(dao.sessionFactory, false, dao::saveAll, entities);
+        }
+        finally {
+            metrics.record("saveAll", shardId, start, parentKey, null);
+        }
+    }
+
+    /**
+     * Save entities related to the parent key in a single transaction, in JDBC batches of batchSize.
+     * The session is flushed and cleared after every batch, so the entities are detached once saved.
+     * <b>Note:</b> Hibernate can't batch inserts for entities with database generated (identity) ids.
+     * @param parentKey Key for the parent, used to find the shard
+     * @param entities Entities to save
+     * @param batchSize Number of entities sent to the database per JDBC batch
+     * @return true once saved
+     */
+    public boolean saveAll(String parentKey, Collection<T> entities, int batchSize) {
+        saveAll(parentKey, entities.iterator(), batchSize);
+        return true;
+    }
+
+    /**
+     * Save entities related to the parent key as they are read from the source, in a single transaction and in JDBC
+     * batches of batchSize. The session is flushed and cleared after every batch, so memory use stays constant
+     * irrespective of the number of entities.
+     * <b>Note:</b> Hibernate can't batch inserts for entities with database generated (identity) ids.
+     * @param parentKey Key for the parent, used to find the shard
+     * @param entities Source of entities to save
+     * @param batchSize Number of entities sent to the database per JDBC batch
+     * @return Number of entities saved
+     */
+    public long saveAll(String parentKey, Iterator<T> entities, int batchSize) {
+        Preconditions.checkArgument(batchSize > 0, "Batch size must be positive");
+        int shardId = shardCalculator.shardId(parentKey);
+        RelationalDaoPriv dao = writeDao(shardId);
+        final long start = metrics.start();
+        try {
+            return Transactions.execute(dao.sessionFactory, false, source -> dao.saveAll(source, batchSize), entities);
+        }
+        finally {
+            metrics.record("saveAll", shardId, start, parentKey, null);
+        }
+    }
+
+    /**
+     * Same as {@link #saveAll(String, Iterator, int)}, for a stream of entities. The stream is consumed but not closed.
+     * @param parentKey Key for the parent, used to find the shard
+     * @param entities Stream of entities to save
+     * @param batchSize Number of entities sent to the database per JDBC batch
+     * @return Number of entities saved
+     */
+    public long saveAll(String parentKey, Stream<T> entities, int batchSize) {
+        return saveAll(parentKey, entities.iterator(), batchSize);
     }
 
     <U> void save(LookupDao.LockedContext<U> context, T entity) {
-        RelationalDaoPriv dao = daos.get(context.getShardId());
+        RelationalDaoPriv dao = writeDao(context.getShardId());
         Transactions.execute(context.getSessionFactory(), false, dao::save, entity, t->t, false);
     }
 
     <U> void save(LookupDao.LockedContext<U> context, T entity, Function<T, T> handler) {
-        RelationalDaoPriv dao = daos.get(context.getShardId());
+        RelationalDaoPriv dao = writeDao(context.getShardId());
         Transactions.execute(context.getSessionFactory(), false, dao::save, entity, handler, false);
     }
 
     <U> boolean update(LookupDao.LockedContext<U> context, Object id, Function<T, T> updater) {
-        RelationalDaoPriv dao = daos.get(context.getShardId());
+        RelationalDaoPriv dao = writeDao(context.getShardId());
         return update(context.getSessionFactory(), dao, id, updater, false);
     }
 
@@ -204,7 +343,7 @@ public class RelationalDao<T> implements ShardedDao<T> {
                        DetachedCriteria criteria,
                        Function<T, T> updater,
                        BooleanSupplier updateNext) {
-        final RelationalDaoPriv dao = daos.get(context.getShardId());
+        final RelationalDaoPriv dao = writeDao(context.getShardId());
 
         try {
             final ScrollParamPriv scrollParam = ScrollParamPriv.builder()
@@ -249,19 +388,31 @@ public class RelationalDao<T> implements ShardedDao<T> {
 
     public boolean update(String parentKey, Object id, Function<T, T> updater) {
         int shardId = shardCalculator.shardId(parentKey);
-        RelationalDaoPriv dao = daos.get(shardId);
-        return update(dao.sessionFactory, dao, id, updater, true);
+        RelationalDaoPriv dao = writeDao(shardId);
+        final long start = metrics.start();
+        try {
+            return update(dao.sessionFactory, dao, id, updater, true);
+        }
+        finally {
+            metrics.record("update", shardId, start, parentKey, id);
+        }
     }
 
     public <U> U runInSession(String id, Function<Session, U> handler) {
         int shardId = shardCalculator.shardId(id);
-        RelationalDaoPriv dao = daos.get(shardId);
-        return Transactions.execute(dao.sessionFactory, handler);
+        RelationalDaoPriv dao = writeDao(shardId);
+        final long start = metrics.start();
+        try {
+            return Transactions.execute(dao.sessionFactory, handler);
+        }
+        finally {
+            metrics.record("runInSession", shardId, start, id, null);
+        }
     }
 
     private boolean update(SessionFactory daoSessionFactory, RelationalDaoPriv dao, Object id, Function<T, T> updater, boolean completeTransaction){
         try {
-            return Transactions.<T, Object, Boolean>execute(daoSessionFactory, true, dao::get, id, (T entity) -> {
+            return Transactions.<T, Object, Boolean>executeOnPrimary(daoSessionFactory, true, dao::get, id, (T entity) -> {
                 if(null == entity) {
                     return false;
                 }
@@ -279,14 +430,15 @@ public class RelationalDao<T> implements ShardedDao<T> {
 
     public boolean update(String parentKey, DetachedCriteria criteria, Function<T, T> updater) {
         int shardId = shardCalculator.shardId(parentKey);
-        RelationalDaoPriv dao = daos.get(shardId);
+        RelationalDaoPriv dao = writeDao(shardId);
+        final long start = metrics.start();
         try {
             SelectParamPriv selectParam = SelectParamPriv.builder()
                                                 .criteria(criteria)
                                                 .start(0)
                                                 .numRows(1)
                                                 .build();
-            return Transactions.<List<T>, SelectParamPriv, Boolean>execute(dao.sessionFactory, true, dao::select, selectParam, (List<T> entityList) -> {
+            return Transactions.<List<T>, SelectParamPriv, Boolean>executeOnPrimary(dao.sessionFactory, true, dao::select, selectParam, (List<T> entityList) -> {
                 if(entityList == null || entityList.isEmpty()) {
                     return false;
                 }
@@ -300,21 +452,30 @@ public class RelationalDao<T> implements ShardedDao<T> {
                 }
                 dao.update(oldEntity, newEntity);
                 return true;
-            });
+            }, true);
         } catch (Exception e) {
             throw new RuntimeException("Error updating entity with criteria: " + criteria, e);
         }
+        finally {
+            metrics.record("update", shardId, start, parentKey, criteria);
+        }
     }
 
 
     public int updateUsingQuery(String parentKey, UpdateOperationMeta updateOperationMeta) {
         int shardId = shardCalculator.shardId(parentKey);
-        val dao = daos.get(shardId);
-        return Transactions.execute(dao.sessionFactory, false, dao::update, updateOperationMeta);
+        val dao = writeDao(shardId);
+        final long start = metrics.start();
+        try {
+            return Transactions.execute(dao.sessionFactory, false, dao::update, updateOperationMeta);
+        }
+        finally {
+            metrics.record("updateUsingQuery", shardId, start, parentKey, updateOperationMeta);
+        }
     }
 
     public <U> int updateUsingQuery(LookupDao.LockedContext<U> lockedContext, UpdateOperationMeta updateOperationMeta) {
-        val dao = daos.get(lockedContext.getShardId());
+        val dao = writeDao(lockedContext.getShardId());
         return Transactions.execute(lockedContext.getSessionFactory(), false, dao::update, updateOperationMeta, false);
     }
 
@@ -323,7 +484,7 @@ public class RelationalDao<T> implements ShardedDao<T> {
                                DetachedCriteria criteria,
                                Function<T, T> updater,
                                Supplier<T> entityGenerator) {
-        final RelationalDaoPriv dao = daos.get(context.getShardId());
+        final RelationalDaoPriv dao = writeDao(context.getShardId());
 
         try {
             final SelectParamPriv selectParam = SelectParamPriv.builder()
@@ -359,14 +520,15 @@ public class RelationalDao<T> implements ShardedDao<T> {
 
     public boolean updateAll(String parentKey, int start, int numRows, DetachedCriteria criteria, Function<T, T> updater) {
         int shardId = shardCalculator.shardId(parentKey);
-        RelationalDaoPriv dao = daos.get(shardId);
+        RelationalDaoPriv dao = writeDao(shardId);
+        final long startTime = metrics.start();
         try {
             SelectParamPriv selectParam = SelectParamPriv.builder()
                     .criteria(criteria)
                     .start(start)
                     .numRows(numRows)
                     .build();
-            return Transactions.<List<T>, SelectParamPriv, Boolean>execute(dao.sessionFactory, true, dao::select, selectParam, entityList -> {
+            return Transactions.<List<T>, SelectParamPriv, Boolean>executeOnPrimary(dao.sessionFactory, true, dao::select, selectParam, entityList -> {
                 if (entityList == null || entityList.isEmpty()) {
                     return false;
                 }
@@ -381,10 +543,13 @@ public class RelationalDao<T> implements ShardedDao<T> {
                     dao.update(oldEntity, newEntity);
                 }
                 return true;
-            });
+            }, true);
         } catch (Exception e) {
             throw new RuntimeException("Error updating entity with criteria: " + criteria, e);
         }
+        finally {
+            metrics.record("updateAll", shardId, startTime, parentKey, criteria);
+        }
     }
 
     public List<T> select(String parentKey, DetachedCriteria criteria, int first, int numResults) throws Exception {
@@ -399,52 +564,175 @@ public class RelationalDao<T> implements ShardedDao<T> {
                 .start(first)
                 .numRows(numResults)
                 .build();
-        return Transactions.execute(dao.sessionFactory, true, dao::select, selectParam, handler);
+        final long start = metrics.start();
+        try {
+            return Transactions.execute(dao.sessionFactory, true, dao::select, selectParam, handler);
+        }
+        finally {
+            metrics.record("select", shardId, start, parentKey, criteria);
+        }
+    }
+
+    /**
+     * Returns the next page of results from the shard for the parent key, sorted by the given orders.
+     * The cursor records the sort values of the last row returned, and the next page only reads rows sorting after it,
+     * so reading a deep page costs the same as reading the first one. The id field is used as the last order to make
+     * the ordering total.
+     * <b>Note:</b> Orders can only refer to non-nullable {@link Comparable} fields of the entity and the criteria
+     * should not carry orders of its own.
+     * @param parentKey Key for the parent, used to find the shard
+     * @param criteria The select criteria
+     * @param orders Orders to sort the results by
+     * @param cursor Cursor returned along with the previous page, null for the first page
+     * @param numResults Maximum number of rows to be returned
+     * @return Page of elements along with the cursor for the next page
+     */
+    public KeysetPage<T> select(
+            String parentKey, DetachedCriteria criteria, List<Order> orders, String cursor, int numResults) {
+        int shardId = shardCalculator.shardId(parentKey);
+        RelationalDaoPriv dao = daos.get(shardId);
+        final long start = metrics.start();
+        try {
+            return orderedScatterGather.keysetPage(Collections.singletonList(dao.sessionFactory),
+                                                   criteria, orders, cursor, numResults);
+        }
+        finally {
+            metrics.record("select", shardId, start, parentKey, criteria);
+        }
     }
 
     public long count(String parentKey, DetachedCriteria criteria) {
         int shardId = shardCalculator.shardId(parentKey);
         RelationalDaoPriv dao = daos.get(shardId);
-        return Transactions.<Long, DetachedCriteria>execute(dao.sessionFactory, true, dao::count, criteria);
+        final long start = metrics.start();
+        try {
+            return Transactions.<Long, DetachedCriteria>execute(dao.sessionFactory, true, dao::count, criteria);
+        }
+        finally {
+            metrics.record("count", shardId, start, parentKey, criteria);
+        }
     }
 
 
     public boolean exists(String parentKey, Object key) {
         int shardId = shardCalculator.shardId(parentKey);
         RelationalDaoPriv dao = daos.get(shardId);
-        Optional<T> result = Transactions.<T, Object>executeAndResolve(dao.sessionFactory, true, dao::get, key);
-        return result.isPresent();
+        final long start = metrics.start();
+        try {
+            Optional<T> result = Transactions.<T, Object>executeAndResolve(dao.sessionFactory, true, dao::get, key);
+            return result.isPresent();
+        }
+        finally {
+            metrics.record("exists", shardId, start, parentKey, key);
+        }
     }
 
     /**
      * Queries using the specified criteria across all shards and returns the counts of rows satisfying the criteria.
-     * <b>Note:</b> This method runs the query serially and it's usage is not recommended.
+     * <b>Note:</b> Shards are queried in parallel using the {@link ScatterGatherExecutor} provided to the dao.
+     * This still touches every shard, so use sparingly.
      * @param criteria The select criteria
      * @return List of counts in each shard
      */
     public List<Long> countScatterGather(DetachedCriteria criteria) {
-        return daos.stream().map(dao -> {
-            try {
-                return Transactions.execute(dao.sessionFactory, true, dao::count, criteria);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-        }).collect(Collectors.toList());
+        final long start = metrics.start();
+        try {
+            return scatterGatherExecutor.scatter(daos, dao -> {
+                try {
+                    return Transactions.execute(dao.sessionFactory, true, dao::count,
+                                                scatterGatherExecutor.criteriaForShard(criteria));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+        finally {
+            metrics.record("count", DaoMetrics.ALL_SHARDS, start, null, criteria);
+        }
     }
 
+    /**
+     * Queries using the specified criteria across all shards and returns the result.
+     * <b>Note:</b> Shards are queried in parallel using the {@link ScatterGatherExecutor} provided to the dao.
+     * start and numRows are applied on every shard individually.
+     * Use {@link #scatterGather(DetachedCriteria, List, int, int)} for pagination over the combined results.
+     * @param criteria The select criteria
+     * @param start Starting row on each shard
+     * @param numRows Maximum number of rows to be returned from each shard
+     * @return List of elements or empty if none match
+     */
     public List<T> scatterGather(DetachedCriteria criteria, int start, int numRows) {
-        return daos.stream().map(dao -> {
-            try {
-                SelectParamPriv selectParam = SelectParamPriv.<T>builder()
-                        .criteria(criteria)
-                        .start(start)
-                        .numRows(numRows)
-                        .build();
-                return Transactions.execute(dao.sessionFactory, true, dao::select, selectParam);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-        }).flatMap(Collection::stream).collect(Collectors.toList());
+        final long startTime = metrics.start();
+        try {
+            return scatterGatherExecutor.scatter(daos, dao -> {
+                try {
+                    SelectParamPriv selectParam = SelectParamPriv.<T>builder()
+                            .criteria(scatterGatherExecutor.criteriaForShard(criteria))
+                            .start(start)
+                            .numRows(numRows)
+                            .build();
+                    return Transactions.execute(dao.sessionFactory, true, dao::select, selectParam);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }).stream().flatMap(Collection::stream).collect(Collectors.toList());
+        }
+        finally {
+            metrics.record("scatterGather", DaoMetrics.ALL_SHARDS, startTime, null, criteria);
+        }
+    }
+
+    /**
+     * Queries using the specified criteria across all shards and returns a single page of results sorted by the
+     * given orders across all shards.
+     * The orders and a limit of start + numRows are pushed down to every shard, and the shard results are merged
+     * as they are read, so at most one page of entities is held in memory irrespective of the number of shards.
+     * The id field is used as the last order to make the ordering total.
+     * <b>Note:</b> Orders can only refer to {@link Comparable} fields of the entity and the criteria should not carry
+     * orders of its own. Sort fields need to be non-null, a row with a null sort value fails the call with an
+     * {@link IllegalStateException}.
+     * @param criteria The select criteria
+     * @param orders Orders to sort the results by
+     * @param start Starting row in the merged results
+     * @param numRows Maximum number of rows to be returned
+     * @return Page of elements or empty if none match
+     */
+    public List<T> scatterGather(DetachedCriteria criteria, List<Order> orders, int start, int numRows) {
+        final long startTime = metrics.start();
+        try {
+            return orderedScatterGather.page(sessionFactories(), criteria, orders, start, numRows);
+        }
+        finally {
+            metrics.record("scatterGather", DaoMetrics.ALL_SHARDS, startTime, null, criteria);
+        }
+    }
+
+    /**
+     * Queries using the specified criteria across all shards and returns the next page of results sorted by the given
+     * orders across all shards.
+     * Instead of skipping rows, every shard only reads the rows that sort after the last row it returned on the
+     * previous page (as recorded in the cursor), so reading a deep page costs the same as reading the first one.
+     * The same orders and ordering rules as {@link #scatterGather(DetachedCriteria, List, int, int)} apply: sort
+     * fields need to be non-null, and a row with a null sort value fails the call with an
+     * {@link IllegalStateException}.
+     * @param criteria The select criteria
+     * @param orders Orders to sort the results by
+     * @param cursor Cursor returned along with the previous page, null for the first page
+     * @param numRows Maximum number of rows to be returned
+     * @return Page of elements along with the cursor for the next page
+     */
+    public KeysetPage<T> scatterGather(DetachedCriteria criteria, List<Order> orders, String cursor, int numRows) {
+        final long start = metrics.start();
+        try {
+            return orderedScatterGather.keysetPage(sessionFactories(), criteria, orders, cursor, numRows);
+        }
+        finally {
+            metrics.record("scatterGather", DaoMetrics.ALL_SHARDS, start, cursor, criteria);
+        }
+    }
+
+    private List<SessionFactory> sessionFactories() {
+        return daos.stream().map(dao -> dao.sessionFactory).collect(Collectors.toList());
     }
 
     protected Field getKeyField() {
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.dao;
+
+import io.appform.dropwizard.sharding.utils.Deadline;
+import io.appform.dropwizard.sharding.utils.TransactionHandler;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Criteria;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.DetachedCriteria;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Forward only, read only cursor over the results of a criteria on a single shard. The cursor owns its session, which
+ * is not bound to any thread, so it can be opened on one thread and read on another. Rows are evicted from the
+ * session as they are read. The cursor needs to be closed once done,
+ * closing it more than once is a no-op.
+ * The transaction of the cursor is run through a detached {@link TransactionHandler}, so it takes a slot on the shard
+ * bulkhead till the cursor is closed and is seen by the circuit breaker and transaction listeners of the shard.
+ * With a {@link Deadline} set when the cursor is opened, the transaction and query time out at it, and reading rows
+ * fails with a {@link io.appform.dropwizard.sharding.exceptions.DeadlineExceededException} once the deadline of the
+ * reading thread has passed.
+ */
+@Slf4j
+final class ShardCursor<T> implements Iterator<T>, AutoCloseable {
+    private static final int MAX_FETCH_SIZE = 500;
+
+    private final TransactionHandler transactionHandler;
+    private final ShardSortOrder<T> sortOrder;
+    private final Session session;
+    private final ScrollableResults results;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private RuntimeException failure;
+    private T next;
+    private T previous;
+    private boolean fetched;
+    private boolean ended;
+    private int rowsRead;
+
+    private ShardCursor(TransactionHandler transactionHandler, ShardSortOrder<T> sortOrder, ScrollableResults results) {
+        this.transactionHandler = transactionHandler;
+        this.sortOrder = sortOrder;
+        this.session = null == transactionHandler ? null : transactionHandler.getSession();
+        this.results = results;
+    }
+
+    /**
+     * Cursor with no rows, for shards that don't need to be queried.
+     */
+    static <T> ShardCursor<T> empty() {
+        return new ShardCursor<>(null, null, null);
+    }
+
+    /**
+     * @param sortOrder Order the criteria sorts rows in, checked as rows are read. Can be null for unordered reads.
+     */
+    static <T> ShardCursor<T> open(
+            SessionFactory sessionFactory,
+            DetachedCriteria criteria,
+            ShardSortOrder<T> sortOrder,
+            int maxResults) {
+        //The connection is acquired when the transaction begins and is held till the cursor is closed
+        final TransactionHandler transactionHandler = TransactionHandler.detached(sessionFactory, true);
+        transactionHandler.beforeStart();
+        try {
+            final Criteria executableCriteria = criteria.getExecutableCriteria(transactionHandler.getSession())
+                    .setMaxResults(maxResults)
+                    .setFetchSize(Math.min(maxResults, MAX_FETCH_SIZE));
+            if (Deadline.isSet()) {
+                executableCriteria.setTimeout(Deadline.remainingSeconds());
+            }
+            return new ShardCursor<>(transactionHandler, sortOrder, executableCriteria.scroll(ScrollMode.FORWARD_ONLY));
+        }
+        catch (RuntimeException e) {
+            transactionHandler.onError(e);
+            throw e;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean hasNext() {
+        if (!fetched) {
+            try {
+                Deadline.check();
+                next = null != results && results.next() ? (T) results.get(0) : null;
+                if (null != next && null != sortOrder) {
+                    sortOrder.checkNext(previous, next);
+                }
+            }
+            catch (RuntimeException e) {
+                failure = e;
+                throw e;
+            }
+            if (null != next) {
+                session.evict(next);
+                previous = next;
+                rowsRead++;
+            }
+            else {
+                ended = true;
+            }
+            fetched = true;
+        }
+        return null != next;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        fetched = false;
+        return next;
+    }
+
+    /**
+     * Whether all rows matched by the query on the shard have been read.
+     * Only known once {@link #hasNext()} has returned false.
+     */
+    boolean isEnded() {
+        return ended;
+    }
+
+    int getRowsRead() {
+        return rowsRead;
+    }
+
+    @Override
+    public void close() {
+        if (null == session || !closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            results.close();
+        }
+        catch (RuntimeException e) {
+            if (null == failure) {
+                failure = e;
+            }
+        }
+        if (null != failure) {
+            transactionHandler.onError(failure);
+        }
+        else {
+            transactionHandler.afterEnd();
+        }
+    }
+}
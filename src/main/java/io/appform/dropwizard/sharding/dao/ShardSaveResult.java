@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.dao;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk save on a single shard. All entities routed to a shard are saved in one transaction, so they are
+ * either all saved or none are.
+ */
+@Data
+@AllArgsConstructor
+public class ShardSaveResult<T> {
+
+    private final int shardId;
+
+    /**
+     * Entities routed to the shard
+     */
+    private final List<T> entities;
+
+    /**
+     * Reason the save failed, null if it succeeded
+     */
+    private final Exception error;
+
+    public boolean isSuccess() {
+        return null == error;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.dao;
+
+import com.google.common.base.Preconditions;
+import lombok.Getter;
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.hibernate.criterion.Conjunction;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Disjunction;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Sort order for queries that are merged across shards. Holds the orders to be pushed down to every shard and the
+ * equivalent in memory comparator used to merge the shard results. The id field is appended as the last order
+ * (unless already present) so that the ordering is total.
+ * The comparator uses the natural ordering of the field types, so the database needs to sort the same way: sort
+ * columns may not hold nulls, whose position differs across databases, and string columns need a binary
+ * (case and accent sensitive) collation. Shards are checked to return rows in comparator order as they are read,
+ * and a merge fails with an {@link IllegalStateException} instead of skipping or repeating rows when they don't.
+ */
+final class ShardSortOrder<T> {
+    @Getter
+    private final List<Order> orders;
+    private final List<Field> fields;
+    @Getter
+    private final Comparator<T> comparator;
+
+    ShardSortOrder(Class<T> entityClass, Field keyField, List<Order> requestedOrders) {
+        final List<Order> allOrders = new ArrayList<>(requestedOrders);
+        if (requestedOrders.stream().noneMatch(order -> order.getPropertyName().equals(keyField.getName()))) {
+            allOrders.add(Order.asc(keyField.getName()));
+        }
+        this.orders = Collections.unmodifiableList(allOrders);
+        this.fields = new ArrayList<>(allOrders.size());
+        Comparator<T> merged = null;
+        for (Order order : allOrders) {
+            Preconditions.checkArgument(!order.isIgnoreCase(),
+                                        "Case insensitive order on %s is not supported across shards",
+                                        order.getPropertyName());
+            final Field field = FieldUtils.getField(entityClass, order.getPropertyName(), true);
+            Preconditions.checkArgument(null != field,
+                                        "Sort property %s is not a field of %s",
+                                        order.getPropertyName(), entityClass.getSimpleName());
+            Preconditions.checkArgument(field.getType().isPrimitive()
+                                                || Comparable.class.isAssignableFrom(field.getType()),
+                                        "Sort property %s is not comparable", order.getPropertyName());
+            final int index = fields.size();
+            fields.add(field);
+            final Comparator<T> fieldComparator = order.isAscending()
+                                                  ? Comparator.comparing(entity -> valueOf(entity, index),
+                                                                         Comparator.nullsFirst(Comparator.naturalOrder()))
+                                                  : Comparator.comparing(entity -> valueOf(entity, index),
+                                                                         Comparator.nullsLast(Comparator.reverseOrder()));
+            merged = null == merged ? fieldComparator : merged.thenComparing(fieldComparator);
+        }
+        this.comparator = merged;
+    }
+
+    /**
+     * Checks that a shard returned the row in merge order.
+     *
+     * @param previous Row read from the shard before this one, null for the first row
+     * @param current  Row just read from the shard
+     * @throws IllegalStateException if a sort property is null or the row sorts before the previous one
+     */
+    void checkNext(T previous, T current) {
+        for (int i = 0; i < fields.size(); i++) {
+            if (null == valueOf(current, i)) {
+                throw new IllegalStateException(String.format(
+                        "Sort property %s is null, sort properties can't be null for reads across shards",
+                        fields.get(i).getName()));
+            }
+        }
+        if (null != previous && comparator.compare(previous, current) > 0) {
+            throw new IllegalStateException(String.format(
+                    "Shard returned rows out of order for %s, check that the database collation of the sort " +
+                            "columns matches their java ordering", this));
+        }
+    }
+
+    /**
+     * Values of the sort properties of the entity, in order.
+     */
+    List<Object> valuesOf(T entity) {
+        final List<Object> values = new ArrayList<>(fields.size());
+        for (int i = 0; i < fields.size(); i++) {
+            values.add(valueOf(entity, i));
+        }
+        return values;
+    }
+
+    /**
+     * Types of the sort properties, in order.
+     */
+    List<Class<?>> types() {
+        return fields.stream()
+                .map(field -> ClassUtils.primitiveToWrapper(field.getType()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Restriction matching all rows that sort after the row with the given sort values. Expands to
+     * (c1 > v1) or (c1 = v1 and c2 > v2) ... along with a leading c1 >= v1 so that the database can use a range scan
+     * on an index over the sort columns.
+     *
+     * @param values Sort values of the last row already read
+     * @return Restriction for the rows following it
+     */
+    Criterion after(List<Object> values) {
+        Preconditions.checkArgument(values.size() == orders.size(), "Expected %s sort values", orders.size());
+        Preconditions.checkArgument(values.stream().allMatch(Objects::nonNull),
+                                    "Keyset pagination needs non null values for all sort properties");
+        final Disjunction following = Restrictions.disjunction();
+        for (int i = 0; i < orders.size(); i++) {
+            final Conjunction match = Restrictions.conjunction();
+            for (int j = 0; j < i; j++) {
+                match.add(Restrictions.eq(orders.get(j).getPropertyName(), values.get(j)));
+            }
+            match.add(beyond(orders.get(i), values.get(i), false));
+            following.add(match);
+        }
+        return Restrictions.and(beyond(orders.get(0), values.get(0), true), following);
+    }
+
+    @Override
+    public String toString() {
+        return orders.stream().map(Order::toString).collect(Collectors.joining(","));
+    }
+
+    private static Criterion beyond(Order order, Object value, boolean inclusive) {
+        if (order.isAscending()) {
+            return inclusive
+                   ? Restrictions.ge(order.getPropertyName(), value)
+                   : Restrictions.gt(order.getPropertyName(), value);
+        }
+        return inclusive
+               ? Restrictions.le(order.getPropertyName(), value)
+               : Restrictions.lt(order.getPropertyName(), value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Comparable<Object> valueOf(T entity, int index) {
+        try {
+            return (Comparable<Object>) fields.get(index).get(entity);
+        }
+        catch (IllegalAccessException e) {
+            throw new IllegalStateException("Could not read sort property " + fields.get(index).getName(), e);
+        }
+    }
+}
@@ -80,18 +80,21 @@ public class WrapperDao<T, DaoType extends AbstractDAO<T>> implements ShardedDao
                 if(null == transaction) {
                     return proxy.invokeSuper(obj, args);
                 }
-                final TransactionHandler transactionHandler = new TransactionHandler(sessionFactory, transaction.readOnly());
+                final TransactionHandler transactionHandler = new TransactionHandler(sessionFactory,
+                                                                                 transaction.readOnly(),
+                                                                                 false,
+                                                                                 transaction.replicaRead());
                 try {
                     transactionHandler.beforeStart();
                     Object result = proxy.invokeSuper(obj, args);
                     transactionHandler.afterEnd();
                     return result;
                 } catch (InvocationTargetException e) {
-                    transactionHandler.onError();
+                    transactionHandler.onError(e.getCause());
                     throw e.getCause();
-                } catch (Exception e) {
-                    transactionHandler.onError();
-                    throw e;
+                } catch (Throwable t) {
+                    transactionHandler.onError(t);
+                    throw t;
                 }
             });
             return createDAOProxy(sessionFactory, enhancer, extraConstructorParamClasses, extraConstructorParamObjects);
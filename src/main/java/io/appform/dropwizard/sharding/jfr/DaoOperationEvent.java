@@ -0,0 +1,50 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("io.appform.dropwizard.sharding.DaoOperation")
+@Label("Dao Operation")
+@Category({"DB Sharding"})
+@Description("Dao call, timed from the dao")
+@StackTrace(false)
+final class DaoOperationEvent extends Event {
+    @Label("Namespace")
+    String namespace;
+
+    @Label("Entity")
+    String entity;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Shard")
+    @Description("Shard the operation ran on, -1 for operations spanning all shards")
+    int shardId;
+
+    @Label("Elapsed")
+    @Timespan
+    long elapsed;
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.jfr;
+
+import io.appform.dropwizard.sharding.utils.TransactionListener;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Java Flight Recorder events for shard routing, transactions, scatter gather and dao operations, so that recordings
+ * can be sliced by namespace, shard and entity. Events are only created while a recording has them enabled, at other
+ * times every call costs a check of a flag. On runtimes without flight recorder support all calls are no-ops.
+ * Routing events are disabled by default as there is one for every key looked up, enable
+ * "io.appform.dropwizard.sharding.ShardRouting" in the recording settings to get them.
+ */
+@Slf4j
+public final class FlightRecorderEvents {
+    private static final Recorder RECORDER = createRecorder();
+
+    private FlightRecorderEvents() {}
+
+    public static boolean isAvailable() {
+        return Recorder.NOOP != RECORDER;
+    }
+
+    public static void routing(String namespace, String entity, int bucketId, int shardId) {
+        RECORDER.routing(namespace, entity, bucketId, shardId);
+    }
+
+    /**
+     * @return Handle to be passed to {@link #endScatter(Object, int, int, boolean)}, null when not recording
+     */
+    public static Object beginScatter() {
+        return RECORDER.beginScatter();
+    }
+
+    public static void endScatter(Object scatter, int numTargets, int maxParallelism, boolean failed) {
+        if (null != scatter) {
+            RECORDER.endScatter(scatter, numTargets, maxParallelism, failed);
+        }
+    }
+
+    public static void daoOperation(
+            String namespace,
+            String entity,
+            String operation,
+            int shardId,
+            long elapsedNanos) {
+        RECORDER.daoOperation(namespace, entity, operation, shardId, elapsedNanos);
+    }
+
+    /**
+     * Listener recording shard transactions. Only enabled while a recording has transaction events enabled.
+     */
+    public static TransactionListener transactionListener() {
+        return RECORDER.transactionListener();
+    }
+
+    private static Recorder createRecorder() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (Recorder) Class.forName("io.appform.dropwizard.sharding.jfr.JfrRecorder")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        }
+        catch (Throwable t) {
+            log.info("Flight recorder events are not available: {}", t.toString());
+            return Recorder.NOOP;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.jfr;
+
+import io.appform.dropwizard.sharding.utils.TransactionListener;
+import jdk.jfr.EventType;
+
+/**
+ * Emits flight recorder events. Loaded reflectively, only on runtimes that have the flight recorder.
+ */
+final class JfrRecorder implements Recorder {
+    private static final EventType ROUTING = EventType.getEventType(ShardRoutingEvent.class);
+    private static final EventType SCATTER = EventType.getEventType(ScatterGatherEvent.class);
+    private static final EventType DAO_OPERATION = EventType.getEventType(DaoOperationEvent.class);
+
+    private final TransactionListener transactionListener = new JfrTransactionListener();
+
+    @Override
+    public void routing(String namespace, String entity, int bucketId, int shardId) {
+        if (ROUTING.isEnabled()) {
+            final ShardRoutingEvent event = new ShardRoutingEvent();
+            event.namespace = namespace;
+            event.entity = entity;
+            event.bucketId = bucketId;
+            event.shardId = shardId;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginScatter() {
+        if (!SCATTER.isEnabled()) {
+            return null;
+        }
+        final ScatterGatherEvent event = new ScatterGatherEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endScatter(Object scatter, int numTargets, int maxParallelism, boolean failed) {
+        final ScatterGatherEvent event = (ScatterGatherEvent) scatter;
+        event.end();
+        if (event.shouldCommit()) {
+            event.numTargets = numTargets;
+            event.maxParallelism = maxParallelism;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void daoOperation(String namespace, String entity, String operation, int shardId, long elapsedNanos) {
+        if (DAO_OPERATION.isEnabled()) {
+            final DaoOperationEvent event = new DaoOperationEvent();
+            event.namespace = namespace;
+            event.entity = entity;
+            event.operation = operation;
+            event.shardId = shardId;
+            event.elapsed = elapsedNanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public TransactionListener transactionListener() {
+        return transactionListener;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.jfr;
+
+import io.appform.dropwizard.sharding.utils.TransactionEvent;
+import io.appform.dropwizard.sharding.utils.TransactionListener;
+import jdk.jfr.EventType;
+
+/**
+ * Records shard transactions as {@link ShardTransactionEvent}s spanning the transaction.
+ */
+final class JfrTransactionListener implements TransactionListener {
+    private static final EventType TRANSACTION = EventType.getEventType(ShardTransactionEvent.class);
+
+    @Override
+    public boolean isEnabled() {
+        return TRANSACTION.isEnabled();
+    }
+
+    @Override
+    public void afterStart(TransactionEvent event) {
+        final ShardTransactionEvent recorded = new ShardTransactionEvent();
+        recorded.begin();
+        event.setAttribute(this, recorded);
+    }
+
+    @Override
+    public void afterEnd(TransactionEvent event) {
+        ShardTransactionEvent recorded = (ShardTransactionEvent) event.getAttribute(this);
+        if (null == recorded) {
+            //Transaction did not start
+            recorded = new ShardTransactionEvent();
+        }
+        recorded.end();
+        if (recorded.shouldCommit()) {
+            recorded.namespace = event.getNamespace();
+            recorded.shardId = event.getShardId();
+            recorded.readOnly = event.isReadOnly();
+            recorded.replicaRead = event.isReplicaRead();
+            recorded.sessionOpen = event.getSessionOpenNanos();
+            recorded.outcome = event.getOutcome().name();
+            recorded.error = null == event.getError() ? null : event.getError().getClass().getName();
+            recorded.commit();
+        }
+    }
+}
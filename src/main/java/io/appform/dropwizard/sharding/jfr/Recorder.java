@@ -0,0 +1,50 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.jfr;
+
+import io.appform.dropwizard.sharding.utils.TransactionListener;
+
+/**
+ * Emits the events. Kept free of flight recorder types so that the library loads on runtimes without it.
+ */
+interface Recorder {
+    Recorder NOOP = new Recorder() {
+    };
+
+    default void routing(String namespace, String entity, int bucketId, int shardId) {
+    }
+
+    default Object beginScatter() {
+        return null;
+    }
+
+    default void endScatter(Object scatter, int numTargets, int maxParallelism, boolean failed) {
+    }
+
+    default void daoOperation(String namespace, String entity, String operation, int shardId, long elapsedNanos) {
+    }
+
+    default TransactionListener transactionListener() {
+        return new TransactionListener() {
+            @Override
+            public boolean isEnabled() {
+                return false;
+            }
+        };
+    }
+}
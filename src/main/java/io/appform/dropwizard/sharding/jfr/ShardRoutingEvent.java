@@ -0,0 +1,46 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("io.appform.dropwizard.sharding.ShardRouting")
+@Label("Shard Routing")
+@Category({"DB Sharding"})
+@Description("Key routed to a shard")
+@Enabled(false)
+@StackTrace(false)
+final class ShardRoutingEvent extends Event {
+    @Label("Namespace")
+    String namespace;
+
+    @Label("Entity")
+    String entity;
+
+    @Label("Bucket")
+    int bucketId;
+
+    @Label("Shard")
+    int shardId;
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("io.appform.dropwizard.sharding.ShardTransaction")
+@Label("Shard Transaction")
+@Category({"DB Sharding"})
+@Description("Transaction on a shard, from start to commit or rollback")
+final class ShardTransactionEvent extends Event {
+    @Label("Namespace")
+    String namespace;
+
+    @Label("Shard")
+    int shardId;
+
+    @Label("Read Only")
+    boolean readOnly;
+
+    @Label("Replica Read")
+    boolean replicaRead;
+
+    @Label("Session Open")
+    @Description("Time taken to open the session and begin the transaction")
+    @Timespan
+    long sessionOpen;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Error")
+    String error;
+}
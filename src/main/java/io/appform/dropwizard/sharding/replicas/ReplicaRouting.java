@@ -0,0 +1,182 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.replicas;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks whether connections acquired on the current thread should come from a read replica, and whether the
+ * transaction they are for only reads. Set by {@link io.appform.dropwizard.sharding.utils.TransactionHandler} for the
+ * duration of a transaction and read by {@link ReplicaRoutingDataSource} when hibernate asks for a connection.
+ * Also keeps the {@link WriteHistory} of the unit of work running on the thread, used for read your writes routing.
+ * A unit of work is opened with {@link #unitOfWork()}, or per request by {@link UnitOfWorkFilter}, and its history is
+ * dropped when it is closed so that nothing is carried over to unrelated work on pooled threads. Writes made outside
+ * a unit of work are not tracked.
+ */
+public final class ReplicaRouting {
+    /**
+     * Drops the write history of the unit of work on close.
+     */
+    public interface UnitOfWork extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final ThreadLocal<Boolean> REPLICA_READ = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<>();
+    private static final ThreadLocal<WriteHistory> WRITE_HISTORY = new ThreadLocal<>();
+
+    /**
+     * When a unit of work last wrote to each shard. Shared by the request thread and the shard calls it fans out
+     * to, so it is safe for concurrent use.
+     */
+    public static final class WriteHistory {
+        private final Map<Object, Long> lastWrites = new ConcurrentHashMap<>();
+
+        void recordWrite(Object shard, long timeNanos) {
+            lastWrites.merge(shard, timeNanos, Math::max);
+        }
+
+        /**
+         * @return Whether the unit of work wrote to the shard within the last windowNanos
+         */
+        boolean wroteWithin(Object shard, long windowNanos, long nowNanos) {
+            final Long lastWrite = lastWrites.get(shard);
+            if (null == lastWrite) {
+                return false;
+            }
+            if (nowNanos - lastWrite < windowNanos) {
+                return true;
+            }
+            lastWrites.remove(shard, lastWrite);
+            return false;
+        }
+    }
+
+    private ReplicaRouting() {}
+
+    public static boolean isReplicaRead() {
+        return Boolean.TRUE.equals(REPLICA_READ.get());
+    }
+
+    /**
+     * @param replicaRead Whether connections acquired from now on should come from a replica
+     * @return The previous value, to be restored once the transaction is done
+     */
+    public static boolean setReplicaRead(boolean replicaRead) {
+        final boolean previous = isReplicaRead();
+        if (previous != replicaRead) {
+            if (replicaRead) {
+                REPLICA_READ.set(Boolean.TRUE);
+            }
+            else {
+                REPLICA_READ.remove();
+            }
+        }
+        return previous;
+    }
+
+    public static boolean isReadOnly() {
+        return Boolean.TRUE.equals(READ_ONLY.get());
+    }
+
+    /**
+     * @param readOnly Whether the transaction starting on this thread only reads, so that its primary connection is
+     *                 not taken as a write by read your writes routing
+     * @return The previous value, to be restored once the transaction is done
+     */
+    public static boolean setReadOnly(boolean readOnly) {
+        final boolean previous = isReadOnly();
+        if (previous != readOnly) {
+            if (readOnly) {
+                READ_ONLY.set(Boolean.TRUE);
+            }
+            else {
+                READ_ONLY.remove();
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * Starts a unit of work on the current thread, or joins the one already running so that nested units share the
+     * writes of the outer one.
+     *
+     * @return Unit of work to be closed when done
+     */
+    public static UnitOfWork unitOfWork() {
+        if (null != WRITE_HISTORY.get()) {
+            return () -> {};
+        }
+        WRITE_HISTORY.set(new WriteHistory());
+        return WRITE_HISTORY::remove;
+    }
+
+    /**
+     * Runs the work as a unit of work, so that its reads see the writes it made.
+     */
+    public static <T> T unitOfWork(Callable<T> work) throws Exception {
+        try (UnitOfWork unitOfWork = unitOfWork()) {
+            return work.call();
+        }
+    }
+
+    /**
+     * Write history of the unit of work running on the current thread.
+     *
+     * @return null outside a unit of work
+     */
+    public static WriteHistory writeHistory() {
+        return WRITE_HISTORY.get();
+    }
+
+    /**
+     * Wraps a call to be run on another thread so that it shares the write history of the current thread. Writes
+     * made by the call are visible to the current thread and the other way round.
+     */
+    public static <T> Callable<T> propagate(Callable<T> call) {
+        final WriteHistory history = writeHistory();
+        if (null == history) {
+            return call;
+        }
+        return () -> {
+            final WriteHistory previous = WRITE_HISTORY.get();
+            WRITE_HISTORY.set(history);
+            try {
+                return call.call();
+            }
+            finally {
+                if (null == previous) {
+                    WRITE_HISTORY.remove();
+                }
+                else {
+                    WRITE_HISTORY.set(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Drops whatever a unit of work that was never closed left behind on the current thread.
+     */
+    static void reset() {
+        WRITE_HISTORY.remove();
+    }
+}
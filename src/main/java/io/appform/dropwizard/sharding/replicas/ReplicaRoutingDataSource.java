@@ -0,0 +1,220 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.replicas;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import io.appform.dropwizard.sharding.config.ReplicaConsistency;
+import io.dropwizard.db.ManagedDataSource;
+import io.dropwizard.util.Duration;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Data source for a shard with read replicas. Hands out replica connections while {@link ReplicaRouting} says the
+ * current transaction is a read only one, and primary connections otherwise. If a replica can't provide a connection
+ * the remaining replicas are tried, and the read falls back to the primary if none of them can.
+ * Hibernate acquires the connection when the transaction begins and keeps it till the transaction ends, so the whole
+ * transaction runs on the same database.
+ * With {@link ReplicaConsistency#READ_YOUR_WRITES} the time every primary connection used by a transaction that is
+ * not read only is released (after the transaction has ended) is recorded in the {@link ReplicaRouting.WriteHistory}
+ * of the unit of work, and its reads stay on the primary for maxLag after that. Work done outside a
+ * {@link ReplicaRouting#unitOfWork()} is routed as with eventual consistency.
+ * Routing decisions are metered under the data source name: replicaReads, primaryReads (reads kept on the primary
+ * for read your writes) and fallbackReads (reads sent to the primary because no replica could be reached).
+ */
+@Slf4j
+public class ReplicaRoutingDataSource implements ManagedDataSource {
+
+    @FunctionalInterface
+    private interface ConnectionSource {
+        Connection get(ManagedDataSource dataSource) throws SQLException;
+    }
+
+    @Getter
+    private final ManagedDataSource primary;
+    @Getter
+    private final List<ManagedDataSource> replicas;
+    private final ReplicaSelector selector;
+    private final boolean readYourWrites;
+    private final long maxLagNanos;
+    private final Meter replicaReads;
+    private final Meter primaryReads;
+    private final Meter fallbackReads;
+
+    public ReplicaRoutingDataSource(
+            ManagedDataSource primary,
+            List<ManagedDataSource> replicas,
+            ReplicaSelector selector) {
+        this("replicas", primary, replicas, selector, ReplicaConsistency.EVENTUAL, Duration.seconds(0),
+             new MetricRegistry());
+    }
+
+    public ReplicaRoutingDataSource(
+            String name,
+            ManagedDataSource primary,
+            List<ManagedDataSource> replicas,
+            ReplicaSelector selector,
+            ReplicaConsistency consistency,
+            Duration maxLag,
+            MetricRegistry metricRegistry) {
+        this.primary = primary;
+        this.replicas = ImmutableList.copyOf(replicas);
+        this.selector = selector;
+        this.readYourWrites = consistency == ReplicaConsistency.READ_YOUR_WRITES;
+        this.maxLagNanos = maxLag.toNanoseconds();
+        this.replicaReads = metricRegistry.meter(MetricRegistry.name(ReplicaRoutingDataSource.class, name, "replicaReads"));
+        this.primaryReads = metricRegistry.meter(MetricRegistry.name(ReplicaRoutingDataSource.class, name, "primaryReads"));
+        this.fallbackReads = metricRegistry.meter(MetricRegistry.name(ReplicaRoutingDataSource.class, name, "fallbackReads"));
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connection(ManagedDataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connection(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    @Override
+    public void start() throws Exception {
+        primary.start();
+        for (ManagedDataSource replica : replicas) {
+            replica.start();
+        }
+    }
+
+    @Override
+    public void stop() throws Exception {
+        Exception error = null;
+        for (ManagedDataSource dataSource : replicas) {
+            try {
+                dataSource.stop();
+            }
+            catch (Exception e) {
+                log.error("Error stopping read replica data source", e);
+                error = e;
+            }
+        }
+        primary.stop();
+        if (null != error) {
+            throw error;
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return primary.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        primary.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        primary.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return primary.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return primary.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+
+    private Connection connection(ConnectionSource source) throws SQLException {
+        if (replicas.isEmpty()) {
+            return source.get(primary);
+        }
+        final ReplicaRouting.WriteHistory history = readYourWrites ? ReplicaRouting.writeHistory() : null;
+        if (!ReplicaRouting.isReplicaRead()) {
+            final Connection connection = source.get(primary);
+            return null != history && !ReplicaRouting.isReadOnly() ? recordingWrites(connection, history) : connection;
+        }
+        if (null != history && history.wroteWithin(this, maxLagNanos, System.nanoTime())) {
+            primaryReads.mark();
+            return source.get(primary);
+        }
+        final int numReplicas = replicas.size();
+        final int selected = selector.select(replicas);
+        for (int i = 0; i < numReplicas; i++) {
+            final int index = (selected + i) % numReplicas;
+            try {
+                final Connection connection = source.get(replicas.get(index));
+                replicaReads.mark();
+                return connection;
+            }
+            catch (SQLException e) {
+                log.warn("Could not get a connection from read replica {}: {}", index, e.getMessage());
+            }
+        }
+        log.warn("No read replica could provide a connection, reading from primary");
+        fallbackReads.mark();
+        return source.get(primary);
+    }
+
+    /**
+     * Records a write in the unit of work's history when the connection is released. Hibernate releases connections
+     * once the transaction has ended, so the time recorded is after the commit.
+     */
+    private Connection recordingWrites(Connection connection, ReplicaRouting.WriteHistory history) {
+        return (Connection) Proxy.newProxyInstance(
+                ReplicaRoutingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(connection, args);
+                    }
+                    catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    finally {
+                        if ("close".equals(method.getName())) {
+                            history.recordWrite(this, System.nanoTime());
+                        }
+                    }
+                });
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.replicas;
+
+import org.apache.tomcat.jdbc.pool.DataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks the replica a read only transaction is served from.
+ */
+@FunctionalInterface
+public interface ReplicaSelector {
+
+    /**
+     * @param replicas Replicas of a shard, never empty
+     * @return Index of the replica to try first. The others are tried in order after it if it fails.
+     */
+    int select(List<? extends DataSource> replicas);
+
+    static ReplicaSelector roundRobin() {
+        final AtomicInteger next = new AtomicInteger();
+        return replicas -> Math.floorMod(next.getAndIncrement(), replicas.size());
+    }
+
+    /**
+     * Replica with the fewest connections in use. Ties (and replicas that are not connection pools) are broken in
+     * round robin order.
+     */
+    static ReplicaSelector leastBusy() {
+        final ReplicaSelector roundRobin = roundRobin();
+        return replicas -> {
+            final int numReplicas = replicas.size();
+            final int start = roundRobin.select(replicas);
+            int selected = start;
+            int minActive = Integer.MAX_VALUE;
+            for (int i = 0; i < numReplicas; i++) {
+                final int index = (start + i) % numReplicas;
+                final DataSource replica = replicas.get(index);
+                final int active = replica instanceof DataSourceProxy
+                                   ? ((DataSourceProxy) replica).getNumActive()
+                                   : 0;
+                if (active < minActive) {
+                    minActive = active;
+                    selected = index;
+                }
+            }
+            return selected;
+        };
+    }
+}
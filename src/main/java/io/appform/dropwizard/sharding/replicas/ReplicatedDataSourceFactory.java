@@ -0,0 +1,123 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.replicas;
+
+import com.codahale.metrics.MetricRegistry;
+import io.appform.dropwizard.sharding.config.ReadReplicaConfig;
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.db.ManagedDataSource;
+import io.dropwizard.db.PooledDataSourceFactory;
+import io.dropwizard.util.Duration;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Data source config for a shard with read replicas. Hibernate settings, validation and health checks come from the
+ * primary config, the data source built routes read only transactions to the replicas
+ * (see {@link ReplicaRoutingDataSource}).
+ */
+public class ReplicatedDataSourceFactory implements PooledDataSourceFactory {
+    private final DataSourceFactory primary;
+    private final List<DataSourceFactory> replicas;
+    private final ReplicaSelector selector;
+    private final ReadReplicaConfig config;
+
+    public ReplicatedDataSourceFactory(
+            DataSourceFactory primary,
+            List<DataSourceFactory> replicas,
+            ReplicaSelector selector,
+            ReadReplicaConfig config) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.selector = selector;
+        this.config = config;
+    }
+
+    @Override
+    public boolean isAutoCommentsEnabled() {
+        return primary.isAutoCommentsEnabled();
+    }
+
+    @Override
+    public Map<String, String> getProperties() {
+        return primary.getProperties();
+    }
+
+    @Override
+    public Optional<Duration> getValidationQueryTimeout() {
+        return primary.getValidationQueryTimeout();
+    }
+
+    /**
+     * Deprecated in {@link PooledDataSourceFactory} but still abstract there, so it has to be implemented.
+     * Marked deprecated here as well so that overriding and delegating to it do not raise deprecation warnings.
+     */
+    @Override
+    @Deprecated
+    public Optional<Duration> getHealthCheckValidationTimeout() {
+        return primary.getHealthCheckValidationTimeout();
+    }
+
+    @Override
+    public Optional<String> getValidationQuery() {
+        return primary.getValidationQuery();
+    }
+
+    /**
+     * See {@link #getHealthCheckValidationTimeout()}.
+     */
+    @Override
+    @Deprecated
+    public String getHealthCheckValidationQuery() {
+        return primary.getHealthCheckValidationQuery();
+    }
+
+    @Override
+    public String getDriverClass() {
+        return primary.getDriverClass();
+    }
+
+    @Override
+    public String getUrl() {
+        return primary.getUrl();
+    }
+
+    @Override
+    public void asSingleConnectionPool() {
+        primary.asSingleConnectionPool();
+        replicas.forEach(DataSourceFactory::asSingleConnectionPool);
+    }
+
+    @Override
+    public ManagedDataSource build(MetricRegistry metricRegistry, String name) {
+        final List<ManagedDataSource> replicaDataSources = IntStream.range(0, replicas.size())
+                .mapToObj(i -> replicas.get(i).build(metricRegistry, String.format("%s-replica-%d", name, i)))
+                .collect(Collectors.toList());
+        return new ReplicaRoutingDataSource(name,
+                                            primary.build(metricRegistry, name),
+                                            replicaDataSources,
+                                            selector,
+                                            config.getConsistency(),
+                                            config.getMaxLag(),
+                                            null == metricRegistry ? new MetricRegistry() : metricRegistry);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.replicas;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+
+/**
+ * Runs every request as a {@link ReplicaRouting#unitOfWork()}, so that its reads see the writes it made and nothing is
+ * carried over to the next request served by the same thread. Registered by the bundle when read your writes
+ * consistency is configured.
+ */
+public class UnitOfWorkFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    private static final String UNIT_OF_WORK = UnitOfWorkFilter.class.getName();
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        //A request that never got to its response filter may have left its writes behind on this thread
+        ReplicaRouting.reset();
+        requestContext.setProperty(UNIT_OF_WORK, ReplicaRouting.unitOfWork());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        final Object unitOfWork = requestContext.getProperty(UNIT_OF_WORK);
+        if (unitOfWork instanceof ReplicaRouting.UnitOfWork) {
+            requestContext.removeProperty(UNIT_OF_WORK);
+            ((ReplicaRouting.UnitOfWork) unitOfWork).close();
+        }
+    }
+}
@@ -24,7 +24,8 @@ import com.google.common.collect.TreeRangeMap;
 import lombok.Builder;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
-import lombok.val;
+
+import java.util.Arrays;
 
 /**
  * Manages shard to bucket mapping.
@@ -37,6 +38,8 @@ public class BalancedShardManager extends ShardManager {
     private final int numShards;
 
     private RangeMap<Integer, Integer> buckets = TreeRangeMap.create();
+    @ToString.Exclude
+    private final int[] bucketToShard = new int[MAX_BUCKET - MIN_BUCKET + 1];
 
     @Builder
     public BalancedShardManager(int numShards) {
@@ -69,6 +72,11 @@ public class BalancedShardManager extends ShardManager {
                                             .stream()
                                    .allMatch(range -> (range.upperEndpoint() - range.lowerEndpoint() + 1) == interval));
         buckets.putAll(assignedBuckets);
+        assignedBuckets.asMapOfRanges()
+                .forEach((range, shard) -> Arrays.fill(bucketToShard,
+                                                       range.lowerEndpoint() - MIN_BUCKET,
+                                                       range.upperEndpoint() - MIN_BUCKET + 1,
+                                                       shard));
         log.info("Buckets to shard allocation: {}", buckets);
     }
 
@@ -86,11 +94,7 @@ public class BalancedShardManager extends ShardManager {
     protected int shardForBucketImpl(int bucketId) {
         Preconditions.checkArgument(bucketId >= MIN_BUCKET && bucketId <= MAX_BUCKET,
                                     "Bucket id can only be in the range of [1-1000] (inclusive)");
-        val entry = buckets.getEntry(bucketId);
-        if (null == entry) {
-            throw new IllegalAccessError("Bucket not mapped to any shard");
-        }
-        return entry.getValue();
+        return bucketToShard[bucketId - MIN_BUCKET];
     }
 
 
@@ -24,7 +24,8 @@ import com.google.common.collect.TreeRangeMap;
 import lombok.Builder;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
-import lombok.val;
+
+import java.util.Arrays;
 
 /**
  * Manages shard to bucket mapping.
@@ -37,6 +38,8 @@ public class LegacyShardManager extends ShardManager {
     private final int numShards;
 
     private RangeMap<Integer, Integer> buckets = TreeRangeMap.create();
+    @ToString.Exclude
+    private final int[] bucketToShard = new int[MAX_BUCKET - MIN_BUCKET + 1];
 
     public LegacyShardManager(int numShards) {
         this(numShards, new InMemoryLocalShardBlacklistingStore());
@@ -72,6 +75,11 @@ public class LegacyShardManager extends ShardManager {
                                     "There is an issue in shard allocation. " +
                                             "Not all shards have been allocated to. Please contact devs.");
         buckets.putAll(assignedBuckets);
+        assignedBuckets.asMapOfRanges()
+                .forEach((range, shard) -> Arrays.fill(bucketToShard,
+                                                       range.lowerEndpoint() - MIN_BUCKET,
+                                                       range.upperEndpoint() - MIN_BUCKET + 1,
+                                                       shard));
         log.info("Buckets to shard allocation: {}", buckets);
     }
 
@@ -88,12 +96,9 @@ public class LegacyShardManager extends ShardManager {
 
     @Override
     protected int shardForBucketImpl(int bucketId) {
-        Preconditions.checkArgument(bucketId >=MIN_BUCKET && bucketId <= MAX_BUCKET, "Bucket id can only be in the range of [1-1000] (inclusive)");
-        val entry = buckets.getEntry(bucketId);
-        if(null == entry) {
-            throw new IllegalAccessError("Bucket not mapped to any shard");
-        }
-        return entry.getValue();
+        Preconditions.checkArgument(bucketId >= MIN_BUCKET && bucketId <= MAX_BUCKET,
+                                    "Bucket id can only be in the range of [1-1000] (inclusive)");
+        return bucketToShard[bucketId - MIN_BUCKET];
     }
 
 
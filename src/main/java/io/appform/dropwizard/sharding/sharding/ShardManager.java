@@ -17,24 +17,41 @@
 
 package io.appform.dropwizard.sharding.sharding;
 
-import com.github.benmanes.caffeine.cache.Caffeine;
-import com.github.benmanes.caffeine.cache.LoadingCache;
 import io.appform.dropwizard.sharding.exceptions.ShardBlacklistedException;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 
 /**
- *
+ * Base for bucket to shard mapping. Blacklisting state is read from an immutable snapshot that is swapped
+ * whenever a shard is blacklisted/unblacklisted through this manager and refreshed from the
+ * {@link ShardBlacklistingStore} in the background, so routing never touches the store.
+ * The snapshot is loaded by {@link #initBlacklist()} once the manager is fully constructed, which the bundle does
+ * as soon as it creates the manager. Managers used on their own load it on first use.
  */
 @ToString
 @Slf4j
 public abstract class ShardManager {
 
+    public static final long DEFAULT_BLACKLIST_REFRESH_INTERVAL_SECONDS = 15;
+
+    private static final ScheduledExecutorService BLACKLIST_REFRESHER
+            = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "shard-blacklist-refresher");
+                thread.setDaemon(true);
+                return thread;
+            });
+
     private final ShardBlacklistingStore shardBlacklistingStore;
-    private LoadingCache<Integer, Boolean> blackListedShards;
+    private volatile boolean[] blacklistedShards;
+    @ToString.Exclude
+    private ScheduledFuture<?> blacklistRefresher;
 
     abstract public int numBuckets();
 
@@ -44,17 +61,31 @@ public abstract class ShardManager {
 
     protected ShardManager(ShardBlacklistingStore shardBlacklistingStore) {
         this.shardBlacklistingStore = shardBlacklistingStore;
-        this.blackListedShards = Caffeine.newBuilder()
-                .maximumSize(10_000)
-                .expireAfterWrite(1, TimeUnit.MINUTES)
-                .refreshAfterWrite(15, TimeUnit.SECONDS)
-                .build(shardBlacklistingStore::blacklisted);
+    }
+
+    /**
+     * Loads the blacklist snapshot from the {@link ShardBlacklistingStore} and starts refreshing it in the background,
+     * if not done already. Needs the subclass to be initialized, so it can't be called from the constructor.
+     * If the store can't be read no shard is taken as blacklisted till the next successful refresh.
+     */
+    public synchronized void initBlacklist() {
+        if (null == blacklistedShards) {
+            try {
+                blacklistedShards = loadBlacklist();
+            }
+            catch (Exception e) {
+                log.error("Error loading shard blacklist. Treating all shards as available till the next refresh.", e);
+                blacklistedShards = new boolean[numShards()];
+            }
+        }
+        if (null == blacklistRefresher) {
+            setBlacklistRefreshInterval(DEFAULT_BLACKLIST_REFRESH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
     }
 
     public int shardForBucket(int bucketId) {
         final int shard = shardForBucketImpl(bucketId);
-        final Boolean isBlacklisted = blackListedShards.get(shard);
-        if(null != isBlacklisted && isBlacklisted) {
+        if (blacklistSnapshot()[shard]) {
             throw new ShardBlacklistedException(shard);
         }
         return shard;
@@ -62,17 +93,13 @@ public abstract class ShardManager {
 
     public boolean isMappedToValidShard(int bucketId) {
         final int shard = shardForBucketImpl(bucketId);
-        final Boolean isBlacklisted = blackListedShards.get(shard);
-        if(null != isBlacklisted && isBlacklisted) {
-            return false;
-        }
-        return true;
+        return !blacklistSnapshot()[shard];
     }
 
     public void blacklistShard(int shardId) {
         if(shardId >=0 && shardId < numShards()) {
             shardBlacklistingStore.blacklist(shardId);
-            blackListedShards.refresh(shardId);
+            updateBlacklistSnapshot(shardId, true);
         }
     }
 
@@ -88,7 +115,93 @@ public abstract class ShardManager {
     public void unblacklistShard(int shardId) {
         if(shardId >=0 && shardId < numShards()) {
             shardBlacklistingStore.unblacklist(shardId);
-            blackListedShards.refresh(shardId);
+            updateBlacklistSnapshot(shardId, false);
+        }
+    }
+
+    /**
+     * Sets how often blacklisting state is reloaded from the {@link ShardBlacklistingStore}. This bounds how long
+     * changes made to the store from outside this manager (other nodes for a distributed store) take to be seen.
+     *
+     * @param refreshInterval Interval between two reloads. Must be positive.
+     * @param unit            Unit for the interval
+     */
+    public synchronized void setBlacklistRefreshInterval(long refreshInterval, TimeUnit unit) {
+        if (refreshInterval <= 0) {
+            throw new IllegalArgumentException("Blacklist refresh interval must be positive");
+        }
+        if (null != blacklistRefresher) {
+            blacklistRefresher.cancel(false);
+        }
+        blacklistRefresher = new BlacklistRefresher(this).schedule(refreshInterval, unit);
+    }
+
+    /**
+     * Reloads blacklisting state for all shards from the {@link ShardBlacklistingStore}.
+     */
+    public synchronized void refreshBlacklist() {
+        try {
+            blacklistedShards = loadBlacklist();
+        }
+        catch (Exception e) {
+            log.error("Error refreshing shard blacklist. Retaining last known state.", e);
+        }
+    }
+
+    private boolean[] blacklistSnapshot() {
+        final boolean[] snapshot = blacklistedShards;
+        if (null != snapshot) {
+            return snapshot;
+        }
+        synchronized (this) {
+            initBlacklist();
+            return blacklistedShards;
+        }
+    }
+
+    private synchronized void updateBlacklistSnapshot(int shardId, boolean blacklisted) {
+        final boolean[] snapshot = blacklistSnapshot().clone();
+        snapshot[shardId] = blacklisted;
+        blacklistedShards = snapshot;
+    }
+
+    private boolean[] loadBlacklist() {
+        final int numShards = numShards();
+        final boolean[] snapshot = new boolean[numShards];
+        if (null != shardBlacklistingStore) {
+            for (int shard = 0; shard < numShards; shard++) {
+                snapshot[shard] = shardBlacklistingStore.blacklisted(shard);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Only holds a weak reference so that a manager that is no longer used can be collected and its task cancelled.
+     */
+    private static final class BlacklistRefresher implements Runnable {
+        private final WeakReference<ShardManager> manager;
+        private ScheduledFuture<?> future;
+
+        private BlacklistRefresher(ShardManager manager) {
+            this.manager = new WeakReference<>(manager);
+        }
+
+        private synchronized ScheduledFuture<?> schedule(long refreshInterval, TimeUnit unit) {
+            future = BLACKLIST_REFRESHER.scheduleWithFixedDelay(this, refreshInterval, refreshInterval, unit);
+            return future;
+        }
+
+        @Override
+        public void run() {
+            final ShardManager shardManager = manager.get();
+            if (null != shardManager) {
+                shardManager.refreshBlacklist();
+                return;
+            }
+            synchronized (this) {
+                future.cancel(false);
+            }
         }
     }
 }
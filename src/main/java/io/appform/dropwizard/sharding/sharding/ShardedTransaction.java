@@ -17,4 +17,9 @@ import static java.lang.annotation.RetentionPolicy.RUNTIME;
 public @interface ShardedTransaction {
     String value() default HibernateBundle.DEFAULT_NAME;
     boolean readOnly() default false;
+
+    /**
+     * Serve read only transactions from a read replica of the shard when it has any
+     */
+    boolean replicaRead() default true;
 }
@@ -17,14 +17,12 @@
 
 package io.appform.dropwizard.sharding.sharding.impl;
 
-import com.google.common.hash.Hashing;
 import io.appform.dropwizard.sharding.sharding.BucketIdExtractor;
 import io.appform.dropwizard.sharding.sharding.ShardManager;
 
-import java.nio.charset.StandardCharsets;
-
 /**
  * Generates bucket id on the basis of murmur128 of the key.
+ * String (and other {@link CharSequence}) keys are hashed in place by {@link Murmur3} without any allocation.
  */
 public class ConsistentHashBucketIdExtractor<T> implements BucketIdExtractor<T> {
     private final ShardManager shardManager;
@@ -35,7 +33,10 @@ public class ConsistentHashBucketIdExtractor<T> implements BucketIdExtractor<T>
 
     @Override
     public int bucketId(T id) {
-        int hashKey = Hashing.murmur3_128().hashString(id.toString(), StandardCharsets.UTF_8).asInt();
+        final CharSequence key = id instanceof CharSequence
+                ? (CharSequence) id
+                : id.toString();
+        int hashKey = Murmur3.hash128AsInt(key);
         hashKey *= hashKey < 0 ? -1 : 1;
 
         return hashKey % shardManager.numBuckets();
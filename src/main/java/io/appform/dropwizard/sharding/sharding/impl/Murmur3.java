@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.sharding.impl;
+
+/**
+ * Garbage free murmur3 x64 128 bit hash (seed 0) over the UTF-8 encoding of a {@link CharSequence}.
+ * Produces the same value as {@code Hashing.murmur3_128().hashString(input, StandardCharsets.UTF_8).asInt()}
+ * without materialising the encoded bytes or a {@link com.google.common.hash.HashCode}.
+ * Unpaired surrogates are encoded as '?', the same way {@link String#getBytes(java.nio.charset.Charset)} does.
+ */
+public final class Murmur3 {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private Murmur3() {}
+
+    public static int hash128AsInt(CharSequence input) {
+        long h1 = 0;
+        long h2 = 0;
+        long k1 = 0;
+        long k2 = 0;
+        int blockPos = 0;
+        int length = 0;
+        final int numChars = input.length();
+        for (int i = 0; i < numChars; i++) {
+            final char c = input.charAt(i);
+            int encoded;
+            int numBytes;
+            if (c < 0x80) {
+                encoded = c;
+                numBytes = 1;
+            }
+            else if (c < 0x800) {
+                encoded = (0xC0 | (c >>> 6))
+                        | (0x80 | (c & 0x3F)) << 8;
+                numBytes = 2;
+            }
+            else if (!Character.isSurrogate(c)) {
+                encoded = (0xE0 | (c >>> 12))
+                        | (0x80 | ((c >>> 6) & 0x3F)) << 8
+                        | (0x80 | (c & 0x3F)) << 16;
+                numBytes = 3;
+            }
+            else if (Character.isHighSurrogate(c)
+                    && i + 1 < numChars
+                    && Character.isLowSurrogate(input.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, input.charAt(++i));
+                encoded = (0xF0 | (codePoint >>> 18))
+                        | (0x80 | ((codePoint >>> 12) & 0x3F)) << 8
+                        | (0x80 | ((codePoint >>> 6) & 0x3F)) << 16
+                        | (0x80 | (codePoint & 0x3F)) << 24;
+                numBytes = 4;
+            }
+            else {
+                encoded = '?';
+                numBytes = 1;
+            }
+            for (int b = 0; b < numBytes; b++) {
+                final long value = (encoded >>> (b << 3)) & 0xFFL;
+                if (blockPos < 8) {
+                    k1 |= value << (blockPos << 3);
+                }
+                else {
+                    k2 |= value << ((blockPos - 8) << 3);
+                }
+                if (++blockPos == 16) {
+                    h1 ^= mixK1(k1);
+                    h1 = Long.rotateLeft(h1, 27);
+                    h1 += h2;
+                    h1 = h1 * 5 + 0x52dce729;
+
+                    h2 ^= mixK2(k2);
+                    h2 = Long.rotateLeft(h2, 31);
+                    h2 += h1;
+                    h2 = h2 * 5 + 0x38495ab5;
+
+                    k1 = 0;
+                    k2 = 0;
+                    blockPos = 0;
+                }
+            }
+            length += numBytes;
+        }
+        if (blockPos > 0) {
+            h1 ^= mixK1(k1);
+            h2 ^= mixK2(k2);
+        }
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        return (int) h1;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
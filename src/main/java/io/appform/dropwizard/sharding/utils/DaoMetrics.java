@@ -0,0 +1,173 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.MapMaker;
+import io.appform.dropwizard.sharding.jfr.FlightRecorderEvents;
+import lombok.AllArgsConstructor;
+import org.hibernate.SessionFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency timers for the operations of a dao, one per operation and shard, named
+ * [class].[namespace].[entity].[operation].shard[n]. Operations that span all shards use "all" in place of the shard.
+ * Timers are created on first use. Daos get timers only when created over session factories registered by the bundle,
+ * and a dao without them pays nothing more than a null check per call.
+ * Operations are also reported to {@link FlightRecorderEvents} and the {@link SlowOperationLog} registered with the
+ * session factories.
+ */
+public final class DaoMetrics {
+    public static final int ALL_SHARDS = -1;
+
+    @AllArgsConstructor
+    private static final class Registration {
+        private final MetricRegistry metricRegistry;
+        private final String namespace;
+        private final SlowOperationLog slowOperationLog;
+    }
+
+    private static final Map<SessionFactory, Registration> REGISTRATIONS = new MapMaker().weakKeys().makeMap();
+    private static final DaoMetrics DISABLED = new DaoMetrics(null, null, null, 0, SlowOperationLog.disabled());
+
+    private final MetricRegistry metricRegistry;
+    private final String namespace;
+    private final String entity;
+    private final String prefix;
+    private final int numShards;
+    private final SlowOperationLog slowOperationLog;
+    private final Map<String, Timer[]> timers = new ConcurrentHashMap<>();
+
+    private DaoMetrics(
+            MetricRegistry metricRegistry,
+            String namespace,
+            String entity,
+            int numShards,
+            SlowOperationLog slowOperationLog) {
+        this.metricRegistry = metricRegistry;
+        this.namespace = namespace;
+        this.entity = entity;
+        this.prefix = null == metricRegistry ? null : MetricRegistry.name(DaoMetrics.class, namespace, entity);
+        this.numShards = numShards;
+        this.slowOperationLog = slowOperationLog;
+    }
+
+    /**
+     * Publishes timers for daos using the session factory to the registry.
+     */
+    public static void register(SessionFactory sessionFactory, MetricRegistry metricRegistry, String namespace) {
+        register(sessionFactory, metricRegistry, namespace, SlowOperationLog.disabled());
+    }
+
+    /**
+     * Publishes timers for daos using the session factory to the registry and logs their slow operations.
+     */
+    public static void register(
+            SessionFactory sessionFactory,
+            MetricRegistry metricRegistry,
+            String namespace,
+            SlowOperationLog slowOperationLog) {
+        REGISTRATIONS.put(sessionFactory, new Registration(metricRegistry, namespace, slowOperationLog));
+    }
+
+    public static void unregister(SessionFactory sessionFactory) {
+        REGISTRATIONS.remove(sessionFactory);
+    }
+
+    public static DaoMetrics disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Timers for a dao over the given shards.
+     *
+     * @param sessionFactories Session factories of the shards, in shard order
+     * @param entityClass      Entity managed by the dao
+     * @return Timers for the dao, no-op if the session factories have not been registered
+     */
+    public static DaoMetrics forDao(List<SessionFactory> sessionFactories, Class<?> entityClass) {
+        if (REGISTRATIONS.isEmpty() || sessionFactories.isEmpty()) {
+            return DISABLED;
+        }
+        final Registration registration = REGISTRATIONS.get(sessionFactories.get(0));
+        if (null == registration) {
+            return DISABLED;
+        }
+        return new DaoMetrics(registration.metricRegistry,
+                              registration.namespace,
+                              entityClass.getSimpleName(),
+                              sessionFactories.size(),
+                              registration.slowOperationLog);
+    }
+
+    /**
+     * @return Start time to be passed to {@link #record(String, int, long, Object, Object)}
+     */
+    public long start() {
+        return null == metricRegistry ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Records the time since start against the operation on the shard, and as a flight recorder event when recording.
+     *
+     * @param operation Name of the operation
+     * @param shardId   Shard the operation ran on, {@link #ALL_SHARDS} for operations spanning all shards
+     * @param start     Value returned by {@link #start()} when the operation started
+     */
+    public void record(String operation, int shardId, long start) {
+        record(operation, shardId, start, null, null);
+    }
+
+    /**
+     * Records the operation along with the key and criteria it ran with, which are logged if the operation was slow.
+     *
+     * @param key      Key (lookup or parent) the operation was run for, null if none
+     * @param criteria Criteria or query the operation ran, null if none
+     */
+    public void record(String operation, int shardId, long start, Object key, Object criteria) {
+        if (null == metricRegistry) {
+            return;
+        }
+        final long elapsed = System.nanoTime() - start;
+        timer(operation, shardId).update(elapsed, TimeUnit.NANOSECONDS);
+        FlightRecorderEvents.daoOperation(namespace, entity, operation, shardId, elapsed);
+        slowOperationLog.record(namespace, entity, operation, shardId, elapsed, key, criteria);
+    }
+
+    private Timer timer(String operation, int shardId) {
+        Timer[] shardTimers = timers.get(operation);
+        if (null == shardTimers) {
+            shardTimers = timers.computeIfAbsent(operation, op -> new Timer[numShards + 1]);
+        }
+        final int index = shardId + 1;
+        Timer timer = shardTimers[index];
+        if (null == timer) {
+            //The registry hands out the same timer for a name, so racing threads end up sharing it
+            timer = metricRegistry.timer(MetricRegistry.name(prefix,
+                                                             operation,
+                                                             ALL_SHARDS == shardId ? "all" : "shard" + shardId));
+            shardTimers[index] = timer;
+        }
+        return timer;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import io.appform.dropwizard.sharding.exceptions.DeadlineExceededException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deadline for all dao calls made on the current thread. {@link TransactionHandler} refuses to start transactions once
+ * the deadline has passed and otherwise sets the time left as the transaction timeout, which hibernate applies to
+ * every statement as the JDBC query timeout. Scatter gather calls give up on outstanding shards at the deadline.
+ * Deadlines nest; an inner deadline can only shorten the one already set. They are carried over to shard calls run on
+ * the scatter gather and async executors.
+ */
+public final class Deadline {
+    /**
+     * Restores the previous deadline on close.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final ThreadLocal<Long> CURRENT = new ThreadLocal<>();
+
+    private Deadline() {}
+
+    /**
+     * Sets a deadline for dao calls made on this thread till the returned scope is closed.
+     *
+     * @param timeout Time from now within which calls need to complete
+     * @param unit    Unit of the timeout
+     * @return Scope to be closed when done
+     */
+    public static Scope within(long timeout, TimeUnit unit) {
+        final Long previous = CURRENT.get();
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        CURRENT.set(null == previous || deadline - previous < 0 ? deadline : previous);
+        return () -> restore(previous);
+    }
+
+    /**
+     * Runs the work with a deadline for all dao calls made inside it.
+     */
+    public static <T> T execute(long timeout, TimeUnit unit, Callable<T> work) throws Exception {
+        try (Scope scope = within(timeout, unit)) {
+            return work.call();
+        }
+    }
+
+    public static boolean isSet() {
+        return null != CURRENT.get();
+    }
+
+    /**
+     * @return Nanoseconds left till the deadline, negative once it has passed, {@link Long#MAX_VALUE} if not set
+     */
+    public static long remainingNanos() {
+        final Long deadline = CURRENT.get();
+        return null == deadline ? Long.MAX_VALUE : deadline - System.nanoTime();
+    }
+
+    /**
+     * @return Time left till the deadline in whole seconds, rounded up and at least one, for use as a JDBC timeout
+     */
+    public static int remainingSeconds() {
+        final long remainingNanos = remainingNanos();
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE,
+                                          (remainingNanos + TimeUnit.SECONDS.toNanos(1) - 1)
+                                                  / TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    /**
+     * @throws DeadlineExceededException if the deadline has passed
+     */
+    public static void check() {
+        if (remainingNanos() <= 0) {
+            throw new DeadlineExceededException("Deadline for dao calls has passed", null);
+        }
+    }
+
+    /**
+     * Wraps a call to be run on another thread so that it runs with the deadline of the current thread.
+     */
+    public static <T> Callable<T> propagate(Callable<T> call) {
+        final Long deadline = CURRENT.get();
+        if (null == deadline) {
+            return call;
+        }
+        return () -> {
+            final Long previous = CURRENT.get();
+            CURRENT.set(deadline);
+            try {
+                return call.call();
+            }
+            finally {
+                restore(previous);
+            }
+        };
+    }
+
+    private static void restore(Long previous) {
+        if (null == previous) {
+            CURRENT.remove();
+        }
+        else {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Preconditions;
+import io.appform.dropwizard.sharding.config.HotKeyConfig;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the keys and buckets taking most of the lookups on every shard. A sample of the keys routed through
+ * {@link ShardCalculator} is fed to a space saving sketch per shard, which keeps the topK most frequent keys in
+ * bounded memory. Counts of keys that made it into the sketch late are overestimated by at most the reported error.
+ * Buckets are few enough to be counted exactly. All counts are halved every decay interval so that the sketches
+ * follow changes in traffic.
+ * Publishes the share of sampled lookups taken by the hottest key and the hottest bucket of every shard as the
+ * "hottestKeyShare" and "hottestBucketShare" gauges.
+ */
+public final class HotKeys {
+    private static final HotKeys DISABLED = new HotKeys();
+
+    /**
+     * A key or bucket along with its approximate number of sampled lookups
+     */
+    @Value
+    public static class HotKey {
+        String key;
+        long count;
+        /**
+         * Maximum overestimation of the count
+         */
+        long error;
+    }
+
+    private final boolean enabled;
+    private final double sampleRate;
+    private final int topK;
+    private final long decayIntervalNanos;
+    private final SpaceSaving[] keys;
+    private final AtomicLongArray bucketCounts;
+    private final int[] bucketShards;
+    private final AtomicLong lastDecay = new AtomicLong(System.nanoTime());
+
+    private HotKeys() {
+        this.enabled = false;
+        this.sampleRate = 0;
+        this.topK = 0;
+        this.decayIntervalNanos = Long.MAX_VALUE;
+        this.keys = new SpaceSaving[0];
+        this.bucketCounts = new AtomicLongArray(0);
+        this.bucketShards = new int[0];
+    }
+
+    public HotKeys(
+            int numShards,
+            int numBuckets,
+            double sampleRate,
+            int topK,
+            long decayInterval,
+            TimeUnit unit,
+            MetricRegistry metricRegistry,
+            String name) {
+        Preconditions.checkArgument(sampleRate >= 0 && sampleRate <= 1, "Sample rate must be between 0 and 1");
+        Preconditions.checkArgument(topK > 0, "Top K must be positive");
+        this.enabled = true;
+        this.sampleRate = sampleRate;
+        this.topK = topK;
+        this.decayIntervalNanos = unit.toNanos(decayInterval);
+        this.keys = IntStream.range(0, numShards)
+                .mapToObj(shard -> new SpaceSaving(topK))
+                .toArray(SpaceSaving[]::new);
+        this.bucketCounts = new AtomicLongArray(numBuckets);
+        this.bucketShards = new int[numBuckets];
+        IntStream.range(0, numShards).forEach(shard -> {
+            final String prefix = MetricRegistry.name(HotKeys.class, name, "shard" + shard);
+            metricRegistry.gauge(MetricRegistry.name(prefix, "hottestKeyShare"),
+                                 () -> (Gauge<Double>) () -> keys[shard].hottestShare());
+            metricRegistry.gauge(MetricRegistry.name(prefix, "hottestBucketShare"),
+                                 () -> (Gauge<Double>) () -> hottestBucketShare(shard));
+        });
+    }
+
+    public HotKeys(HotKeyConfig config, int numShards, int numBuckets, MetricRegistry metricRegistry, String name) {
+        this(numShards,
+             numBuckets,
+             config.getSampleRate(),
+             config.getTopK(),
+             config.getDecayInterval().getQuantity(),
+             config.getDecayInterval().getUnit(),
+             metricRegistry,
+             name);
+    }
+
+    public static HotKeys disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int numShards() {
+        return keys.length;
+    }
+
+    /**
+     * Counts the lookup if it is picked for the sample.
+     */
+    public void record(Object key, int bucketId, int shardId) {
+        if (!enabled || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        decayIfDue();
+        bucketCounts.incrementAndGet(bucketId);
+        bucketShards[bucketId] = shardId;
+        keys[shardId].offer(String.valueOf(key));
+    }
+
+    /**
+     * @return Hottest keys of the shard, hottest first
+     */
+    public List<HotKey> topKeys(int shardId) {
+        return keys[shardId].top();
+    }
+
+    /**
+     * @return Hottest buckets of the shard, hottest first
+     */
+    public List<HotKey> topBuckets(int shardId) {
+        return IntStream.range(0, bucketCounts.length())
+                .filter(bucket -> bucketShards[bucket] == shardId && bucketCounts.get(bucket) > 0)
+                .mapToObj(bucket -> new HotKey(Integer.toString(bucket), bucketCounts.get(bucket), 0))
+                .sorted(Comparator.comparingLong(HotKey::getCount).reversed())
+                .limit(topK)
+                .collect(Collectors.toList());
+    }
+
+    private double hottestBucketShare(int shardId) {
+        long total = 0;
+        long max = 0;
+        for (int bucket = 0; bucket < bucketCounts.length(); bucket++) {
+            if (bucketShards[bucket] == shardId) {
+                final long count = bucketCounts.get(bucket);
+                total += count;
+                max = Math.max(max, count);
+            }
+        }
+        return 0 == total ? 0 : (double) max / total;
+    }
+
+    private void decayIfDue() {
+        final long now = System.nanoTime();
+        final long last = lastDecay.get();
+        if (now - last < decayIntervalNanos || !lastDecay.compareAndSet(last, now)) {
+            return;
+        }
+        for (SpaceSaving sketch : keys) {
+            sketch.decay();
+        }
+        for (int bucket = 0; bucket < bucketCounts.length(); bucket++) {
+            bucketCounts.getAndUpdate(bucket, count -> count / 2);
+        }
+    }
+
+    /**
+     * Space saving sketch: keeps the capacity most frequent keys. A new key replaces the least frequent one and
+     * inherits its count as the error.
+     */
+    private static final class SpaceSaving {
+        private final int capacity;
+        private final Map<String, long[]> counters;
+        private long total;
+
+        private SpaceSaving(int capacity) {
+            this.capacity = capacity;
+            this.counters = new HashMap<>(capacity * 2);
+        }
+
+        synchronized void offer(String key) {
+            total++;
+            final long[] counter = counters.get(key);
+            if (null != counter) {
+                counter[0]++;
+                return;
+            }
+            if (counters.size() < capacity) {
+                counters.put(key, new long[]{1, 0});
+                return;
+            }
+            Map.Entry<String, long[]> min = null;
+            for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+                if (null == min || entry.getValue()[0] < min.getValue()[0]) {
+                    min = entry;
+                }
+            }
+            final long minCount = min.getValue()[0];
+            counters.remove(min.getKey());
+            counters.put(key, new long[]{minCount + 1, minCount});
+        }
+
+        synchronized void decay() {
+            total /= 2;
+            final Iterator<long[]> iterator = counters.values().iterator();
+            while (iterator.hasNext()) {
+                final long[] counter = iterator.next();
+                counter[0] /= 2;
+                counter[1] /= 2;
+                if (0 == counter[0]) {
+                    iterator.remove();
+                }
+            }
+        }
+
+        synchronized List<HotKey> top() {
+            final List<HotKey> top = new ArrayList<>(counters.size());
+            counters.forEach((key, counter) -> top.add(new HotKey(key, counter[0], counter[1])));
+            top.sort(Comparator.comparingLong(HotKey::getCount).reversed());
+            return top;
+        }
+
+        synchronized double hottestShare() {
+            long max = 0;
+            for (long[] counter : counters.values()) {
+                max = Math.max(max, counter[0]);
+            }
+            return 0 == total ? 0 : (double) max / total;
+        }
+    }
+}
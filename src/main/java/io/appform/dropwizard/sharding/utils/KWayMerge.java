@@ -0,0 +1,119 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Merges already sorted sources into a single sorted page. Only the current head of every source is kept in a heap,
+ * and sources are not read any further once the page is full.
+ */
+public final class KWayMerge {
+
+    private static final class Head<T> {
+        private T value;
+        private final int source;
+
+        private Head(T value, int source) {
+            this.value = value;
+            this.source = source;
+        }
+    }
+
+    private KWayMerge() {}
+
+    /**
+     * Merges the sources, skips the first skip elements of the merged sequence and returns the next limit ones.
+     * Elements that compare equal are returned in the order of their sources.
+     *
+     * @param sources    Sources, each sorted by the comparator
+     * @param comparator Comparator the sources are sorted by
+     * @param skip       Number of merged elements to skip
+     * @param limit      Maximum number of elements to return
+     * @return Page of merged elements
+     */
+    public static <T> List<T> merge(
+            List<? extends Iterator<? extends T>> sources,
+            Comparator<? super T> comparator,
+            int skip,
+            int limit) {
+        return merge(sources, comparator, skip, limit, (value, source) -> {});
+    }
+
+    /**
+     * Same as {@link #merge(List, Comparator, int, int)}, additionally reports every returned element along with the
+     * index of the source it was read from.
+     *
+     * @param sources    Sources, each sorted by the comparator
+     * @param comparator Comparator the sources are sorted by
+     * @param skip       Number of merged elements to skip
+     * @param limit      Maximum number of elements to return
+     * @param onResult   Called with every returned element and the index of its source
+     * @return Page of merged elements
+     */
+    public static <T> List<T> merge(
+            List<? extends Iterator<? extends T>> sources,
+            Comparator<? super T> comparator,
+            int skip,
+            int limit,
+            ObjIntConsumer<? super T> onResult) {
+        Preconditions.checkArgument(skip >= 0, "Number of elements to skip can't be negative");
+        Preconditions.checkArgument(limit >= 0, "Limit can't be negative");
+        final List<T> results = new ArrayList<>();
+        if (limit == 0) {
+            return results;
+        }
+        final PriorityQueue<Head<T>> heap = new PriorityQueue<>(Math.max(1, sources.size()), (lhs, rhs) -> {
+            final int result = comparator.compare(lhs.value, rhs.value);
+            return result != 0 ? result : Integer.compare(lhs.source, rhs.source);
+        });
+        for (int i = 0; i < sources.size(); i++) {
+            final Iterator<? extends T> source = sources.get(i);
+            if (source.hasNext()) {
+                heap.add(new Head<>(source.next(), i));
+            }
+        }
+        int skipped = 0;
+        while (!heap.isEmpty()) {
+            final Head<T> head = heap.poll();
+            if (skipped < skip) {
+                skipped++;
+            }
+            else {
+                results.add(head.value);
+                onResult.accept(head.value, head.source);
+                if (results.size() == limit) {
+                    break;
+                }
+            }
+            final Iterator<? extends T> source = sources.get(head.source);
+            if (source.hasNext()) {
+                head.value = source.next();
+                heap.add(head);
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Striped;
+import io.appform.dropwizard.sharding.config.KeyLockConfig;
+import io.appform.dropwizard.sharding.exceptions.DaoFwdException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Node local striped locks for lookup keys. Writers on the same node queue up here, so only one transaction per key
+ * per node waits on the row lock in the database. A caller that cannot get the local lock within the configured wait
+ * goes to the database without it, so stripe collisions and nested locks can never block forever.
+ * Wait times are published as the "wait" timer and fall throughs as the "waitTimeouts" meter.
+ */
+@Slf4j
+public final class KeyLocks {
+    /**
+     * A held lock, released on close.
+     */
+    public interface Held extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Held NOT_HELD = () -> {};
+    private static final KeyLocks DISABLED = new KeyLocks();
+
+    private final Striped<Lock> locks;
+    private final long maxWaitNanos;
+    private final Timer waitTimer;
+    private final Meter waitTimeouts;
+
+    private KeyLocks() {
+        this.locks = null;
+        this.maxWaitNanos = 0;
+        this.waitTimer = null;
+        this.waitTimeouts = null;
+    }
+
+    public KeyLocks(int stripes, long maxWait, TimeUnit unit, MetricRegistry metricRegistry, String name) {
+        Preconditions.checkArgument(stripes > 0, "Number of stripes must be positive");
+        this.locks = Striped.lock(stripes);
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.waitTimer = metricRegistry.timer(MetricRegistry.name(KeyLocks.class, name, "wait"));
+        this.waitTimeouts = metricRegistry.meter(MetricRegistry.name(KeyLocks.class, name, "waitTimeouts"));
+    }
+
+    public KeyLocks(KeyLockConfig config, MetricRegistry metricRegistry, String name) {
+        this(config.getStripes(),
+             config.getMaxWait().getQuantity(),
+             config.getMaxWait().getUnit(),
+             metricRegistry,
+             name);
+    }
+
+    /**
+     * Locks that are never taken, used when key locks are not enabled.
+     */
+    public static KeyLocks disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return null != locks;
+    }
+
+    /**
+     * Waits for the lock on the key.
+     *
+     * @param key Lookup key
+     * @return The held lock, or a no-op if locks are disabled or the wait timed out
+     */
+    public Held acquire(Object key) {
+        if (null == locks) {
+            return NOT_HELD;
+        }
+        final Lock lock = locks.get(key);
+        final long start = System.nanoTime();
+        final boolean acquired;
+        try {
+            acquired = lock.tryLock(maxWaitNanos, TimeUnit.NANOSECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DaoFwdException("Interrupted while waiting for lock on key: " + key, e);
+        }
+        finally {
+            waitTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            waitTimeouts.mark();
+            log.debug("Timed out waiting for local lock on key {}, going to the database without it", key);
+            return NOT_HELD;
+        }
+        return lock::unlock;
+    }
+}
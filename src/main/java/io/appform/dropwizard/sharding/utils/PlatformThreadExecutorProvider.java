@@ -0,0 +1,47 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed size pool of daemon platform threads. Threads are created on demand and let go once idle.
+ */
+public class PlatformThreadExecutorProvider implements ShardExecutorProvider {
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 60;
+
+    @Override
+    public ExecutorService create(String name, int maxConcurrency) {
+        final ThreadPoolExecutor executorService = new ThreadPoolExecutor(maxConcurrency,
+                                                                          maxConcurrency,
+                                                                          IDLE_THREAD_TIMEOUT_SECONDS,
+                                                                          TimeUnit.SECONDS,
+                                                                          new LinkedBlockingQueue<>(),
+                                                                          new ThreadFactoryBuilder()
+                                                                                  .setNameFormat(name + "-%d")
+                                                                                  .setDaemon(true)
+                                                                                  .build());
+        executorService.allowCoreThreadTimeOut(true);
+        return executorService;
+    }
+}
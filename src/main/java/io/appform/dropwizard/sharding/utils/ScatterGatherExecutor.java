@@ -0,0 +1,186 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import com.google.common.base.Preconditions;
+import io.appform.dropwizard.sharding.config.ScatterGatherConfig;
+import io.appform.dropwizard.sharding.exceptions.DaoFwdException;
+import io.appform.dropwizard.sharding.exceptions.DeadlineExceededException;
+import io.appform.dropwizard.sharding.jfr.FlightRecorderEvents;
+import io.appform.dropwizard.sharding.replicas.ReplicaRouting;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.SerializationUtils;
+import org.hibernate.criterion.DetachedCriteria;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Runs a call against a set of shards. Calls run on the provided executor with at most maxParallelism
+ * shards in flight for a single scatter, and fail with a {@link DaoFwdException} if all shards have not responded
+ * within the timeout, or a {@link DeadlineExceededException} if the {@link Deadline} set by the caller passes first.
+ * Outstanding shard calls are cancelled on failure, timeout or deadline.
+ * Each shard call runs on its own thread, so it needs to open its own transaction (see {@link Transactions}).
+ */
+@Slf4j
+public class ScatterGatherExecutor {
+    private static final int DEFAULT_MAX_IN_LIST_SIZE = 1000;
+    private static final ScatterGatherExecutor SERIAL = new ScatterGatherExecutor(null, 1, 0, TimeUnit.NANOSECONDS);
+
+    @Getter
+    private final ExecutorService executorService;
+    private final int maxParallelism;
+    private final long timeoutNanos;
+    /**
+     * Maximum number of keys to be sent in a single IN list when looking up multiple keys on a shard
+     */
+    @Getter
+    private final int maxInListSize;
+
+    public ScatterGatherExecutor(ExecutorService executorService, int maxParallelism, long timeout, TimeUnit unit) {
+        this(executorService, maxParallelism, timeout, unit, DEFAULT_MAX_IN_LIST_SIZE);
+    }
+
+    public ScatterGatherExecutor(
+            ExecutorService executorService,
+            int maxParallelism,
+            long timeout,
+            TimeUnit unit,
+            int maxInListSize) {
+        Preconditions.checkArgument(maxParallelism > 0, "Max parallelism must be positive");
+        Preconditions.checkArgument(maxInListSize > 0, "Max IN list size must be positive");
+        this.executorService = executorService;
+        this.maxParallelism = maxParallelism;
+        this.timeoutNanos = unit.toNanos(timeout);
+        this.maxInListSize = maxInListSize;
+    }
+
+    public ScatterGatherExecutor(ExecutorService executorService, ScatterGatherConfig config) {
+        this(executorService,
+             config.getMaxParallelism(),
+             config.getTimeout().getQuantity(),
+             config.getTimeout().getUnit(),
+             config.getMaxInListSize());
+    }
+
+    /**
+     * Executor that runs shard calls one after the other on the calling thread.
+     */
+    public static ScatterGatherExecutor serial() {
+        return SERIAL;
+    }
+
+    public boolean isSerial() {
+        return null == executorService;
+    }
+
+    /**
+     * Criteria to be used for a single shard call. The executable criteria built from a {@link DetachedCriteria}
+     * shares state (session, paging, projection) with it, so shard calls running in parallel get their own copy.
+     *
+     * @param criteria Criteria passed in by the caller
+     * @return The same criteria when running serially, a copy otherwise
+     */
+    public DetachedCriteria criteriaForShard(DetachedCriteria criteria) {
+        return isSerial() ? criteria : SerializationUtils.clone(criteria);
+    }
+
+    /**
+     * Runs the call for every target and returns the results in the same order as the targets.
+     *
+     * @param targets Targets, usually per shard daos
+     * @param call    Call to make for every target
+     * @return Results in target order
+     */
+    public <S, R> List<R> scatter(List<S> targets, Function<S, R> call) {
+        if (isSerial() || targets.size() <= 1) {
+            return targets.stream().map(call).collect(Collectors.toList());
+        }
+        final boolean callerDeadline = Deadline.remainingNanos() < timeoutNanos;
+        final long deadline = System.nanoTime() + Math.min(timeoutNanos, Math.max(0, Deadline.remainingNanos()));
+        final Semaphore permits = new Semaphore(maxParallelism);
+        final List<Future<R>> futures = new ArrayList<>(targets.size());
+        final Object scatterEvent = FlightRecorderEvents.beginScatter();
+        boolean failed = true;
+        try {
+            for (S target : targets) {
+                if (!permits.tryAcquire(remaining(deadline), TimeUnit.NANOSECONDS)) {
+                    throw new TimeoutException();
+                }
+                futures.add(executorService.submit(Deadline.propagate(ReplicaRouting.propagate(() -> {
+                    try {
+                        return call.apply(target);
+                    }
+                    finally {
+                        permits.release();
+                    }
+                }))));
+            }
+            final List<R> results = new ArrayList<>(futures.size());
+            for (Future<R> future : futures) {
+                results.add(future.get(remaining(deadline), TimeUnit.NANOSECONDS));
+            }
+            failed = false;
+            return results;
+        }
+        catch (ExecutionException e) {
+            cancel(futures);
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new DaoFwdException("Error executing shard call", cause);
+        }
+        catch (TimeoutException e) {
+            cancel(futures);
+            if (callerDeadline) {
+                throw new DeadlineExceededException("Deadline passed before all shards responded", e);
+            }
+            throw new DaoFwdException(String.format("Shard calls did not complete within %d ms",
+                                                    TimeUnit.NANOSECONDS.toMillis(timeoutNanos)), e);
+        }
+        catch (InterruptedException e) {
+            cancel(futures);
+            Thread.currentThread().interrupt();
+            throw new DaoFwdException("Interrupted while waiting for shard calls", e);
+        }
+        finally {
+            FlightRecorderEvents.endScatter(scatterEvent, targets.size(), maxParallelism, failed);
+        }
+    }
+
+    private static long remaining(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    private static <R> void cancel(List<Future<R>> futures) {
+        futures.forEach(future -> future.cancel(true));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.MapMaker;
+import io.appform.dropwizard.sharding.exceptions.DaoFwdException;
+import io.appform.dropwizard.sharding.exceptions.ShardSaturatedException;
+import org.hibernate.SessionFactory;
+
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of transactions in flight on a shard. A transaction that can't get a slot within the configured
+ * wait fails with a {@link ShardSaturatedException} instead of queueing on the connection pool of a slow shard.
+ * Bulkheads are registered against the session factory of the shard and picked up by {@link TransactionHandler}, so
+ * every dao call is covered. Calls joining an open {@link ShardScope} use the slot held by the scope.
+ * Publishes the "inFlight" gauge and the "rejected" meter for the shard.
+ */
+public final class ShardBulkhead {
+    private static final Map<SessionFactory, ShardBulkhead> BULKHEADS = new MapMaker().weakKeys().makeMap();
+
+    private final int shardId;
+    private final int maxConcurrentCalls;
+    private final long maxWaitNanos;
+    private final Semaphore permits;
+    private final Meter rejected;
+
+    public ShardBulkhead(
+            int shardId,
+            int maxConcurrentCalls,
+            long maxWait,
+            TimeUnit unit,
+            MetricRegistry metricRegistry,
+            String name) {
+        Preconditions.checkArgument(maxConcurrentCalls > 0, "Max concurrent calls must be positive");
+        this.shardId = shardId;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.permits = new Semaphore(maxConcurrentCalls);
+        final String prefix = MetricRegistry.name(ShardBulkhead.class, name, "shard" + shardId);
+        metricRegistry.gauge(MetricRegistry.name(prefix, "inFlight"), () -> (Gauge<Integer>) this::inFlight);
+        this.rejected = metricRegistry.meter(MetricRegistry.name(prefix, "rejected"));
+    }
+
+    /**
+     * Limits transactions opened through the session factory using the bulkhead.
+     */
+    public static void register(SessionFactory sessionFactory, ShardBulkhead bulkhead) {
+        BULKHEADS.put(sessionFactory, bulkhead);
+    }
+
+    public static void unregister(SessionFactory sessionFactory) {
+        BULKHEADS.remove(sessionFactory);
+    }
+
+    static ShardBulkhead forSessionFactory(SessionFactory sessionFactory) {
+        return BULKHEADS.isEmpty() ? null : BULKHEADS.get(sessionFactory);
+    }
+
+    /**
+     * Takes a slot on the shard, waiting at most the configured time for one.
+     *
+     * @throws ShardSaturatedException if no slot became free in time
+     */
+    public void acquire() {
+        try {
+            if (!permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+                rejected.mark();
+                throw new ShardSaturatedException(shardId);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DaoFwdException("Interrupted while waiting for a slot on shard " + shardId, e);
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public int inFlight() {
+        return maxConcurrentCalls - permits.availablePermits();
+    }
+
+    public long rejected() {
+        return rejected.getCount();
+    }
+}
@@ -17,27 +17,63 @@
 
 package io.appform.dropwizard.sharding.utils;
 
+import io.appform.dropwizard.sharding.jfr.FlightRecorderEvents;
 import io.appform.dropwizard.sharding.sharding.BucketIdExtractor;
 import io.appform.dropwizard.sharding.sharding.ShardManager;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Utility class for calculating shards.
+ * Utility class for calculating shards. Lookups are sampled into the {@link HotKeys} of the calculator, if enabled,
+ * and reported as flight recorder routing events tagged with the namespace and entity of the dao using it.
  */
 @Slf4j
 public class ShardCalculator<T> {
 
     private final ShardManager shardManager;
     private final BucketIdExtractor<T> extractor;
+    private final HotKeys hotKeys;
+    private final String namespace;
+    private final String entity;
 
     public ShardCalculator(ShardManager shardManager, BucketIdExtractor<T> extractor) {
+        this(shardManager, extractor, HotKeys.disabled());
+    }
+
+    public ShardCalculator(ShardManager shardManager, BucketIdExtractor<T> extractor, HotKeys hotKeys) {
+        this(shardManager, extractor, hotKeys, null, null);
+    }
+
+    /**
+     * @param namespace   Namespace of the bundle, for routing events
+     * @param entityClass Entity (or wrapped dao) the calculator routes keys for, for routing events
+     */
+    public ShardCalculator(
+            ShardManager shardManager,
+            BucketIdExtractor<T> extractor,
+            HotKeys hotKeys,
+            String namespace,
+            Class<?> entityClass) {
         this.shardManager = shardManager;
         this.extractor = extractor;
+        this.hotKeys = hotKeys;
+        this.namespace = namespace;
+        this.entity = null == entityClass ? null : entityClass.getSimpleName();
     }
 
     public int shardId(T key) {
         int bucketId = extractor.bucketId(key);
-        return shardManager.shardForBucket(bucketId);
+        final int shardId = shardManager.shardForBucket(bucketId);
+        FlightRecorderEvents.routing(namespace, entity, bucketId, shardId);
+        hotKeys.record(key, bucketId, shardId);
+        return shardId;
+    }
+
+    /**
+     * Shard for the key, without sampling it into hot keys or emitting a routing event. For picking where to run a
+     * dao call that routes the key again itself, so that the lookup is only counted once.
+     */
+    public int peekShardId(T key) {
+        return shardManager.shardForBucket(extractor.bucketId(key));
     }
 
     public boolean isOnValidShard(T key) {
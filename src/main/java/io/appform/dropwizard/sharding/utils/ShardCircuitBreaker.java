@@ -0,0 +1,307 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.UniformReservoir;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.MapMaker;
+import io.appform.dropwizard.sharding.config.BlacklistConfig;
+import io.appform.dropwizard.sharding.exceptions.DeadlineExceededException;
+import io.appform.dropwizard.sharding.exceptions.ShardBlacklistedException;
+import io.appform.dropwizard.sharding.sharding.ShardManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.JDBCException;
+import org.hibernate.PessimisticLockException;
+import org.hibernate.QueryTimeoutException;
+import org.hibernate.SessionFactory;
+import org.hibernate.StaleStateException;
+import org.hibernate.TransactionException;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.LockAcquisitionException;
+
+import javax.persistence.OptimisticLockException;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Blacklists a shard through its {@link ShardManager} (and so the {@link io.appform.dropwizard.sharding.sharding.ShardBlacklistingStore})
+ * when transactions on it fail with database errors or get slow, and brings it back once it recovers.
+ * Error rate and p99 latency are evaluated over tumbling windows, the error rate on every failure and the latency when
+ * a window ends. A tripped shard rejects calls with {@link ShardBlacklistedException} for the open duration. It is then
+ * unblacklisted in half open state, where only a limited number of probe calls go through; the shard is closed again
+ * once all of them succeed and tripped again if any of them fails.
+ * Only database errors count as failures. Lock conflicts, constraint violations, stale updates, query and transaction
+ * timeouts, anything failing after the caller's deadline has passed and errors thrown by application code do not.
+ * Breakers are registered against the session factory of the shard and fed by {@link TransactionHandler}, so unlike a
+ * shard blacklisted by hand a tripped shard also fails queries across all shards.
+ */
+@Slf4j
+public final class ShardCircuitBreaker {
+    enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private static final Map<SessionFactory, ShardCircuitBreaker> BREAKERS = new MapMaker().weakKeys().makeMap();
+
+    private static final ScheduledExecutorService HALF_OPENER
+            = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "shard-circuit-breaker");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private static final class Window {
+        private final long start;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final Histogram latencies = new Histogram(new UniformReservoir());
+
+        private Window(long start) {
+            this.start = start;
+        }
+    }
+
+    private final int shardId;
+    private final ShardManager shardManager;
+    private final double errorRateThreshold;
+    private final long latencyThresholdNanos;
+    private final int minCalls;
+    private final long windowNanos;
+    private final long openNanos;
+    private final int probeCalls;
+    private final LongSupplier ticker;
+
+    private final AtomicInteger probesLeft = new AtomicInteger();
+    private final AtomicInteger probeSuccesses = new AtomicInteger();
+    private volatile State state = State.CLOSED;
+    private volatile Window window;
+    private volatile long stateChangedAt;
+
+    public ShardCircuitBreaker(int shardId, ShardManager shardManager, BlacklistConfig config) {
+        this(shardId, shardManager, config, System::nanoTime);
+    }
+
+    @VisibleForTesting
+    ShardCircuitBreaker(int shardId, ShardManager shardManager, BlacklistConfig config, LongSupplier ticker) {
+        Preconditions.checkArgument(config.getMinCalls() > 0, "Min calls must be positive");
+        Preconditions.checkArgument(config.getProbeCalls() > 0, "Probe calls must be positive");
+        this.shardId = shardId;
+        this.shardManager = shardManager;
+        this.errorRateThreshold = config.getErrorRateThreshold();
+        this.latencyThresholdNanos = config.getLatencyThreshold().toNanoseconds();
+        this.minCalls = config.getMinCalls();
+        this.windowNanos = config.getEvaluationWindow().toNanoseconds();
+        this.openNanos = config.getOpenDuration().toNanoseconds();
+        this.probeCalls = config.getProbeCalls();
+        this.ticker = ticker;
+        this.window = new Window(ticker.getAsLong());
+    }
+
+    /**
+     * Trips and restores the shard of the session factory automatically.
+     */
+    public static void register(SessionFactory sessionFactory, ShardCircuitBreaker breaker) {
+        BREAKERS.put(sessionFactory, breaker);
+    }
+
+    public static void unregister(SessionFactory sessionFactory) {
+        BREAKERS.remove(sessionFactory);
+    }
+
+    static ShardCircuitBreaker forSessionFactory(SessionFactory sessionFactory) {
+        return BREAKERS.isEmpty() ? null : BREAKERS.get(sessionFactory);
+    }
+
+    /**
+     * Checks if a call can be made on the shard.
+     *
+     * @throws ShardBlacklistedException if the shard is tripped, or half open with all probe calls taken
+     */
+    public void allowCall() {
+        if (State.CLOSED == state) {
+            return;
+        }
+        if (State.OPEN == state) {
+            if (ticker.getAsLong() - stateChangedAt < openNanos) {
+                throw new ShardBlacklistedException(shardId);
+            }
+            halfOpen();
+        }
+        if (probesLeft.getAndDecrement() > 0) {
+            return;
+        }
+        rearmProbesIfStuck();
+        throw new ShardBlacklistedException(shardId);
+    }
+
+    /**
+     * Records the outcome of a call allowed by {@link #allowCall()}.
+     *
+     * @param latencyNanos Time taken by the call
+     * @param failed       If the call failed with a database error
+     */
+    public void record(long latencyNanos, boolean failed) {
+        switch (state) {
+            case HALF_OPEN:
+                if (failed) {
+                    trip("probe call failed");
+                }
+                else if (probeSuccesses.incrementAndGet() >= probeCalls) {
+                    close();
+                }
+                return;
+            case OPEN:
+                return;
+            default:
+                break;
+        }
+        final Window current = currentWindow();
+        current.calls.increment();
+        current.latencies.update(latencyNanos);
+        if (failed) {
+            current.errors.increment();
+            final long calls = current.calls.sum();
+            if (calls >= minCalls && current.errors.sum() >= errorRateThreshold * calls) {
+                trip(String.format("error rate crossed %.2f", errorRateThreshold));
+            }
+        }
+    }
+
+    /**
+     * @return true for errors that point at a problem with the shard rather than with the call
+     */
+    public static boolean isShardFailure(Throwable error) {
+        //Anything failing once the caller's deadline is gone was most likely cut short by it
+        if (Deadline.remainingNanos() <= 0) {
+            return false;
+        }
+        boolean databaseError = false;
+        for (Throwable cause = error; null != cause; cause = cause.getCause()) {
+            if (isTimeout(cause)
+                    || cause instanceof PessimisticLockException
+                    || cause instanceof LockAcquisitionException
+                    || cause instanceof ConstraintViolationException
+                    || cause instanceof StaleStateException
+                    || cause instanceof OptimisticLockException
+                    || cause instanceof javax.persistence.PessimisticLockException
+                    || cause instanceof DeadlineExceededException) {
+                return false;
+            }
+            databaseError |= cause instanceof SQLException
+                    || cause instanceof JDBCException
+                    || cause instanceof TransactionException;
+        }
+        return databaseError;
+    }
+
+    /**
+     * Query and transaction timeouts are set from the caller's deadline, so they say more about the caller than the shard.
+     * Slow shards are caught by the latency check instead.
+     */
+    private static boolean isTimeout(Throwable error) {
+        return error instanceof QueryTimeoutException
+                || error instanceof javax.persistence.QueryTimeoutException
+                || error instanceof SQLTimeoutException
+                || (error instanceof TransactionException
+                        && null != error.getMessage()
+                        && error.getMessage().contains("transaction timeout expired"));
+    }
+
+    @VisibleForTesting
+    State state() {
+        return state;
+    }
+
+    private Window currentWindow() {
+        final Window current = window;
+        final long now = ticker.getAsLong();
+        if (now - current.start < windowNanos) {
+            return current;
+        }
+        synchronized (this) {
+            if (window != current) {
+                return window;
+            }
+            window = new Window(now);
+        }
+        if (current.calls.sum() >= minCalls
+                && current.latencies.getSnapshot().get99thPercentile() > latencyThresholdNanos) {
+            trip(String.format("p99 latency crossed %d ms", TimeUnit.NANOSECONDS.toMillis(latencyThresholdNanos)));
+        }
+        return window;
+    }
+
+    private synchronized void trip(String reason) {
+        if (State.OPEN == state) {
+            return;
+        }
+        log.warn("Blacklisting shard {} as {}", shardId, reason);
+        state = State.OPEN;
+        stateChangedAt = ticker.getAsLong();
+        shardManager.blacklistShard(shardId);
+        HALF_OPENER.schedule(this::halfOpenIfDue, openNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void halfOpenIfDue() {
+        if (State.OPEN == state && ticker.getAsLong() - stateChangedAt >= openNanos) {
+            halfOpen();
+        }
+    }
+
+    private synchronized void halfOpen() {
+        if (State.OPEN != state) {
+            return;
+        }
+        log.info("Letting {} probe calls through to shard {}", probeCalls, shardId);
+        probesLeft.set(probeCalls);
+        probeSuccesses.set(0);
+        stateChangedAt = ticker.getAsLong();
+        state = State.HALF_OPEN;
+        shardManager.unblacklistShard(shardId);
+    }
+
+    /**
+     * Probes that never report back (for example calls rejected by a bulkhead) would otherwise leave the shard
+     * half open forever.
+     */
+    private synchronized void rearmProbesIfStuck() {
+        final long now = ticker.getAsLong();
+        if (State.HALF_OPEN == state && now - stateChangedAt >= openNanos) {
+            probesLeft.set(probeCalls);
+            probeSuccesses.set(0);
+            stateChangedAt = now;
+        }
+    }
+
+    private synchronized void close() {
+        if (State.HALF_OPEN != state) {
+            return;
+        }
+        log.info("Shard {} recovered", shardId);
+        state = State.CLOSED;
+        stateChangedAt = ticker.getAsLong();
+        window = new Window(stateChangedAt);
+    }
+}
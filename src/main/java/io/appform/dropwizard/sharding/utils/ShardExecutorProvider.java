@@ -0,0 +1,58 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Creates the executors used to run blocking shard calls (scatter gather, multi gets and async daos).
+ * Executors are bounded to maxConcurrency calls in flight, which is usually sized to the connection pool the calls
+ * draw from.
+ */
+public interface ShardExecutorProvider {
+
+    /**
+     * @param name           Name for the executor, used as the prefix for thread names
+     * @param maxConcurrency Maximum number of calls to run at the same time
+     * @return Executor. The caller owns it and is responsible for shutting it down.
+     */
+    ExecutorService create(String name, int maxConcurrency);
+
+    /**
+     * Bounded pool of platform threads.
+     */
+    static ShardExecutorProvider platformThreads() {
+        return new PlatformThreadExecutorProvider();
+    }
+
+    /**
+     * A new virtual thread per call, with at most maxConcurrency calls running at the same time.
+     *
+     * @throws UnsupportedOperationException if the runtime does not support virtual threads
+     */
+    static ShardExecutorProvider virtualThreads() {
+        return new VirtualThreadExecutorProvider();
+    }
+
+    /**
+     * Virtual threads on runtimes that support them, a bounded pool of platform threads elsewhere.
+     */
+    static ShardExecutorProvider defaultProvider() {
+        return VirtualThreadExecutorProvider.isSupported() ? virtualThreads() : platformThreads();
+    }
+}
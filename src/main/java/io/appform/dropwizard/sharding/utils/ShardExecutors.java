@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import com.google.common.base.Preconditions;
+import io.appform.dropwizard.sharding.replicas.ReplicaRouting;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.context.internal.ManagedSessionContext;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Executors used to run dao calls asynchronously. Every shard has its own executor, sized to the connection pool of
+ * the shard, so that a slow shard can only tie up its own threads. Calls that span all shards are coordinated on a
+ * separate fan out executor.
+ * Every call runs start to end on a single executor thread, opening and closing its own session there. Sessions bound
+ * to the calling thread (for example inside a locked context) are not visible to async calls.
+ */
+@Slf4j
+public class ShardExecutors {
+    private final List<SessionFactory> sessionFactories;
+    private final List<ExecutorService> shardExecutors;
+    @Getter
+    private final ExecutorService fanOutExecutor;
+
+    public ShardExecutors(
+            List<SessionFactory> sessionFactories,
+            List<ExecutorService> shardExecutors,
+            ExecutorService fanOutExecutor) {
+        Preconditions.checkArgument(sessionFactories.size() == shardExecutors.size(),
+                                    "Need one executor per shard");
+        this.sessionFactories = sessionFactories;
+        this.shardExecutors = Collections.unmodifiableList(shardExecutors);
+        this.fanOutExecutor = fanOutExecutor;
+    }
+
+    public ExecutorService executorForShard(int shardId) {
+        return shardExecutors.get(shardId);
+    }
+
+    /**
+     * Runs the call on the executor for the shard.
+     *
+     * @param shardId Shard the call will read from or write to
+     * @param call    The call
+     * @return Future completed with the result of the call, or exceptionally if it fails or can't be scheduled
+     */
+    public <R> CompletableFuture<R> onShard(int shardId, Callable<R> call) {
+        final SessionFactory sessionFactory = sessionFactories.get(shardId);
+        return submit(shardExecutors.get(shardId), call, Collections.singletonList(sessionFactory));
+    }
+
+    /**
+     * Runs the call on the executor for the shard the key maps to. Routing failures (for example a blacklisted shard)
+     * complete the future exceptionally. The key is not sampled into hot keys here, as the dao call routes it again.
+     *
+     * @param shardCalculator Calculator used to find the shard for the key
+     * @param key             Key the call will read or write
+     * @param call            The call
+     * @return Future completed with the result of the call, or exceptionally if it fails or can't be scheduled
+     */
+    public <R> CompletableFuture<R> onShard(ShardCalculator<String> shardCalculator, String key, Callable<R> call) {
+        final int shardId;
+        try {
+            shardId = shardCalculator.peekShardId(key);
+        }
+        catch (Exception e) {
+            return failed(e);
+        }
+        return onShard(shardId, call);
+    }
+
+    /**
+     * Runs a call that touches all shards on the fan out executor.
+     *
+     * @param call The call
+     * @return Future completed with the result of the call, or exceptionally if it fails or can't be scheduled
+     */
+    public <R> CompletableFuture<R> onAllShards(Callable<R> call) {
+        return submit(fanOutExecutor, call, sessionFactories);
+    }
+
+    private static <R> CompletableFuture<R> submit(
+            Executor executor,
+            Callable<R> call,
+            List<SessionFactory> sessionFactories) {
+        final CompletableFuture<R> future = new CompletableFuture<>();
+        final Callable<R> propagated = Deadline.propagate(ReplicaRouting.propagate(call));
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(propagated.call());
+                }
+                catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+                finally {
+                    unbindLeakedSessions(sessionFactories);
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public static <R> CompletableFuture<R> failed(Throwable t) {
+        final CompletableFuture<R> future = new CompletableFuture<>();
+        future.completeExceptionally(t);
+        return future;
+    }
+
+    /**
+     * Executor threads are pooled, a session left bound by a call must not leak into the next call on the thread.
+     */
+    private static void unbindLeakedSessions(List<SessionFactory> sessionFactories) {
+        for (SessionFactory sessionFactory : sessionFactories) {
+            if (ManagedSessionContext.hasBind(sessionFactory)) {
+                log.error("Session left bound to async executor thread {}, unbinding",
+                          Thread.currentThread().getName());
+                final Session session = ManagedSessionContext.unbind(sessionFactory);
+                if (null != session && session.isOpen()) {
+                    session.close();
+                }
+            }
+        }
+    }
+}
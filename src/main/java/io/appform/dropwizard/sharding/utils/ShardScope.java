@@ -0,0 +1,150 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import io.appform.dropwizard.sharding.exceptions.DaoFwdException;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Unit of work spanning multiple dao calls. Inside a scope, the first call that touches a shard opens a session and
+ * a read write transaction on it, and every later call on the same shard reuses them instead of setting up its own.
+ * All transactions are committed once the work returns, shard by shard in reverse order of first use, and rolled
+ * back if the work or any call inside it fails (even if the failure was caught inside the work).
+ * Notes:
+ * - Commits across shards are not atomic. A failure to commit one shard rolls back the shards not committed yet.
+ * - Entities loaded inside the scope stay attached to the scope's session till it ends, changes made to them are
+ * flushed on commit. Batched saves (saveAll) flush and clear the session of the shard as they go.
+ * - Only calls on the thread that opened the scope join it. Parallel scatter gather and async dao calls run in their
+ * own transactions.
+ * - All calls, including reads, are served by shard primaries.
+ * - Scopes nest; an inner scope joins the outer one.
+ */
+@Slf4j
+public final class ShardScope {
+    private static final ThreadLocal<ShardScope> CURRENT = new ThreadLocal<>();
+
+    private final Map<SessionFactory, TransactionHandler> transactions = new IdentityHashMap<>();
+    private final List<TransactionHandler> openOrder = new ArrayList<>();
+    private boolean rollbackOnly;
+
+    private ShardScope() {}
+
+    /**
+     * Runs the work in a scope. Joins the scope already active on the thread if there is one.
+     *
+     * @param work Work making dao calls
+     * @return Result of the work
+     * @throws DaoFwdException if a call inside the work failed and the failure was not propagated
+     * @throws Exception       thrown by the work, after all shards have been rolled back
+     */
+    public static <T> T execute(Callable<T> work) throws Exception {
+        if (null != CURRENT.get()) {
+            return work.call();
+        }
+        final ShardScope scope = new ShardScope();
+        CURRENT.set(scope);
+        try {
+            final T result;
+            try {
+                result = work.call();
+            }
+            catch (Exception | Error e) {
+                scope.rollback();
+                throw e;
+            }
+            if (scope.rollbackOnly) {
+                scope.rollback();
+                throw new DaoFwdException("Shard scope rolled back as a dao call inside it failed", null);
+            }
+            scope.commit();
+            return result;
+        }
+        finally {
+            CURRENT.remove();
+        }
+    }
+
+    public static boolean isActive() {
+        return null != CURRENT.get();
+    }
+
+    static ShardScope current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Session for the shard, opened along with a transaction on first use.
+     */
+    Session join(SessionFactory sessionFactory) {
+        TransactionHandler transaction = transactions.get(sessionFactory);
+        if (null == transaction) {
+            transaction = TransactionHandler.unscoped(sessionFactory);
+            transaction.beforeStart();
+            transactions.put(sessionFactory, transaction);
+            openOrder.add(transaction);
+        }
+        return transaction.getSession();
+    }
+
+    void markRollbackOnly() {
+        rollbackOnly = true;
+    }
+
+    /**
+     * Shards are ended in reverse order of opening, as every transaction restores the routing state of the thread
+     * that was current when it started.
+     */
+    private void commit() {
+        for (int i = openOrder.size() - 1; i >= 0; i--) {
+            try {
+                openOrder.get(i).afterEnd();
+            }
+            catch (RuntimeException e) {
+                final int committed = openOrder.size() - 1 - i;
+                if (committed > 0) {
+                    log.error("Commit failed on a shard after {} other shards were committed", committed);
+                }
+                rollback(openOrder.subList(0, i));
+                throw e;
+            }
+        }
+    }
+
+    private void rollback() {
+        rollback(openOrder);
+    }
+
+    private static void rollback(List<TransactionHandler> handlers) {
+        for (int i = handlers.size() - 1; i >= 0; i--) {
+            try {
+                handlers.get(i).onError();
+            }
+            catch (RuntimeException e) {
+                log.error("Error rolling back shard transaction", e);
+            }
+        }
+    }
+}
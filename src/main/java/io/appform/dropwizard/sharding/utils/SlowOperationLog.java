@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import com.google.common.base.Preconditions;
+import io.appform.dropwizard.sharding.config.SlowOperationLogConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logs dao operations that take longer than the threshold as a single line of key=value pairs with the namespace,
+ * shard, entity of the dao, operation, key, criteria (including the values it binds) and elapsed time.
+ * A sample of slow operations is logged, and at most maxPerSecond of them in any second, so that a brownout does not
+ * flood the logs. Slow operations that were not logged are counted and reported on the next line logged.
+ */
+@Slf4j
+public final class SlowOperationLog {
+    private static final SlowOperationLog DISABLED = new SlowOperationLog(Long.MAX_VALUE, TimeUnit.NANOSECONDS, 0, 1);
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long thresholdNanos;
+    private final double sampleRate;
+    private final int maxPerSecond;
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final AtomicInteger loggedInWindow = new AtomicInteger();
+    private final LongAdder suppressed = new LongAdder();
+
+    public SlowOperationLog(long threshold, TimeUnit unit, double sampleRate, int maxPerSecond) {
+        Preconditions.checkArgument(sampleRate >= 0 && sampleRate <= 1, "Sample rate must be between 0 and 1");
+        Preconditions.checkArgument(maxPerSecond > 0, "Max logs per second must be positive");
+        this.thresholdNanos = unit.toNanos(threshold);
+        this.sampleRate = sampleRate;
+        this.maxPerSecond = maxPerSecond;
+    }
+
+    public SlowOperationLog(SlowOperationLogConfig config) {
+        this(config.getThreshold().getQuantity(),
+             config.getThreshold().getUnit(),
+             config.getSampleRate(),
+             config.getMaxPerSecond());
+    }
+
+    public static SlowOperationLog disabled() {
+        return DISABLED;
+    }
+
+    public boolean isSlow(long elapsedNanos) {
+        return elapsedNanos >= thresholdNanos;
+    }
+
+    /**
+     * Logs the operation if it was slow and is picked by sampling and rate limiting.
+     *
+     * @param shardId  Shard the operation ran on, {@link DaoMetrics#ALL_SHARDS} for operations spanning all shards
+     * @param key      Key (lookup or parent) the operation was run for, null if none
+     * @param criteria Criteria the operation ran, null if none. Only turned into a string when logged.
+     * @return true if the operation was logged
+     */
+    public boolean record(
+            String namespace,
+            String entity,
+            String operation,
+            int shardId,
+            long elapsedNanos,
+            Object key,
+            Object criteria) {
+        if (!isSlow(elapsedNanos)) {
+            return false;
+        }
+        if ((sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) || !acquire()) {
+            suppressed.increment();
+            return false;
+        }
+        log.warn("Slow dao operation: namespace={} shard={} entity={} operation={} elapsedMs={} key={} criteria={} "
+                         + "suppressed={}",
+                 namespace,
+                 DaoMetrics.ALL_SHARDS == shardId ? "all" : shardId,
+                 entity,
+                 operation,
+                 TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                 key,
+                 criteria,
+                 suppressed.sumThenReset());
+        return true;
+    }
+
+    private boolean acquire() {
+        final long now = System.nanoTime();
+        final long start = windowStart.get();
+        if (now - start >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+            loggedInWindow.set(0);
+        }
+        return loggedInWindow.incrementAndGet() <= maxPerSecond;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A shard transaction as seen by {@link TransactionListener}s. Times are in nanoseconds.
+ */
+@Getter
+@ToString
+public final class TransactionEvent {
+    public enum Outcome {
+        /**
+         * Transaction has not ended yet
+         */
+        RUNNING,
+        /**
+         * Transaction was committed, or the session closed without errors for calls that leave the commit to the
+         * caller
+         */
+        COMMITTED,
+        /**
+         * Transaction was rolled back
+         */
+        ROLLED_BACK,
+        /**
+         * Session could not be opened or the transaction could not be started
+         */
+        FAILED_TO_START,
+    }
+
+    private final String namespace;
+    private final int shardId;
+    private final boolean readOnly;
+    private final boolean replicaRead;
+    /**
+     * {@link System#nanoTime()} when the handler started opening the session
+     */
+    private final long startNanos;
+    /**
+     * Time taken to open the session and begin the transaction, including waiting for a connection
+     */
+    private long sessionOpenNanos;
+    /**
+     * Time from the transaction starting to it being committed or rolled back, zero until it ends
+     */
+    private long durationNanos;
+    private Outcome outcome = Outcome.RUNNING;
+    private Throwable error;
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private Map<Object, Object> attributes;
+    /**
+     * Bit per listener of the shard, set for the listeners that were enabled when the transaction started
+     */
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    long enabledListeners;
+
+    TransactionEvent(String namespace, int shardId, boolean readOnly, boolean replicaRead, long startNanos) {
+        this.namespace = namespace;
+        this.shardId = shardId;
+        this.readOnly = readOnly;
+        this.replicaRead = replicaRead;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Keeps state for a listener (a tracing span for example) from the start of the transaction to its end.
+     *
+     * @param key   Key for the state, usually the listener itself
+     * @param value State to be kept
+     */
+    public void setAttribute(Object key, Object value) {
+        if (null == attributes) {
+            attributes = new HashMap<>(4);
+        }
+        attributes.put(key, value);
+    }
+
+    public Object getAttribute(Object key) {
+        return null == attributes ? null : attributes.get(key);
+    }
+
+    void started(long nowNanos) {
+        this.sessionOpenNanos = nowNanos - startNanos;
+    }
+
+    void ended(long nowNanos, Outcome outcome, Throwable error) {
+        if (Outcome.FAILED_TO_START == outcome) {
+            this.sessionOpenNanos = nowNanos - startNanos;
+        }
+        else {
+            this.durationNanos = nowNanos - startNanos - sessionOpenNanos;
+        }
+        this.outcome = outcome;
+        this.error = error;
+    }
+}
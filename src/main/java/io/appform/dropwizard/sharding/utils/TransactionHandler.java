@@ -17,13 +17,25 @@
 
 package io.appform.dropwizard.sharding.utils;
 
+import io.appform.dropwizard.sharding.replicas.ReplicaRouting;
 import lombok.Getter;
 import org.hibernate.*;
 import org.hibernate.context.internal.ManagedSessionContext;
+import org.hibernate.jpa.QueryHints;
 import org.hibernate.resource.transaction.spi.TransactionStatus;
 
+import java.util.concurrent.TimeUnit;
+
 /**
- * A transaction handler utility class
+ * A transaction handler utility class. Read only transactions are served from a read replica of the shard when it
+ * has any, unless replicaRead is turned off.
+ * Inside a {@link ShardScope} the handler joins the scope's session and transaction for the shard instead of opening
+ * its own. Commit and rollback are then left to the scope.
+ * Transactions on a shard with a {@link ShardBulkhead} hold one of its slots from start to end.
+ * With a {@link Deadline} set on the thread, transactions are not started after it has passed and otherwise time out
+ * (along with every query inside them) when it is reached.
+ * Outcomes and latencies of transactions are fed to the {@link ShardCircuitBreaker} of the shard if it has one.
+ * Transactions on shards with {@link TransactionListeners} are reported to them as {@link TransactionEvent}s.
  */
 public class TransactionHandler {
 
@@ -34,44 +46,165 @@ public class TransactionHandler {
     private final SessionFactory sessionFactory;
     private final boolean readOnly;
     private final boolean skipCommit;
+    private final boolean replicaRead;
+    private final boolean writes;
+    private final boolean joinScope;
+    private final boolean bindSession;
+    private boolean routed;
+    private boolean previousReplicaRead;
+    private boolean previousReadOnly;
+    private ShardScope scope;
+    private ShardBulkhead bulkhead;
+    private ShardCircuitBreaker breaker;
+    private long startNanos;
+    private TransactionListeners listeners;
+    private TransactionEvent event;
 
     public TransactionHandler(SessionFactory sessionFactory, boolean readOnly) {
         this(sessionFactory, readOnly, false);
     }
 
     public TransactionHandler(SessionFactory sessionFactory, boolean readOnly, boolean skipCommit) {
+        this(sessionFactory, readOnly, skipCommit, readOnly);
+    }
+
+    /**
+     * @param replicaRead Serve the transaction from a read replica. Only honoured for read only transactions. Turn
+     *                    this off for read only transactions that need to see the latest writes. Read only
+     *                    transactions on the primary are not taken as writes by read your writes routing.
+     */
+    public TransactionHandler(SessionFactory sessionFactory, boolean readOnly, boolean skipCommit, boolean replicaRead) {
+        this(sessionFactory, readOnly, skipCommit, replicaRead, !readOnly, true, true);
+    }
+
+    private TransactionHandler(
+            SessionFactory sessionFactory,
+            boolean readOnly,
+            boolean skipCommit,
+            boolean replicaRead,
+            boolean writes,
+            boolean joinScope,
+            boolean bindSession) {
         this.sessionFactory = sessionFactory;
         this.readOnly = readOnly;
         this.skipCommit = skipCommit;
+        this.replicaRead = readOnly && replicaRead;
+        this.writes = writes;
+        this.joinScope = joinScope;
+        this.bindSession = bindSession;
     }
 
-    public void beforeStart() {
+    /**
+     * Read write transaction that never joins a {@link ShardScope}, used by the scope itself.
+     */
+    static TransactionHandler unscoped(SessionFactory sessionFactory) {
+        return new TransactionHandler(sessionFactory, false, false, false, true, false, true);
+    }
 
-        session = sessionFactory.openSession();
+    /**
+     * Read only session on the primary that the caller is free to write through, used by runInSession.
+     */
+    static TransactionHandler session(SessionFactory sessionFactory) {
+        return new TransactionHandler(sessionFactory, true, false, false, true, true, true);
+    }
+
+    /**
+     * Read only transaction on a session of its own that is not bound to the thread, for cursors that are opened on
+     * one thread and read and closed on another. Never joins a {@link ShardScope}. Replica routing only applies while
+     * the transaction starts, which is when the connection is acquired.
+     */
+    public static TransactionHandler detached(SessionFactory sessionFactory, boolean replicaRead) {
+        return new TransactionHandler(sessionFactory, true, false, replicaRead, false, false, false);
+    }
+
+    public void beforeStart() {
+        Deadline.check();
+        if (joinScope) {
+            final ShardScope current = ShardScope.current();
+            if (null != current) {
+                session = current.join(sessionFactory);
+                scope = current;
+                return;
+            }
+        }
+        //The bulkhead goes first, a half open breaker would otherwise hand out probes that never report back
+        final ShardBulkhead shardBulkhead = ShardBulkhead.forSessionFactory(sessionFactory);
+        if (null != shardBulkhead) {
+            shardBulkhead.acquire();
+            bulkhead = shardBulkhead;
+        }
+        final ShardCircuitBreaker shardBreaker = ShardCircuitBreaker.forSessionFactory(sessionFactory);
+        if (null != shardBreaker) {
+            try {
+                shardBreaker.allowCall();
+            } catch (RuntimeException e) {
+                releaseShard();
+                throw e;
+            }
+        }
+        breaker = shardBreaker;
+        startNanos = System.nanoTime();
+        final TransactionListeners shardListeners = TransactionListeners.forSessionFactory(sessionFactory);
+        if (null != shardListeners) {
+            event = shardListeners.start(readOnly, replicaRead, startNanos);
+            listeners = null == event ? null : shardListeners;
+        }
+        previousReplicaRead = ReplicaRouting.setReplicaRead(replicaRead);
+        previousReadOnly = ReplicaRouting.setReadOnly(!writes);
+        routed = true;
+        try {
+            session = sessionFactory.openSession();
+        } catch (Throwable th) {
+            recordOutcome(th);
+            reportEnd(TransactionEvent.Outcome.FAILED_TO_START, th);
+            releaseShard();
+            throw th;
+        }
         try {
             configureSession();
-            ManagedSessionContext.bind(session);
+            if (bindSession) {
+                ManagedSessionContext.bind(session);
+            }
             if (!skipCommit) {
                 beginTransaction();
             }
         } catch (Throwable th) {
             session.close();
             session = null;
-            ManagedSessionContext.unbind(sessionFactory);
+            unbindSession();
+            recordOutcome(th);
+            reportEnd(TransactionEvent.Outcome.FAILED_TO_START, th);
+            releaseShard();
             throw th;
         }
+        if (!bindSession) {
+            //The session may be ended on another thread, leave this one as it was
+            restoreRouting();
+        }
+        if (null != event) {
+            event.started(System.nanoTime());
+            listeners.afterStart(event);
+        }
     }
 
     public void afterEnd() {
+        if (null != scope) {
+            leaveScope();
+            return;
+        }
         if (session == null) {
+            releaseShard();
             return;
         }
 
+        Exception failure = null;
         try {
             if(!skipCommit) {
                 commitTransaction();
             }
         } catch (Exception e) {
+            failure = e;
+            recordOutcome(e);
             if(!skipCommit) {
                 rollbackTransaction();
             }
@@ -79,32 +212,106 @@ public class TransactionHandler {
         } finally {
             session.close();
             session = null;
-            ManagedSessionContext.unbind(sessionFactory);
+            unbindSession();
+            recordOutcome(null);
+            reportEnd(null == failure ? TransactionEvent.Outcome.COMMITTED : TransactionEvent.Outcome.ROLLED_BACK,
+                      failure);
+            releaseShard();
         }
 
     }
 
     public void onError() {
+        onError(null);
+    }
+
+    /**
+     * Rolls back the transaction.
+     *
+     * @param error Error that failed the transaction, used to tell shard failures apart from application errors
+     */
+    public void onError(Throwable error) {
+        if (null != scope) {
+            scope.markRollbackOnly();
+            leaveScope();
+            return;
+        }
         if (session == null) {
+            releaseShard();
             return;
         }
 
+        recordOutcome(error);
         try {
             rollbackTransaction();
         } finally {
             session.close();
             session = null;
+            unbindSession();
+            reportEnd(TransactionEvent.Outcome.ROLLED_BACK, error);
+            releaseShard();
+        }
+    }
+
+    private void leaveScope() {
+        session = null;
+        scope = null;
+    }
+
+    private void recordOutcome(Throwable error) {
+        if (null != breaker) {
+            breaker.record(System.nanoTime() - startNanos,
+                           null != error && ShardCircuitBreaker.isShardFailure(error));
+            breaker = null;
+        }
+    }
+
+    private void reportEnd(TransactionEvent.Outcome outcome, Throwable error) {
+        if (null != event) {
+            event.ended(System.nanoTime(), outcome, error);
+            listeners.afterEnd(event);
+            event = null;
+            listeners = null;
+        }
+    }
+
+    private void unbindSession() {
+        if (bindSession) {
             ManagedSessionContext.unbind(sessionFactory);
         }
     }
 
+    private void restoreRouting() {
+        if (routed) {
+            ReplicaRouting.setReplicaRead(previousReplicaRead);
+            ReplicaRouting.setReadOnly(previousReadOnly);
+            routed = false;
+        }
+    }
+
+    private void releaseShard() {
+        restoreRouting();
+        if (null != bulkhead) {
+            bulkhead.release();
+            bulkhead = null;
+        }
+    }
+
     private void configureSession() {
         session.setDefaultReadOnly(readOnly);
         session.setCacheMode(CacheMode.NORMAL);
         session.setHibernateFlushMode(FlushMode.AUTO);
+        if (Deadline.isSet()) {
+            session.setProperty(QueryHints.SPEC_HINT_TIMEOUT,
+                                (int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(Deadline.remainingNanos())));
+        }
     }
 
     private void beginTransaction() {
+        if (Deadline.isSet()) {
+            //Hibernate applies the time left in the transaction to every statement as the query timeout
+            session.getTransaction().setTimeout(Deadline.remainingSeconds());
+        }
         session.beginTransaction();
     }
 
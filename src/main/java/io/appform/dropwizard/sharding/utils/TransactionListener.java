@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+/**
+ * Receives the lifecycle of shard transactions run through {@link TransactionHandler}, for tracing, profiling and
+ * the like. Listeners are added to the bundle and called on the thread running the transaction, so they should be
+ * quick. Exceptions thrown by listeners are logged and ignored.
+ * Calls joining an open {@link ShardScope} are not reported separately, they are part of the scope's transaction.
+ */
+public interface TransactionListener {
+
+    /**
+     * Checked before every transaction. Transactions are not reported at all while no listener of the shard is
+     * enabled.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Called once a session has been opened and the transaction started on the shard.
+     * The same event is passed to {@link #afterEnd(TransactionEvent)} for the transaction.
+     */
+    default void afterStart(TransactionEvent event) {
+    }
+
+    /**
+     * Called once the transaction has been committed or rolled back and the session closed, or when it could not be
+     * started at all.
+     */
+    default void afterEnd(TransactionEvent event) {
+    }
+}
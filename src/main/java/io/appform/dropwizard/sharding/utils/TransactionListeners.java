@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.MapMaker;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link TransactionListener}s for a shard. Registered against the session factory of the shard and picked up by
+ * {@link TransactionHandler}. Shards without listeners are not registered, so their transactions don't create events.
+ * A transaction is only reported to the listeners that were enabled when it started, at both its start and its end.
+ */
+@Slf4j
+public final class TransactionListeners {
+    private static final Map<SessionFactory, TransactionListeners> LISTENERS = new MapMaker().weakKeys().makeMap();
+
+    private final String namespace;
+    private final int shardId;
+    private static final int MAX_LISTENERS = Long.SIZE;
+
+    private final List<TransactionListener> listeners;
+
+    public TransactionListeners(String namespace, int shardId, List<TransactionListener> listeners) {
+        Preconditions.checkArgument(listeners.size() <= MAX_LISTENERS,
+                                    "At most %s transaction listeners are supported", MAX_LISTENERS);
+        this.namespace = namespace;
+        this.shardId = shardId;
+        this.listeners = ImmutableList.copyOf(listeners);
+    }
+
+    /**
+     * Reports transactions opened through the session factory to the listeners.
+     */
+    public static void register(SessionFactory sessionFactory, TransactionListeners listeners) {
+        LISTENERS.put(sessionFactory, listeners);
+    }
+
+    public static void unregister(SessionFactory sessionFactory) {
+        LISTENERS.remove(sessionFactory);
+    }
+
+    static TransactionListeners forSessionFactory(SessionFactory sessionFactory) {
+        return LISTENERS.isEmpty() ? null : LISTENERS.get(sessionFactory);
+    }
+
+    /**
+     * @return Event for a transaction starting on the shard, null if none of the listeners are enabled
+     */
+    TransactionEvent start(boolean readOnly, boolean replicaRead, long startNanos) {
+        long enabled = 0;
+        for (int i = 0; i < listeners.size(); i++) {
+            if (listeners.get(i).isEnabled()) {
+                enabled |= 1L << i;
+            }
+        }
+        if (0 == enabled) {
+            return null;
+        }
+        final TransactionEvent event = new TransactionEvent(namespace, shardId, readOnly, replicaRead, startNanos);
+        event.enabledListeners = enabled;
+        return event;
+    }
+
+    void afterStart(TransactionEvent event) {
+        for (int i = 0; i < listeners.size(); i++) {
+            if (0 == (event.enabledListeners & (1L << i))) {
+                continue;
+            }
+            final TransactionListener listener = listeners.get(i);
+            try {
+                listener.afterStart(event);
+            }
+            catch (Exception e) {
+                log.warn("Transaction listener {} failed for {}", listener.getClass().getSimpleName(), event, e);
+            }
+        }
+    }
+
+    void afterEnd(TransactionEvent event) {
+        for (int i = 0; i < listeners.size(); i++) {
+            if (0 == (event.enabledListeners & (1L << i))) {
+                continue;
+            }
+            final TransactionListener listener = listeners.get(i);
+            try {
+                listener.afterEnd(event);
+            }
+            catch (Exception e) {
+                log.warn("Transaction listener {} failed for {}", listener.getClass().getSimpleName(), event, e);
+            }
+        }
+    }
+}
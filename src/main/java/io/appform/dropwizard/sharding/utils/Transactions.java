@@ -51,7 +51,19 @@ public class Transactions {
     }
 
     public static <T, U, V> V execute(SessionFactory sessionFactory, boolean readOnly, Function<U, T> function, U arg, Function<T, V> handler, boolean completeTransaction) {
-        TransactionHandler transactionHandler = new TransactionHandler(sessionFactory, readOnly);
+        return execute(sessionFactory, readOnly, true, function, arg, handler, completeTransaction);
+    }
+
+    /**
+     * Same as {@link #execute(SessionFactory, boolean, Function, Object, Function, boolean)}, but runs on the shard
+     * primary even for read only transactions. Used where a read only session is used to write.
+     */
+    public static <T, U, V> V executeOnPrimary(SessionFactory sessionFactory, boolean readOnly, Function<U, T> function, U arg, Function<T, V> handler, boolean completeTransaction) {
+        return execute(sessionFactory, readOnly, false, function, arg, handler, completeTransaction);
+    }
+
+    private static <T, U, V> V execute(SessionFactory sessionFactory, boolean readOnly, boolean replicaRead, Function<U, T> function, U arg, Function<T, V> handler, boolean completeTransaction) {
+        TransactionHandler transactionHandler = new TransactionHandler(sessionFactory, readOnly, false, replicaRead);
         if(completeTransaction) {
             transactionHandler.beforeStart();
         }
@@ -62,24 +74,29 @@ public class Transactions {
                 transactionHandler.afterEnd();
             }
             return returnValue;
-        } catch (Exception e) {
+        } catch (Throwable t) {
+            //Errors need to end the transaction too, or the session stays bound and the bulkhead slot is never freed
             if(completeTransaction) {
-                transactionHandler.onError();
+                transactionHandler.onError(t);
             }
-            throw e;
+            throw t;
         }
     }
 
+    /**
+     * Runs the handler in a read only session on the shard primary. The handler is free to do anything with the
+     * session, so it is never sent to a read replica.
+     */
     public static <T> T execute(SessionFactory sessionFactory, Function<Session, T> handler) {
-        TransactionHandler transactionHandler = new TransactionHandler(sessionFactory, true);
+        TransactionHandler transactionHandler = TransactionHandler.session(sessionFactory);
         transactionHandler.beforeStart();
         try {
             T result = handler.apply(transactionHandler.getSession());
             transactionHandler.afterEnd();
             return result;
-        } catch (Exception e) {
-            transactionHandler.onError();
-            throw e;
+        } catch (Throwable t) {
+            transactionHandler.onError(t);
+            throw t;
         }
     }
 }
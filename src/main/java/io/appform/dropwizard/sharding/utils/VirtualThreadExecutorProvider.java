@@ -0,0 +1,169 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs every call on a new virtual thread. Calls beyond maxConcurrency wait for a permit on their own virtual thread,
+ * which is cheap, instead of in a queue. Virtual threads are looked up reflectively so that the library keeps working
+ * on runtimes without them, use {@link #isSupported()} to check.
+ * <b>Note:</b> JDBC drivers that block inside synchronized blocks pin the carrier thread on older runtimes, which
+ * limits the gains.
+ */
+@Slf4j
+public class VirtualThreadExecutorProvider implements ShardExecutorProvider {
+    private static final Method OF_VIRTUAL = lookup(Thread.class, "ofVirtual");
+    private static final Method NAME = lookup(builderClass(), "name", String.class, long.class);
+    private static final Method FACTORY = lookup(builderClass(), "factory");
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR
+            = lookup(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+    private static final boolean SUPPORTED = checkSupported();
+
+    public VirtualThreadExecutorProvider() {
+        if (!SUPPORTED) {
+            throw new UnsupportedOperationException("Virtual threads are not supported on this runtime");
+        }
+    }
+
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    @Override
+    public ExecutorService create(String name, int maxConcurrency) {
+        return new BoundedExecutorService(newThreadPerTaskExecutor(name + "-"), maxConcurrency);
+    }
+
+    private static ExecutorService newThreadPerTaskExecutor(String threadNamePrefix) {
+        try {
+            final Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), threadNamePrefix, 0L);
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, FACTORY.invoke(builder));
+        }
+        catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Could not create virtual thread executor", e);
+        }
+    }
+
+    private static boolean checkSupported() {
+        if (null == OF_VIRTUAL || null == NAME || null == FACTORY || null == NEW_THREAD_PER_TASK_EXECUTOR) {
+            return false;
+        }
+        try {
+            //Preview runtimes expose the methods but refuse to create threads
+            newThreadPerTaskExecutor("virtual-thread-check-").shutdown();
+            return true;
+        }
+        catch (Throwable t) {
+            log.info("Virtual threads are not available: {}", t.getMessage());
+            return false;
+        }
+    }
+
+    private static Class<?> builderClass() {
+        try {
+            return Class.forName("java.lang.Thread$Builder");
+        }
+        catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Method lookup(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        if (null == clazz) {
+            return null;
+        }
+        try {
+            return clazz.getMethod(name, parameterTypes);
+        }
+        catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Limits the number of tasks running at the same time on an unbounded executor.
+     */
+    private static final class BoundedExecutorService extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+
+        private BoundedExecutorService(ExecutorService delegate, int maxConcurrency) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(maxConcurrency);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(() -> {
+                try {
+                    permits.acquire();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    if (command instanceof Future) {
+                        //Don't leave callers waiting on a task that will never run
+                        ((Future<?>) command).cancel(false);
+                    }
+                    return;
+                }
+                try {
+                    command.run();
+                }
+                finally {
+                    permits.release();
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -20,7 +20,11 @@ package io.appform.dropwizard.sharding;
 import com.codahale.metrics.health.HealthCheckRegistry;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
+import io.appform.dropwizard.sharding.config.ReadReplicaConfig;
+import io.appform.dropwizard.sharding.config.ReplicaConsistency;
 import io.appform.dropwizard.sharding.config.ShardedHibernateFactory;
+import io.appform.dropwizard.sharding.dao.AsyncRelationalDao;
+import io.appform.dropwizard.sharding.dao.AsyncWrapperDao;
 import io.appform.dropwizard.sharding.dao.RelationalDao;
 import io.appform.dropwizard.sharding.dao.WrapperDao;
 import io.appform.dropwizard.sharding.dao.testdata.OrderDao;
@@ -34,6 +38,7 @@ import io.dropwizard.lifecycle.setup.LifecycleEnvironment;
 import io.dropwizard.setup.AdminEnvironment;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
 import lombok.Getter;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Restrictions;
@@ -44,9 +49,17 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -197,6 +210,159 @@ public abstract class DBShardingBundleTestBase {
         assertEquals("Item AA", orderItems.get(0).getName());
     }
 
+    @Test
+    public void testAsyncDaos() throws Exception {
+        DBShardingBundleBase<TestConfig> bundle = getBundle();
+        bundle.initialize(bootstrap);
+        bundle.initBundles(bootstrap);
+        bundle.runBundles(testConfig, environment);
+        bundle.run(testConfig, environment);
+
+        AsyncWrapperDao<Order, OrderDao> dao = bundle.createAsyncWrapperDao(bundle.createWrapperDao(OrderDao.class));
+        AsyncRelationalDao<Order> rDao = bundle.createAsyncRelatedObjectDao(bundle.createRelatedObjectDao(Order.class));
+
+        final List<CompletableFuture<Order>> saves = IntStream.range(0, 10)
+                .mapToObj(i -> dao.forParent("customer" + i,
+                                             orderDao -> orderDao.save(Order.builder()
+                                                                               .customerId("customer" + i)
+                                                                               .orderId("OD" + i)
+                                                                               .amount(i)
+                                                                               .items(Collections.emptyList())
+                                                                               .build())))
+                .collect(Collectors.toList());
+        CompletableFuture.allOf(saves.toArray(new CompletableFuture[0])).get();
+
+        for (int i = 0; i < 10; i++) {
+            final Order saved = saves.get(i).get();
+            assertEquals(i, rDao.get("customer" + i, saved.getId()).get().get().getAmount());
+        }
+        assertEquals(10, rDao.countScatterGather(DetachedCriteria.forClass(Order.class))
+                .get()
+                .stream()
+                .mapToLong(Long::longValue)
+                .sum());
+    }
+
+    @Test
+    public void testReadReplicaRouting() throws Exception {
+        testConfig.shards.setReadReplicas(ReadReplicaConfig.builder()
+                                                  .shard(ImmutableList.of(createConfig("replica-1")))
+                                                  .shard(ImmutableList.of(createConfig("replica-2")))
+                                                  .build());
+        DBShardingBundleBase<TestConfig> bundle = getBundle();
+        bundle.initialize(bootstrap);
+        bundle.initBundles(bootstrap);
+        bundle.runBundles(testConfig, environment);
+        bundle.run(testConfig, environment);
+
+        RelationalDao<Order> rDao = bundle.createRelatedObjectDao(Order.class);
+        final Order saved = rDao.save("customer1", Order.builder()
+                .customerId("customer1")
+                .orderId("OD00001")
+                .amount(100)
+                .items(Collections.emptyList())
+                .build())
+                .get();
+
+        //Replicas are not fed from the primaries here, so reads served from a replica don't find the order
+        assertFalse(rDao.get("customer1", saved.getId()).isPresent());
+        assertEquals(0L, (long) rDao.count("customer1", DetachedCriteria.forClass(Order.class)));
+
+        //Updates and sessions handed out to callers stay on the primary
+        assertTrue(rDao.update("customer1", saved.getId(), order -> {
+            order.setAmount(200);
+            return order;
+        }));
+        assertEquals(200, (int) rDao.runInSession("customer1",
+                                                  session -> session.get(Order.class, saved.getId()).getAmount()));
+    }
+
+    @Test
+    public void testReadYourWrites() throws Exception {
+        testConfig.shards.setReadReplicas(ReadReplicaConfig.builder()
+                                                  .shard(ImmutableList.of(createConfig("ryw-replica-1")))
+                                                  .shard(ImmutableList.of(createConfig("ryw-replica-2")))
+                                                  .consistency(ReplicaConsistency.READ_YOUR_WRITES)
+                                                  .maxLag(Duration.minutes(1))
+                                                  .build());
+        DBShardingBundleBase<TestConfig> bundle = getBundle();
+        bundle.initialize(bootstrap);
+        bundle.initBundles(bootstrap);
+        bundle.runBundles(testConfig, environment);
+        bundle.run(testConfig, environment);
+
+        RelationalDao<Order> rDao = bundle.createRelatedObjectDao(Order.class);
+        final Order saved = rDao.save("customer1", Order.builder()
+                .customerId("customer1")
+                .orderId("OD00001")
+                .amount(100)
+                .items(Collections.emptyList())
+                .build())
+                .get();
+
+        //Reads following the write are served from the primary
+        assertTrue(rDao.get("customer1", saved.getId()).isPresent());
+        assertEquals(1L, (long) rDao.countScatterGather(DetachedCriteria.forClass(Order.class))
+                .stream()
+                .mapToLong(Long::longValue)
+                .sum());
+
+        //Other units of work go to the replicas, which are not fed from the primaries here
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            assertFalse(executorService.submit(() -> rDao.get("customer1", saved.getId()).isPresent()).get());
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testShardScope() throws Exception {
+        DBShardingBundleBase<TestConfig> bundle = getBundle();
+        bundle.initialize(bootstrap);
+        bundle.initBundles(bootstrap);
+        bundle.runBundles(testConfig, environment);
+        bundle.run(testConfig, environment);
+
+        RelationalDao<Order> rDao = bundle.createRelatedObjectDao(Order.class);
+
+        final Order saved = bundle.inShardScope(() -> {
+            final Order order = rDao.save("customer1", Order.builder()
+                    .customerId("customer1")
+                    .orderId("OD00001")
+                    .amount(100)
+                    .items(Collections.emptyList())
+                    .build())
+                    .get();
+            //All calls share the session of the shard
+            assertSame(order, rDao.get("customer1", order.getId()).get());
+            assertSame(rDao.runInSession("customer1", session -> session),
+                       rDao.runInSession("customer1", session -> session));
+            rDao.update("customer1", order.getId(), found -> {
+                found.setAmount(200);
+                return found;
+            });
+            return order;
+        });
+        assertEquals(200, rDao.get("customer1", saved.getId()).get().getAmount());
+
+        //Failures roll back every call made in the scope
+        try {
+            bundle.inShardScope(() -> {
+                rDao.update("customer1", saved.getId(), found -> {
+                    found.setAmount(300);
+                    return found;
+                });
+                throw new IllegalStateException("Failed");
+            });
+            fail("Scope should have failed");
+        }
+        catch (IllegalStateException e) {
+            assertEquals(200, rDao.get("customer1", saved.getId()).get().getAmount());
+        }
+    }
+
     @Test
     public void testBundleWithShardBlacklisted() throws Exception {
         DBShardingBundleBase<TestConfig> bundle = getBundle();
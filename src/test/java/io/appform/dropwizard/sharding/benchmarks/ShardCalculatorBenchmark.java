@@ -0,0 +1,168 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.benchmarks;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeMap;
+import com.google.common.collect.TreeRangeMap;
+import io.appform.dropwizard.sharding.sharding.BalancedShardManager;
+import io.appform.dropwizard.sharding.sharding.InMemoryLocalShardBlacklistingStore;
+import io.appform.dropwizard.sharding.sharding.ShardManager;
+import io.appform.dropwizard.sharding.sharding.impl.ConsistentHashBucketIdExtractor;
+import io.appform.dropwizard.sharding.utils.ShardCalculator;
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Compares shard routing through the array backed bucket table against the {@link TreeRangeMap} lookup
+ * the shard managers used earlier. Run with: java -cp target/test-classes:[test classpath]
+ * io.appform.dropwizard.sharding.benchmarks.ShardCalculatorBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShardCalculatorBenchmark {
+
+    private static final int NUM_KEYS = 4096;
+
+    @Param({"2", "16", "64"})
+    private int numShards;
+
+    private String[] keys;
+    private int[] bucketIds;
+    private int next;
+
+    private ShardManager shardManager;
+    private ShardManager rangeMapShardManager;
+    private ShardCalculator<String> shardCalculator;
+    private ShardCalculator<String> rangeMapShardCalculator;
+
+    @Setup
+    public void setup() {
+        shardManager = new BalancedShardManager(numShards);
+        rangeMapShardManager = new RangeMapShardManager(shardManager);
+        shardCalculator = new ShardCalculator<>(shardManager, new ConsistentHashBucketIdExtractor<>(shardManager));
+        rangeMapShardCalculator = new ShardCalculator<>(rangeMapShardManager,
+                                                        new ConsistentHashBucketIdExtractor<>(rangeMapShardManager));
+        keys = IntStream.range(0, NUM_KEYS)
+                .mapToObj(i -> UUID.randomUUID().toString())
+                .toArray(String[]::new);
+        bucketIds = IntStream.range(0, NUM_KEYS)
+                .map(i -> i % shardManager.numBuckets())
+                .toArray();
+    }
+
+    @Benchmark
+    public int shardForBucketArray() {
+        return shardManager.shardForBucket(bucketIds[nextIndex()]);
+    }
+
+    @Benchmark
+    public int shardForBucketRangeMap() {
+        return rangeMapShardManager.shardForBucket(bucketIds[nextIndex()]);
+    }
+
+    @Benchmark
+    public int shardIdArray() {
+        return shardCalculator.shardId(keys[nextIndex()]);
+    }
+
+    @Benchmark
+    public int shardIdRangeMap() {
+        return rangeMapShardCalculator.shardId(keys[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (NUM_KEYS - 1);
+        return next;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                           .include(ShardCalculatorBenchmark.class.getSimpleName())
+                           .build())
+                .run();
+    }
+
+    /**
+     * Baseline: routes through a {@link TreeRangeMap} holding the same allocation as the delegate.
+     */
+    private static final class RangeMapShardManager extends ShardManager {
+        private final int numBuckets;
+        private final int numShards;
+        private final RangeMap<Integer, Integer> buckets = TreeRangeMap.create();
+
+        private RangeMapShardManager(ShardManager delegate) {
+            super(new InMemoryLocalShardBlacklistingStore());
+            this.numBuckets = delegate.numBuckets();
+            int shards = 0;
+            int start = 0;
+            for (int bucket = 1; bucket <= numBuckets; bucket++) {
+                if (bucket == numBuckets
+                        || delegate.shardForBucket(bucket) != delegate.shardForBucket(start)) {
+                    buckets.put(Range.closed(start, bucket - 1), delegate.shardForBucket(start));
+                    shards++;
+                    start = bucket;
+                }
+            }
+            this.numShards = shards;
+        }
+
+        @Override
+        public int numBuckets() {
+            return numBuckets;
+        }
+
+        @Override
+        protected int numShards() {
+            return numShards;
+        }
+
+        @Override
+        protected int shardForBucketImpl(int bucketId) {
+            Preconditions.checkArgument(bucketId >= 0 && bucketId < numBuckets,
+                                        "Bucket id can only be in the range of [1-1000] (inclusive)");
+            val entry = buckets.getEntry(bucketId);
+            if (null == entry) {
+                throw new IllegalAccessError("Bucket not mapped to any shard");
+            }
+            return entry.getValue();
+        }
+    }
+}
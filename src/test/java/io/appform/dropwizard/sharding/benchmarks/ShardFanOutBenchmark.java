@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.benchmarks;
+
+import io.appform.dropwizard.sharding.utils.ScatterGatherExecutor;
+import io.appform.dropwizard.sharding.utils.ShardExecutorProvider;
+import io.appform.dropwizard.sharding.utils.VirtualThreadExecutorProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares scatter gather throughput on platform and virtual thread executors. Every shard call blocks for
+ * callLatencyMicros to stand in for a JDBC round trip, and many requests fan out at the same time.
+ * The virtual thread variant needs a runtime that supports virtual threads and fails on others.
+ * Run with: java -cp target/test-classes:[test classpath]
+ * io.appform.dropwizard.sharding.benchmarks.ShardFanOutBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@Threads(64)
+public class ShardFanOutBenchmark {
+
+    @Param({"platform", "virtual"})
+    private String executorType;
+
+    @Param({"32"})
+    private int numShards;
+
+    @Param({"1000"})
+    private long callLatencyMicros;
+
+    private ExecutorService executorService;
+    private ScatterGatherExecutor scatterGatherExecutor;
+    private List<Integer> shards;
+
+    @Setup
+    public void setup() {
+        if ("virtual".equals(executorType) && !VirtualThreadExecutorProvider.isSupported()) {
+            throw new IllegalStateException("Virtual threads are not supported on this runtime");
+        }
+        final ShardExecutorProvider provider = "virtual".equals(executorType)
+                                               ? ShardExecutorProvider.virtualThreads()
+                                               : ShardExecutorProvider.platformThreads();
+        //Pool size is what the bundle would use by default for scatter gather
+        executorService = provider.create("benchmark-" + executorType, 32);
+        scatterGatherExecutor = new ScatterGatherExecutor(executorService, numShards, 30, TimeUnit.SECONDS);
+        shards = IntStream.range(0, numShards).boxed().collect(Collectors.toList());
+    }
+
+    @TearDown
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Benchmark
+    public int fanOut() {
+        return scatterGatherExecutor.scatter(shards, shard -> {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(callLatencyMicros));
+            return shard;
+        }).size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                           .include(ShardFanOutBenchmark.class.getSimpleName())
+                           .build())
+                .run();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.caching;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RequestEntityCacheTest {
+
+    @Test
+    public void testNoCacheOpen() {
+        RequestEntityCache.put(String.class, 0, "key", "value");
+        assertNull(RequestEntityCache.get(String.class, 0, "key"));
+        assertFalse(RequestEntityCache.isActive());
+    }
+
+    @Test
+    public void testScope() {
+        try (RequestEntityCache.Scope scope = RequestEntityCache.open()) {
+            assertTrue(RequestEntityCache.isActive());
+            RequestEntityCache.put(String.class, 0, "key", "value");
+            assertEquals("value", RequestEntityCache.get(String.class, 0, "key"));
+            assertNull(RequestEntityCache.get(String.class, 1, "key"));
+            assertNull(RequestEntityCache.get(Object.class, 0, "key"));
+        }
+        assertFalse(RequestEntityCache.isActive());
+        assertNull(RequestEntityCache.get(String.class, 0, "key"));
+    }
+
+    @Test
+    public void testNestedScopesShareCache() throws Exception {
+        try (RequestEntityCache.Scope scope = RequestEntityCache.open()) {
+            RequestEntityCache.execute(() -> {
+                RequestEntityCache.put(String.class, 0, "key", "value");
+                return null;
+            });
+            assertEquals("value", RequestEntityCache.get(String.class, 0, "key"));
+        }
+    }
+
+    @Test
+    public void testEviction() {
+        try (RequestEntityCache.Scope scope = RequestEntityCache.open()) {
+            RequestEntityCache.put(String.class, 0, "a", "a0");
+            RequestEntityCache.put(String.class, 0, "b", "b0");
+            RequestEntityCache.put(String.class, 1, "a", "a1");
+            RequestEntityCache.put(Object.class, 0, "a", "o0");
+
+            RequestEntityCache.evict(String.class, 0, "a");
+            assertNull(RequestEntityCache.get(String.class, 0, "a"));
+            assertEquals("b0", RequestEntityCache.get(String.class, 0, "b"));
+
+            RequestEntityCache.evictShard(String.class, 0);
+            assertNull(RequestEntityCache.get(String.class, 0, "b"));
+            assertEquals("a1", RequestEntityCache.get(String.class, 1, "a"));
+            assertEquals("o0", RequestEntityCache.get(Object.class, 0, "a"));
+        }
+    }
+}
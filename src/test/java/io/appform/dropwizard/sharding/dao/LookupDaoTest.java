@@ -17,16 +17,26 @@
 
 package io.appform.dropwizard.sharding.dao;
 
+import com.codahale.metrics.MetricRegistry;
+import com.github.rholder.retry.StopStrategies;
+import com.github.rholder.retry.WaitStrategies;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import io.appform.dropwizard.sharding.caching.RequestEntityCache;
 import io.appform.dropwizard.sharding.dao.testdata.entities.Audit;
 import io.appform.dropwizard.sharding.dao.testdata.entities.Phone;
 import io.appform.dropwizard.sharding.dao.testdata.entities.TestEntity;
 import io.appform.dropwizard.sharding.dao.testdata.entities.Transaction;
+import io.appform.dropwizard.sharding.dao.testdata.entities.VersionedEntity;
+import io.appform.dropwizard.sharding.exceptions.DeadlineExceededException;
+import io.appform.dropwizard.sharding.exceptions.OptimisticUpdateConflictException;
 import io.appform.dropwizard.sharding.sharding.BalancedShardManager;
 import io.appform.dropwizard.sharding.sharding.ShardManager;
 import io.appform.dropwizard.sharding.sharding.impl.ConsistentHashBucketIdExtractor;
+import io.appform.dropwizard.sharding.utils.Deadline;
+import io.appform.dropwizard.sharding.utils.KeyLocks;
+import io.appform.dropwizard.sharding.utils.ScatterGatherExecutor;
 import io.appform.dropwizard.sharding.utils.ShardCalculator;
 import lombok.val;
 import org.hibernate.SessionFactory;
@@ -34,15 +44,27 @@ import org.hibernate.boot.registry.StandardServiceRegistry;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.Assert.*;
 
@@ -53,6 +75,8 @@ public class LookupDaoTest {
     private LookupDao<Phone> phoneDao;
     private RelationalDao<Transaction> transactionDao;
     private RelationalDao<Audit> auditDao;
+    private LookupDao<VersionedEntity> versionedDao;
+    private ExecutorService executorService = Executors.newFixedThreadPool(4);
 
     private SessionFactory buildSessionFactory(String dbName) {
         Configuration configuration = new Configuration();
@@ -69,6 +93,7 @@ public class LookupDaoTest {
         configuration.addAnnotatedClass(Phone.class);
         configuration.addAnnotatedClass(Transaction.class);
         configuration.addAnnotatedClass(Audit.class);
+        configuration.addAnnotatedClass(VersionedEntity.class);
 
         StandardServiceRegistry serviceRegistry
                 = new StandardServiceRegistryBuilder().applySettings(
@@ -86,15 +111,19 @@ public class LookupDaoTest {
         final ShardCalculator<String> shardCalculator = new ShardCalculator<>(shardManager,
                                                                               new ConsistentHashBucketIdExtractor<>(
                                                                                       shardManager));
-        lookupDao = new LookupDao<>(sessionFactories, TestEntity.class, shardCalculator);
-        phoneDao = new LookupDao<>(sessionFactories, Phone.class, shardCalculator);
-        transactionDao = new RelationalDao<>(sessionFactories, Transaction.class, shardCalculator);
-        auditDao = new RelationalDao<>(sessionFactories, Audit.class, shardCalculator);
+        final ScatterGatherExecutor scatterGatherExecutor
+                = new ScatterGatherExecutor(executorService, 2, 10, TimeUnit.SECONDS, 3);
+        lookupDao = new LookupDao<>(sessionFactories, TestEntity.class, shardCalculator, scatterGatherExecutor);
+        phoneDao = new LookupDao<>(sessionFactories, Phone.class, shardCalculator, scatterGatherExecutor);
+        transactionDao = new RelationalDao<>(sessionFactories, Transaction.class, shardCalculator, scatterGatherExecutor);
+        auditDao = new RelationalDao<>(sessionFactories, Audit.class, shardCalculator, scatterGatherExecutor);
+        versionedDao = new LookupDao<>(sessionFactories, VersionedEntity.class, shardCalculator, scatterGatherExecutor);
     }
 
     @After
     public void after() {
         sessionFactories.forEach(SessionFactory::close);
+        executorService.shutdownNow();
     }
 
     @Test
@@ -146,6 +175,124 @@ public class LookupDaoTest {
         assertFalse(updateStatus);
     }
 
+    @Test
+    public void testLockAndGetExecutorWithKeyLocks() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final LookupDao<TestEntity> lockingDao = new LookupDao<>(sessionFactories,
+                                                                 TestEntity.class,
+                                                                 lookupDao.getShardCalculator(),
+                                                                 ScatterGatherExecutor.serial(),
+                                                                 new KeyLocks(16, 10, TimeUnit.SECONDS,
+                                                                              metricRegistry, "test"));
+        lockingDao.save(TestEntity.builder()
+                                .externalId("hot")
+                                .text("")
+                                .build());
+        //Writers on this node queue up locally instead of failing on the row lock
+        final List<Future<TestEntity>> futures = IntStream.range(0, 4)
+                .mapToObj(i -> executorService.submit(() -> lockingDao.lockAndGetExecutor("hot")
+                        .mutate(entity -> entity.setText(entity.getText() + "x"))
+                        .execute()))
+                .collect(Collectors.toList());
+        for (Future<TestEntity> future : futures) {
+            future.get();
+        }
+        assertEquals("xxxx", lockingDao.get("hot").get().getText());
+        assertEquals(4, metricRegistry.timer(MetricRegistry.name(KeyLocks.class, "test", "wait")).getCount());
+    }
+
+    @Test
+    public void testDeadline() throws Exception {
+        lookupDao.save(TestEntity.builder()
+                               .externalId("deadline")
+                               .text("Some Text")
+                               .build());
+        assertEquals("Some Text", Deadline.execute(5, TimeUnit.SECONDS, () -> lookupDao.get("deadline").get().getText()));
+        try {
+            Deadline.execute(0, TimeUnit.SECONDS, () -> lookupDao.get("deadline"));
+            fail("Call should have been refused");
+        }
+        catch (DeadlineExceededException e) {
+            assertFalse(Deadline.isSet());
+        }
+    }
+
+    @Test
+    public void testUpdateOptimistic() throws Exception {
+        versionedDao.save(VersionedEntity.builder()
+                                  .externalId("versioned")
+                                  .text("Some Text")
+                                  .build());
+        final AtomicInteger calls = new AtomicInteger();
+        assertTrue(versionedDao.updateOptimistic("versioned", entity -> {
+            //Simulate another writer getting in between the read and the write on the first attempt
+            if (calls.incrementAndGet() == 1) {
+                versionedDao.update("versioned", other -> {
+                    other.get().setText("Concurrent Text");
+                    return other.get();
+                });
+            }
+            entity.get().setText(entity.get().getText() + " Updated");
+            return entity.get();
+        }));
+        assertEquals(2, calls.get());
+        final VersionedEntity updated = versionedDao.get("versioned").get();
+        assertEquals("Concurrent Text Updated", updated.getText());
+        assertEquals(2, updated.getVersion());
+
+        assertFalse(versionedDao.updateOptimistic("versioned", entity -> null));
+    }
+
+    @Test
+    public void testUpdateOptimisticRetriesExhausted() throws Exception {
+        versionedDao.save(VersionedEntity.builder()
+                                  .externalId("contended")
+                                  .text("Some Text")
+                                  .build());
+        try {
+            versionedDao.updateOptimistic("contended", entity -> {
+                versionedDao.update("contended", other -> {
+                    other.get().setText("Concurrent Text");
+                    return other.get();
+                });
+                entity.get().setText("Lost Text");
+                return entity.get();
+            }, StopStrategies.stopAfterAttempt(2), WaitStrategies.noWait());
+            fail("Update should have failed");
+        }
+        catch (OptimisticUpdateConflictException e) {
+            assertEquals("Concurrent Text", versionedDao.get("contended").get().getText());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUpdateOptimisticNeedsVersion() throws Exception {
+        lookupDao.updateOptimistic("testId", entity -> entity.orElse(null));
+    }
+
+    @Test
+    public void testRequestEntityCache() throws Exception {
+        lookupDao.save(TestEntity.builder()
+                               .externalId("cached")
+                               .text("Some Text")
+                               .build());
+        try (RequestEntityCache.Scope scope = RequestEntityCache.open()) {
+            final TestEntity first = lookupDao.get("cached").get();
+            assertSame(first, lookupDao.get("cached").get());
+
+            //Writes through the dao evict the entity
+            assertTrue(lookupDao.update("cached", entity -> {
+                entity.get().setText("Updated text");
+                return entity.get();
+            }));
+            final TestEntity updated = lookupDao.get("cached").get();
+            assertNotSame(first, updated);
+            assertEquals("Updated text", updated.getText());
+            assertSame(updated, lookupDao.get("cached").get());
+        }
+        assertNotSame(lookupDao.get("cached").get(), lookupDao.get("cached").get());
+    }
+
     @Test
     public void testScatterGather() throws Exception {
         List<TestEntity> results = lookupDao.scatterGather(DetachedCriteria.forClass(TestEntity.class)
@@ -165,6 +312,36 @@ public class LookupDaoTest {
                              .getText());
     }
 
+    @Test
+    public void testKeysetScatterGather() throws Exception {
+        for (int i = 0; i < 25; i++) {
+            lookupDao.save(TestEntity.builder()
+                                   .externalId(String.format("id-%02d", i))
+                                   .text(Integer.toString(i % 4))
+                                   .build());
+        }
+        final List<String> keys = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            final KeysetPage<TestEntity> page = lookupDao.scatterGather(DetachedCriteria.forClass(TestEntity.class),
+                                                                        Collections.singletonList(Order.asc("text")),
+                                                                        cursor,
+                                                                        10);
+            assertTrue(page.getItems().size() <= 10);
+            page.getItems().forEach(entity -> keys.add(entity.getExternalId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+        assertEquals(IntStream.range(0, 25)
+                             .boxed()
+                             .sorted(Comparator.comparing((Integer i) -> i % 4).thenComparing(i -> i))
+                             .map(i -> String.format("id-%02d", i))
+                             .collect(Collectors.toList()),
+                     keys);
+        assertTrue(pages <= 4);
+    }
+
     @Test
     public void testListGetQuery() throws Exception {
         List<String> lookupKeys = Lists.newArrayList();
@@ -195,6 +372,88 @@ public class LookupDaoTest {
         assertEquals(2, results.size());
     }
 
+    @Test
+    public void testListGetInKeyOrder() throws Exception {
+        final List<String> keys = IntStream.range(0, 40)
+                .mapToObj(i -> "key-" + i)
+                .collect(Collectors.toList());
+        keys.stream()
+                .filter(key -> !key.endsWith("7"))
+                .forEach(key -> {
+                    try {
+                        lookupDao.save(TestEntity.builder()
+                                               .externalId(key)
+                                               .text("Text for " + key)
+                                               .build());
+                    }
+                    catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+        final List<String> lookupKeys = Lists.newArrayList(keys);
+        Collections.shuffle(lookupKeys);
+        lookupKeys.add(lookupKeys.get(0));
+
+        final List<String> expected = lookupKeys.stream()
+                .distinct()
+                .filter(key -> !key.endsWith("7"))
+                .collect(Collectors.toList());
+        assertEquals(expected,
+                     lookupDao.get(lookupKeys)
+                             .stream()
+                             .map(TestEntity::getExternalId)
+                             .collect(Collectors.toList()));
+
+        final Map<String, TestEntity> results = lookupDao.getAsMap(lookupKeys);
+        assertEquals(expected, new ArrayList<>(results.keySet()));
+        results.forEach((key, entity) -> assertEquals("Text for " + key, entity.getText()));
+    }
+
+    @Test
+    public void testSaveAll() throws Exception {
+        final List<TestEntity> entities = IntStream.range(0, 50)
+                .mapToObj(i -> TestEntity.builder()
+                        .externalId("bulk-" + i)
+                        .text("Text " + i)
+                        .build())
+                .collect(Collectors.toList());
+        final List<ShardSaveResult<TestEntity>> results = lookupDao.saveAll(entities, 7);
+        assertTrue(results.stream().allMatch(ShardSaveResult::isSuccess));
+        assertEquals(50, results.stream().mapToInt(result -> result.getEntities().size()).sum());
+        results.forEach(result -> result.getEntities()
+                .forEach(entity -> assertEquals(result.getShardId(),
+                                                lookupDao.getShardCalculator().shardId(entity.getExternalId()))));
+        assertEquals(entities.stream().map(TestEntity::getExternalId).collect(Collectors.toList()),
+                     lookupDao.get(entities.stream().map(TestEntity::getExternalId).collect(Collectors.toList()))
+                             .stream()
+                             .map(TestEntity::getExternalId)
+                             .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testSaveAllFailureOnOneShard() throws Exception {
+        final List<TestEntity> entities = IntStream.range(0, 20)
+                .mapToObj(i -> TestEntity.builder()
+                        .externalId("bulk-" + i)
+                        .text("Text " + i)
+                        .build())
+                .collect(Collectors.toList());
+        entities.add(TestEntity.builder()
+                             .externalId("bulk-0")
+                             .text("Duplicate")
+                             .build());
+        final int failedShard = lookupDao.getShardCalculator().shardId("bulk-0");
+        final List<ShardSaveResult<TestEntity>> results = lookupDao.saveAll(entities);
+        final Map<String, TestEntity> saved = lookupDao.getAsMap(entities.stream()
+                                                                         .map(TestEntity::getExternalId)
+                                                                         .collect(Collectors.toList()));
+        results.forEach(result -> {
+            assertEquals(result.getShardId() != failedShard, result.isSuccess());
+            result.getEntities()
+                    .forEach(entity -> assertEquals(result.isSuccess(), saved.containsKey(entity.getExternalId())));
+        });
+    }
+
     @Test
     public void testUpdateUsingNamedQueryRowUpdated() throws Exception {
         val id = UUID.randomUUID().toString();
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.dao;
+
+import io.appform.dropwizard.sharding.dao.testdata.entities.RelationalEntity;
+import io.appform.dropwizard.sharding.utils.ScatterGatherExecutor;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertTrue;
+
+public class OrderedScatterGatherTest {
+
+    @Test
+    public void testZeroRowsReadsNothing() throws Exception {
+        final SessionFactory untouchable = (SessionFactory) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class[]{SessionFactory.class},
+                (proxy, method, args) -> {
+                    throw new AssertionError("Shard should not have been queried");
+                });
+        final OrderedScatterGather<RelationalEntity> scatterGather = new OrderedScatterGather<>(
+                RelationalEntity.class, RelationalEntity.class.getDeclaredField("key"), ScatterGatherExecutor.serial());
+        assertTrue(scatterGather.page(Arrays.asList(untouchable, untouchable),
+                                      DetachedCriteria.forClass(RelationalEntity.class),
+                                      Collections.singletonList(Order.desc("keyTwo")),
+                                      10,
+                                      0).isEmpty());
+    }
+}
@@ -30,15 +30,26 @@ import org.hibernate.boot.registry.StandardServiceRegistry;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class RelationalDaoTest {
 
@@ -100,6 +111,27 @@ public class RelationalDaoTest {
 
     }
 
+    @Test
+    public void testBatchedSaveAll() {
+        val parentKey = UUID.randomUUID().toString();
+        val saved = relationalDao.saveAll(parentKey,
+                                          IntStream.range(0, 1000)
+                                                  .mapToObj(i -> RelationalEntity.builder()
+                                                          .key(Integer.toString(i))
+                                                          .value("value " + i)
+                                                          .build()),
+                                          64);
+        assertEquals(1000, saved);
+        assertEquals(1000, relationalDao.count(parentKey, DetachedCriteria.forClass(RelationalEntity.class)));
+
+        relationalDao.saveAll(parentKey,
+                              Lists.newArrayList(RelationalEntity.builder().key("a").value("a").build(),
+                                                 RelationalEntity.builder().key("b").value("b").build(),
+                                                 RelationalEntity.builder().key("c").value("c").build()),
+                              2);
+        assertEquals(1003, relationalDao.count(parentKey, DetachedCriteria.forClass(RelationalEntity.class)));
+    }
+
     @Test
     public void testUpdateUsingQuery() throws Exception {
         val relationalKey = UUID.randomUUID().toString();
@@ -196,4 +228,118 @@ public class RelationalDaoTest {
         assertNotNull(persistedEntityThree);
         assertEquals(entityThree.getValue(), persistedEntityThree.getValue());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testOrderedScatterGather() {
+        val entities = IntStream.range(0, 50)
+                .mapToObj(i -> RelationalEntity.builder()
+                        .key(String.format("%03d", i))
+                        .keyTwo(Integer.toString(i % 3))
+                        .value(UUID.randomUUID().toString())
+                        .build())
+                .collect(Collectors.toList());
+        entities.forEach(entity -> relationalDao.save(UUID.randomUUID().toString(), entity, t -> t));
+        val expected = entities.stream()
+                .sorted(Comparator.comparing(RelationalEntity::getKeyTwo).reversed()
+                                .thenComparing(RelationalEntity::getKey))
+                .map(RelationalEntity::getKey)
+                .collect(Collectors.toList());
+
+        val page = relationalDao.scatterGather(DetachedCriteria.forClass(RelationalEntity.class),
+                                               Collections.singletonList(Order.desc("keyTwo")),
+                                               10,
+                                               15);
+        assertEquals(expected.subList(10, 25),
+                     page.stream().map(RelationalEntity::getKey).collect(Collectors.toList()));
+        assertTrue(relationalDao.scatterGather(DetachedCriteria.forClass(RelationalEntity.class),
+                                               Collections.singletonList(Order.desc("keyTwo")),
+                                               10,
+                                               0).isEmpty());
+
+        val filtered = relationalDao.scatterGather(DetachedCriteria.forClass(RelationalEntity.class)
+                                                           .add(Restrictions.eq("keyTwo", "1")),
+                                                   Collections.emptyList(),
+                                                   0,
+                                                   100);
+        assertEquals(entities.stream()
+                             .filter(entity -> entity.getKeyTwo().equals("1"))
+                             .map(RelationalEntity::getKey)
+                             .collect(Collectors.toList()),
+                     filtered.stream().map(RelationalEntity::getKey).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testKeysetScatterGather() {
+        val entities = IntStream.range(0, 40)
+                .mapToObj(i -> RelationalEntity.builder()
+                        .key(String.format("%03d", i))
+                        .keyTwo(Integer.toString(i % 5))
+                        .value(UUID.randomUUID().toString())
+                        .build())
+                .collect(Collectors.toList());
+        entities.forEach(entity -> relationalDao.save(UUID.randomUUID().toString(), entity, t -> t));
+        val expected = entities.stream()
+                .sorted(Comparator.comparing(RelationalEntity::getKeyTwo).reversed()
+                                .thenComparing(RelationalEntity::getKey))
+                .map(RelationalEntity::getKey)
+                .collect(Collectors.toList());
+
+        val keys = new ArrayList<String>();
+        String cursor = null;
+        do {
+            val page = relationalDao.scatterGather(DetachedCriteria.forClass(RelationalEntity.class),
+                                                   Collections.singletonList(Order.desc("keyTwo")),
+                                                   cursor,
+                                                   7);
+            assertTrue(page.getItems().size() <= 7);
+            page.getItems().forEach(entity -> keys.add(entity.getKey()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(expected, keys);
+    }
+
+    @Test
+    public void testKeysetSelect() {
+        val parentKey = UUID.randomUUID().toString();
+        val entities = IntStream.range(0, 12)
+                .mapToObj(i -> RelationalEntity.builder()
+                        .key(String.format("%03d", i))
+                        .keyTwo(Integer.toString(i % 2))
+                        .value(UUID.randomUUID().toString())
+                        .build())
+                .collect(Collectors.toList());
+        relationalDao.saveAll(parentKey, entities);
+
+        val first = relationalDao.select(parentKey,
+                                         DetachedCriteria.forClass(RelationalEntity.class),
+                                         Collections.singletonList(Order.asc("keyTwo")),
+                                         null,
+                                         5);
+        assertEquals(Arrays.asList("000", "002", "004", "006", "008"),
+                     first.getItems().stream().map(RelationalEntity::getKey).collect(Collectors.toList()));
+        assertNotNull(first.getNextCursor());
+        val second = relationalDao.select(parentKey,
+                                          DetachedCriteria.forClass(RelationalEntity.class),
+                                          Collections.singletonList(Order.asc("keyTwo")),
+                                          first.getNextCursor(),
+                                          5);
+        assertEquals(Arrays.asList("010", "001", "003", "005", "007"),
+                     second.getItems().stream().map(RelationalEntity::getKey).collect(Collectors.toList()));
+        val third = relationalDao.select(parentKey,
+                                         DetachedCriteria.forClass(RelationalEntity.class),
+                                         Collections.singletonList(Order.asc("keyTwo")),
+                                         second.getNextCursor(),
+                                         5);
+        assertEquals(Arrays.asList("009", "011"),
+                     third.getItems().stream().map(RelationalEntity::getKey).collect(Collectors.toList()));
+        assertNull(third.getNextCursor());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKeysetCursorForDifferentOrder() {
+        relationalDao.scatterGather(DetachedCriteria.forClass(RelationalEntity.class),
+                                    Collections.singletonList(Order.desc("keyTwo")),
+                                    Base64.getUrlEncoder().encodeToString("{\"sort\":\"value asc\"}".getBytes()),
+                                    5);
+    }
+}
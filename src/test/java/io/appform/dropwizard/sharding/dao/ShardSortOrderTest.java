@@ -0,0 +1,108 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.dao;
+
+import io.appform.dropwizard.sharding.dao.testdata.entities.RelationalEntity;
+import org.hibernate.criterion.Order;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ShardSortOrderTest {
+
+    @Test
+    public void testKeyAppendedAsLastOrder() throws Exception {
+        final ShardSortOrder<RelationalEntity> sortOrder = sortOrder(Order.desc("keyTwo"));
+        assertEquals("keyTwo desc,key asc", sortOrder.toString());
+        assertEquals("keyTwo desc,key desc", sortOrder(Order.desc("keyTwo"), Order.desc("key")).toString());
+    }
+
+    @Test
+    public void testComparatorMatchesOrders() throws Exception {
+        final ShardSortOrder<RelationalEntity> sortOrder = sortOrder(Order.desc("keyTwo"));
+        final List<RelationalEntity> entities = Arrays.asList(entity("3", "a"),
+                                                              entity("1", "b"),
+                                                              entity("2", "a"),
+                                                              entity("0", "b"));
+        entities.sort(sortOrder.getComparator());
+        assertEquals(Arrays.asList("0", "1", "2", "3"),
+                     entities.stream().map(RelationalEntity::getKey).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("b", "0"), sortOrder.valuesOf(entities.get(0)));
+    }
+
+    @Test
+    public void testAfter() throws Exception {
+        final ShardSortOrder<RelationalEntity> sortOrder = sortOrder(Order.desc("keyTwo"));
+        assertEquals("keyTwo<=b and ((keyTwo<b) or (keyTwo=b and key>0))",
+                     sortOrder.after(Arrays.asList("b", "0")).toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownProperty() throws Exception {
+        sortOrder(Order.asc("missing"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullSortValue() throws Exception {
+        sortOrder(Order.asc("keyTwo")).after(Arrays.asList(null, "0"));
+    }
+
+    @Test
+    public void testCheckNext() throws Exception {
+        final ShardSortOrder<RelationalEntity> sortOrder = sortOrder(Order.asc("keyTwo"));
+        sortOrder.checkNext(null, entity("1", "a"));
+        sortOrder.checkNext(entity("1", "a"), entity("2", "a"));
+        sortOrder.checkNext(entity("2", "a"), entity("1", "b"));
+        try {
+            //A case insensitive collation would return "B" before "a"
+            sortOrder.checkNext(entity("1", "b"), entity("2", "B"));
+            fail("Rows out of order should have been rejected");
+        }
+        catch (IllegalStateException e) {
+            assertEquals("Shard returned rows out of order for keyTwo asc,key asc, check that the database " +
+                                 "collation of the sort columns matches their java ordering", e.getMessage());
+        }
+        try {
+            sortOrder.checkNext(entity("1", "a"), entity("2", null));
+            fail("Null sort value should have been rejected");
+        }
+        catch (IllegalStateException e) {
+            assertEquals("Sort property keyTwo is null, sort properties can't be null for reads across shards",
+                         e.getMessage());
+        }
+    }
+
+    private static ShardSortOrder<RelationalEntity> sortOrder(Order... orders) throws Exception {
+        return new ShardSortOrder<>(RelationalEntity.class,
+                                    RelationalEntity.class.getDeclaredField("key"),
+                                    orders.length == 0 ? Collections.emptyList() : Arrays.asList(orders));
+    }
+
+    private static RelationalEntity entity(String key, String keyTwo) {
+        return RelationalEntity.builder()
+                .key(key)
+                .keyTwo(keyTwo)
+                .build();
+    }
+}
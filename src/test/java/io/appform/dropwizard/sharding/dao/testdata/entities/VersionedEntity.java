@@ -0,0 +1,50 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.dao.testdata.entities;
+
+import io.appform.dropwizard.sharding.sharding.LookupKey;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Version;
+
+@Entity
+@Table(name = "versioned_entity")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VersionedEntity {
+    @Id
+    @LookupKey
+    @Column(name = "ext_id", unique = true)
+    private String externalId;
+
+    @Column(name = "text", nullable = false)
+    private String text;
+
+    @Version
+    @Column(name = "version")
+    private long version;
+}
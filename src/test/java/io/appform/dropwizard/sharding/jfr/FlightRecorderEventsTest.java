@@ -0,0 +1,104 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.jfr;
+
+import io.appform.dropwizard.sharding.dao.testdata.entities.RelationalEntity;
+import io.appform.dropwizard.sharding.sharding.BalancedShardManager;
+import io.appform.dropwizard.sharding.sharding.impl.ConsistentHashBucketIdExtractor;
+import io.appform.dropwizard.sharding.utils.HotKeys;
+import io.appform.dropwizard.sharding.utils.ScatterGatherExecutor;
+import io.appform.dropwizard.sharding.utils.ShardCalculator;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FlightRecorderEventsTest {
+
+    @Test
+    public void testEvents() throws Exception {
+        assertTrue(FlightRecorderEvents.isAvailable());
+        assertFalse(FlightRecorderEvents.transactionListener().isEnabled());
+        final ShardCalculator<String> shardCalculator = new ShardCalculator<>(
+                new BalancedShardManager(4), new ConsistentHashBucketIdExtractor<>(new BalancedShardManager(4)),
+                HotKeys.disabled(), "test", RelationalEntity.class);
+        final ExecutorService executorService = Executors.newFixedThreadPool(2);
+        final Path file = Files.createTempFile("sharding", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("io.appform.dropwizard.sharding.ShardRouting");
+            recording.enable("io.appform.dropwizard.sharding.ScatterGather");
+            recording.enable("io.appform.dropwizard.sharding.DaoOperation");
+            recording.enable("io.appform.dropwizard.sharding.ShardTransaction");
+            recording.start();
+
+            assertTrue(FlightRecorderEvents.transactionListener().isEnabled());
+            final int shardId = shardCalculator.shardId("key");
+            new ScatterGatherExecutor(executorService, 2, 1, TimeUnit.SECONDS)
+                    .scatter(Arrays.asList(1, 2, 3), i -> i * 2);
+            FlightRecorderEvents.daoOperation("test", "Entity", "get", shardId, 1000);
+
+            recording.stop();
+            recording.dump(file);
+            final List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+            final RecordedEvent routing = only(events, "io.appform.dropwizard.sharding.ShardRouting");
+            assertEquals("test", routing.getString("namespace"));
+            assertEquals("RelationalEntity", routing.getString("entity"));
+            assertEquals(shardId, routing.getInt("shardId"));
+            assertEquals(new ConsistentHashBucketIdExtractor<String>(new BalancedShardManager(4)).bucketId("key"),
+                         routing.getInt("bucketId"));
+
+            final RecordedEvent scatter = only(events, "io.appform.dropwizard.sharding.ScatterGather");
+            assertEquals(3, scatter.getInt("numTargets"));
+            assertEquals(2, scatter.getInt("maxParallelism"));
+            assertFalse(scatter.getBoolean("failed"));
+
+            final RecordedEvent operation = only(events, "io.appform.dropwizard.sharding.DaoOperation");
+            assertEquals("test", operation.getString("namespace"));
+            assertEquals("Entity", operation.getString("entity"));
+            assertEquals("get", operation.getString("operation"));
+            assertEquals(1000, operation.getDuration("elapsed").toNanos());
+        }
+        finally {
+            executorService.shutdownNow();
+            Files.deleteIfExists(file);
+        }
+        assertFalse(FlightRecorderEvents.transactionListener().isEnabled());
+    }
+
+    private static RecordedEvent only(List<RecordedEvent> events, String name) {
+        final List<RecordedEvent> matching = events.stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .collect(Collectors.toList());
+        assertEquals(name, 1, matching.size());
+        return matching.get(0);
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.replicas;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import io.appform.dropwizard.sharding.config.ReplicaConsistency;
+import io.dropwizard.db.ManagedDataSource;
+import io.dropwizard.util.Duration;
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReplicaRoutingDataSourceTest {
+
+    private final TestDataSource primary = new TestDataSource("primary");
+    private final TestDataSource replica1 = new TestDataSource("replica1");
+    private final TestDataSource replica2 = new TestDataSource("replica2");
+    private final ReplicaRoutingDataSource dataSource
+            = new ReplicaRoutingDataSource(primary, ImmutableList.of(replica1, replica2), ReplicaSelector.roundRobin());
+
+    @After
+    public void tearDown() {
+        ReplicaRouting.setReplicaRead(false);
+        ReplicaRouting.setReadOnly(false);
+        ReplicaRouting.reset();
+    }
+
+    @Test
+    public void testPrimaryOutsideReplicaReads() throws Exception {
+        assertEquals("primary", dataSource.getConnection().toString());
+        assertEquals("primary", dataSource.getConnection().toString());
+    }
+
+    @Test
+    public void testReplicaReadsRoundRobin() throws Exception {
+        assertFalse(ReplicaRouting.setReplicaRead(true));
+        assertEquals("replica1", dataSource.getConnection().toString());
+        assertEquals("replica2", dataSource.getConnection().toString());
+        assertEquals("replica1", dataSource.getConnection().toString());
+
+        assertTrue(ReplicaRouting.setReplicaRead(false));
+        assertEquals("primary", dataSource.getConnection().toString());
+    }
+
+    @Test
+    public void testFailingReplicaSkipped() throws Exception {
+        ReplicaRouting.setReplicaRead(true);
+        replica1.failing = true;
+        assertEquals("replica2", dataSource.getConnection().toString());
+        assertEquals("replica2", dataSource.getConnection().toString());
+
+        replica2.failing = true;
+        assertEquals("primary", dataSource.getConnection().toString());
+    }
+
+    @Test
+    public void testNoReplicas() throws Exception {
+        final ReplicaRoutingDataSource noReplicas
+                = new ReplicaRoutingDataSource(primary, ImmutableList.of(), ReplicaSelector.roundRobin());
+        ReplicaRouting.setReplicaRead(true);
+        assertEquals("primary", noReplicas.getConnection().toString());
+    }
+
+    @Test
+    public void testLifecycle() throws Exception {
+        dataSource.start();
+        assertTrue(primary.started && replica1.started && replica2.started);
+        dataSource.stop();
+        assertFalse(primary.started || replica1.started || replica2.started);
+    }
+
+    @Test
+    public void testReadYourWrites() throws Exception {
+        final MetricRegistry metrics = new MetricRegistry();
+        final ReplicaRoutingDataSource consistent = readYourWrites(metrics, 50);
+        final ReplicaRouting.UnitOfWork unitOfWork = ReplicaRouting.unitOfWork();
+
+        //Reads before any write go to replicas
+        ReplicaRouting.setReplicaRead(true);
+        assertEquals("replica1", consistent.getConnection().toString());
+
+        //Write is recorded once the connection is released
+        ReplicaRouting.setReplicaRead(false);
+        final Connection writeConnection = consistent.getConnection();
+        assertEquals("primary", writeConnection.toString());
+        writeConnection.close();
+
+        ReplicaRouting.setReplicaRead(true);
+        assertEquals("primary", consistent.getConnection().toString());
+        assertEquals("primary", consistent.getConnection().toString());
+
+        //Replicas are expected to have caught up after maxLag
+        Thread.sleep(100);
+        assertEquals("replica2", consistent.getConnection().toString());
+
+        assertEquals(2, meter(metrics, "replicaReads").getCount());
+        assertEquals(2, meter(metrics, "primaryReads").getCount());
+        assertEquals(0, meter(metrics, "fallbackReads").getCount());
+
+        //Writes are forgotten with the unit of work
+        ReplicaRouting.setReplicaRead(false);
+        consistent.getConnection().close();
+        unitOfWork.close();
+        ReplicaRouting.setReplicaRead(true);
+        assertEquals("replica1", consistent.getConnection().toString());
+    }
+
+    @Test
+    public void testWritesOutsideUnitOfWorkNotTracked() throws Exception {
+        final ReplicaRoutingDataSource consistent = readYourWrites(new MetricRegistry(), 60_000);
+        consistent.getConnection().close();
+        ReplicaRouting.setReplicaRead(true);
+        assertEquals("replica1", consistent.getConnection().toString());
+        assertNull(ReplicaRouting.writeHistory());
+    }
+
+    @Test
+    public void testReadOnlyPrimaryNotTracked() throws Exception {
+        final ReplicaRoutingDataSource consistent = readYourWrites(new MetricRegistry(), 60_000);
+        try (ReplicaRouting.UnitOfWork ignored = ReplicaRouting.unitOfWork()) {
+            assertFalse(ReplicaRouting.setReadOnly(true));
+            final Connection connection = consistent.getConnection();
+            assertEquals("primary", connection.toString());
+            connection.close();
+            assertTrue(ReplicaRouting.setReadOnly(false));
+            ReplicaRouting.setReplicaRead(true);
+            assertEquals("replica1", consistent.getConnection().toString());
+        }
+    }
+
+    @Test
+    public void testNestedUnitOfWork() throws Exception {
+        final ReplicaRoutingDataSource consistent = readYourWrites(new MetricRegistry(), 60_000);
+        ReplicaRouting.unitOfWork(() -> {
+            ReplicaRouting.unitOfWork(() -> {
+                consistent.getConnection().close();
+                return null;
+            });
+            ReplicaRouting.setReplicaRead(true);
+            assertEquals("primary", consistent.getConnection().toString());
+            return null;
+        });
+        assertNull(ReplicaRouting.writeHistory());
+    }
+
+    @Test
+    public void testWriteHistoryPropagated() throws Exception {
+        final ReplicaRoutingDataSource consistent = readYourWrites(new MetricRegistry(), 60_000);
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try (ReplicaRouting.UnitOfWork ignored = ReplicaRouting.unitOfWork()) {
+            //Write on another thread on behalf of this one
+            executorService.submit(ReplicaRouting.propagate(() -> {
+                consistent.getConnection().close();
+                return null;
+            })).get();
+            ReplicaRouting.setReplicaRead(true);
+            assertEquals("primary", consistent.getConnection().toString());
+
+            //Unrelated work on the executor thread does not see the write
+            assertEquals("replica1", executorService.submit(() -> {
+                ReplicaRouting.setReplicaRead(true);
+                try {
+                    return consistent.getConnection().toString();
+                }
+                finally {
+                    ReplicaRouting.setReplicaRead(false);
+                }
+            }).get());
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFallbackMetered() throws Exception {
+        final MetricRegistry metrics = new MetricRegistry();
+        final ReplicaRoutingDataSource consistent = readYourWrites(metrics, 50);
+        replica1.failing = true;
+        replica2.failing = true;
+        ReplicaRouting.setReplicaRead(true);
+        assertEquals("primary", consistent.getConnection().toString());
+        assertEquals(1, meter(metrics, "fallbackReads").getCount());
+    }
+
+    @Test
+    public void testLeastBusy() {
+        final List<BusyDataSource> replicas = ImmutableList.of(new BusyDataSource(3),
+                                                               new BusyDataSource(1),
+                                                               new BusyDataSource(2));
+        final ReplicaSelector selector = ReplicaSelector.leastBusy();
+        for (int i = 0; i < 5; i++) {
+            assertEquals(1, selector.select(replicas));
+        }
+        replicas.get(1).active = 5;
+        assertEquals(2, selector.select(replicas));
+    }
+
+    private ReplicaRoutingDataSource readYourWrites(MetricRegistry metrics, long maxLagMillis) {
+        return new ReplicaRoutingDataSource("test",
+                                            primary,
+                                            ImmutableList.of(replica1, replica2),
+                                            ReplicaSelector.roundRobin(),
+                                            ReplicaConsistency.READ_YOUR_WRITES,
+                                            Duration.milliseconds(maxLagMillis),
+                                            metrics);
+    }
+
+    private static Meter meter(MetricRegistry metrics, String name) {
+        return metrics.meter(MetricRegistry.name(ReplicaRoutingDataSource.class, "test", name));
+    }
+
+    private static final class BusyDataSource extends DataSource {
+        private int active;
+
+        private BusyDataSource(int active) {
+            this.active = active;
+        }
+
+        @Override
+        public int getNumActive() {
+            return active;
+        }
+    }
+
+    private static final class TestDataSource implements ManagedDataSource {
+        private final String name;
+        private boolean failing;
+        private boolean started;
+
+        private TestDataSource(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (failing) {
+                throw new SQLException("Connection refused");
+            }
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                                                       new Class<?>[]{Connection.class},
+                                                       (proxy, method, args) -> "toString".equals(method.getName())
+                                                                                ? name
+                                                                                : null);
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return getConnection();
+        }
+
+        @Override
+        public void start() {
+            started = true;
+        }
+
+        @Override
+        public void stop() {
+            started = false;
+        }
+
+        @Override
+        public PrintWriter getLogWriter() {
+            return null;
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) {
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) {
+        }
+
+        @Override
+        public int getLoginTimeout() {
+            return 0;
+        }
+
+        @Override
+        public Logger getParentLogger() {
+            return null;
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) {
+            return null;
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) {
+            return false;
+        }
+    }
+}
@@ -55,4 +55,20 @@ public class BalancedShardManagerTest {
         BalancedShardManager shardManager = new BalancedShardManager(16);
         assertEquals(15, shardManager.shardForBucket(1023));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAllBucketsMapped() throws Exception {
+        for (int numShards = 2; numShards <= 64; numShards *= 2) {
+            BalancedShardManager shardManager = new BalancedShardManager(numShards);
+            int interval = 1024 / numShards;
+            for (int bucket = 0; bucket < shardManager.numBuckets(); bucket++) {
+                assertEquals(bucket / interval, shardManager.shardForBucket(bucket));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBucketOutOfRange() throws Exception {
+        new BalancedShardManager(16).shardForBucket(-1);
+    }
+}
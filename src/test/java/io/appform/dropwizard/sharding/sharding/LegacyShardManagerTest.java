@@ -55,4 +55,20 @@ public class LegacyShardManagerTest {
         LegacyShardManager shardManager = new LegacyShardManager(16);
         assertEquals(15, shardManager.shardForBucket(999));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAllBucketsMapped() throws Exception {
+        for (int numShards = 2; numShards <= 64; numShards *= 2) {
+            LegacyShardManager shardManager = new LegacyShardManager(numShards);
+            int interval = 999 / numShards;
+            for (int bucket = 0; bucket < shardManager.numBuckets(); bucket++) {
+                assertEquals(Math.min(bucket / interval, numShards - 1), shardManager.shardForBucket(bucket));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBucketOutOfRange() throws Exception {
+        new LegacyShardManager(16).shardForBucket(1000);
+    }
+}
@@ -21,7 +21,11 @@ import io.appform.dropwizard.sharding.exceptions.ShardBlacklistedException;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class ShardManagerTest {
 
@@ -47,4 +51,42 @@ public class ShardManagerTest {
         Thread.sleep(5000); //Sleeping for 5 seconds
         assertEquals(0, shardManager.shardForBucket(100));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testBlacklistRefreshFromStore() throws Exception {
+        ShardBlacklistingStore store = new InMemoryLocalShardBlacklistingStore();
+        ShardManager shardManager = new LegacyShardManager(8, store);
+        shardManager.setBlacklistRefreshInterval(100, TimeUnit.MILLISECONDS);
+        assertEquals(0, shardManager.shardForBucket(100));
+        store.blacklist(0); //Blacklisted from outside the manager, say by another node
+        Thread.sleep(1000);
+        assertFalse(shardManager.isMappedToValidShard(100));
+        try {
+            shardManager.shardForBucket(100);
+            Assert.fail("Should have errored out");
+        } catch (ShardBlacklistedException e) {
+
+        }
+        store.unblacklist(0);
+        shardManager.refreshBlacklist();
+        assertTrue(shardManager.isMappedToValidShard(100));
+        assertEquals(0, shardManager.shardForBucket(100));
+    }
+
+    @Test
+    public void testUnreadableStore() throws Exception {
+        ShardBlacklistingStore store = new InMemoryLocalShardBlacklistingStore() {
+            @Override
+            public boolean blacklisted(int shardId) {
+                throw new IllegalStateException("Store is down");
+            }
+        };
+        ShardManager shardManager = new LegacyShardManager(8, store);
+        shardManager.initBlacklist();
+        assertTrue(shardManager.isMappedToValidShard(100));
+        assertEquals(0, shardManager.shardForBucket(100));
+        //Blacklisting through the manager still takes effect locally
+        shardManager.blacklistShard(0);
+        assertFalse(shardManager.isMappedToValidShard(100));
+    }
+}
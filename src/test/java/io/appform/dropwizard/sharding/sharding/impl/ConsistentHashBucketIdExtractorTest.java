@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.sharding.impl;
+
+import com.google.common.hash.Hashing;
+import io.appform.dropwizard.sharding.sharding.BalancedShardManager;
+import io.appform.dropwizard.sharding.sharding.LegacyShardManager;
+import io.appform.dropwizard.sharding.sharding.ShardManager;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Makes sure the garbage free hash routes every key to exactly the bucket the guava based implementation did.
+ */
+public class ConsistentHashBucketIdExtractorTest {
+
+    private static final int NUM_KEYS = 2_000_000;
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void testHashMatchesGuava() {
+        for (int i = 0; i < NUM_KEYS; i++) {
+            final String key = randomKey(i);
+            assertEquals("Mismatch for key: " + key, guavaHash(key), Murmur3.hash128AsInt(key));
+        }
+    }
+
+    @Test
+    public void testBucketsMatchGuava() {
+        final ShardManager balanced = new BalancedShardManager(16);
+        final ShardManager legacy = new LegacyShardManager(16);
+        final ConsistentHashBucketIdExtractor<String> balancedExtractor = new ConsistentHashBucketIdExtractor<>(balanced);
+        final ConsistentHashBucketIdExtractor<String> legacyExtractor = new ConsistentHashBucketIdExtractor<>(legacy);
+        for (int i = 0; i < NUM_KEYS; i++) {
+            final String key = randomKey(i);
+            assertEquals(guavaBucket(key, balanced), balancedExtractor.bucketId(key));
+            assertEquals(guavaBucket(key, legacy), legacyExtractor.bucketId(key));
+        }
+    }
+
+    @Test
+    public void testEdgeCases() {
+        final String[] keys = {
+                "",
+                "a",
+                "0123456789abcde",
+                "0123456789abcdef",
+                "0123456789abcdef0",
+                "\u00e9\u00e8\u00ea",
+                "\u20ac\u20ac\u20ac\u20ac\u20ac\u20ac",
+                "\ud83d\ude00",
+                "abc\ud83d\ude00def\ud83d\ude00",
+                "\ud83d",
+                "\ude00",
+                "abc\ud83d",
+                "\ude00\ud83d",
+                "\ud83d\ud83d\ude00",
+        };
+        for (String key : keys) {
+            assertEquals("Mismatch for key: " + key, guavaHash(key), Murmur3.hash128AsInt(key));
+            assertEquals(guavaHash(key), Murmur3.hash128AsInt(new StringBuilder(key)));
+        }
+    }
+
+    @Test
+    public void testNonStringKey() {
+        final ShardManager shardManager = new BalancedShardManager(8);
+        final ConsistentHashBucketIdExtractor<Long> extractor = new ConsistentHashBucketIdExtractor<>(shardManager);
+        for (long i = 0; i < 100_000; i++) {
+            assertEquals(guavaBucket(Long.toString(i), shardManager), extractor.bucketId(i));
+        }
+    }
+
+    private String randomKey(int i) {
+        switch (i % 4) {
+            case 0:
+                return UUID.randomUUID().toString();
+            case 1:
+                return randomString(0x80);
+            case 2:
+                return randomString(0x800);
+            default:
+                return randomString(Character.MAX_VALUE + 1);
+        }
+    }
+
+    private String randomString(int charBound) {
+        final int length = random.nextInt(48);
+        final StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            if (charBound > Character.MAX_VALUE && random.nextInt(8) == 0) {
+                builder.appendCodePoint(Character.MIN_SUPPLEMENTARY_CODE_POINT
+                                                + random.nextInt(Character.MAX_CODE_POINT
+                                                                         - Character.MIN_SUPPLEMENTARY_CODE_POINT));
+            }
+            else {
+                builder.append((char) random.nextInt(charBound));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static int guavaHash(String key) {
+        return Hashing.murmur3_128().hashString(key, StandardCharsets.UTF_8).asInt();
+    }
+
+    private static int guavaBucket(String key, ShardManager shardManager) {
+        int hashKey = guavaHash(key);
+        hashKey *= hashKey < 0 ? -1 : 1;
+        return hashKey % shardManager.numBuckets();
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import com.codahale.metrics.MetricRegistry;
+import org.hibernate.SessionFactory;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DaoMetricsTest {
+
+    @Test
+    public void testUnregisteredIsNoop() {
+        final List<SessionFactory> sessionFactories = Arrays.asList(sessionFactory(), sessionFactory());
+        final DaoMetrics metrics = DaoMetrics.forDao(sessionFactories, String.class);
+        assertSame(DaoMetrics.disabled(), metrics);
+        assertEquals(0, metrics.start());
+        metrics.record("get", 0, 0);
+    }
+
+    @Test
+    public void testTimersPerShardAndOperation() {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final List<SessionFactory> sessionFactories = Arrays.asList(sessionFactory(), sessionFactory());
+        sessionFactories.forEach(sessionFactory -> DaoMetrics.register(sessionFactory, metricRegistry, "test"));
+        try {
+            final DaoMetrics metrics = DaoMetrics.forDao(sessionFactories, String.class);
+            final String prefix = MetricRegistry.name(DaoMetrics.class, "test", "String");
+
+            metrics.record("get", 1, metrics.start());
+            metrics.record("get", 1, metrics.start());
+            metrics.record("get", 0, metrics.start());
+            metrics.record("scatterGather", DaoMetrics.ALL_SHARDS, metrics.start());
+
+            assertEquals(3, metricRegistry.getTimers().size());
+            assertEquals(2, metricRegistry.timer(MetricRegistry.name(prefix, "get", "shard1")).getCount());
+            assertEquals(1, metricRegistry.timer(MetricRegistry.name(prefix, "get", "shard0")).getCount());
+            assertEquals(1, metricRegistry.timer(MetricRegistry.name(prefix, "scatterGather", "all")).getCount());
+            assertTrue(metricRegistry.timer(MetricRegistry.name(prefix, "get", "shard1")).getSnapshot().getMax() >= 0);
+        }
+        finally {
+            sessionFactories.forEach(DaoMetrics::unregister);
+        }
+    }
+
+    private SessionFactory sessionFactory() {
+        return (SessionFactory) Proxy.newProxyInstance(getClass().getClassLoader(),
+                                                       new Class[]{SessionFactory.class},
+                                                       (proxy, method, args) -> null);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import io.appform.dropwizard.sharding.exceptions.DeadlineExceededException;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DeadlineTest {
+
+    @Test
+    public void testNotSet() {
+        assertFalse(Deadline.isSet());
+        assertEquals(Long.MAX_VALUE, Deadline.remainingNanos());
+        Deadline.check();
+    }
+
+    @Test
+    public void testNestedDeadlinesOnlyShorten() {
+        try (Deadline.Scope outer = Deadline.within(1, TimeUnit.SECONDS)) {
+            try (Deadline.Scope inner = Deadline.within(1, TimeUnit.HOURS)) {
+                assertTrue(Deadline.remainingNanos() <= TimeUnit.SECONDS.toNanos(1));
+            }
+            try (Deadline.Scope inner = Deadline.within(10, TimeUnit.MILLISECONDS)) {
+                assertTrue(Deadline.remainingNanos() <= TimeUnit.MILLISECONDS.toNanos(10));
+            }
+            assertTrue(Deadline.remainingNanos() > TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertFalse(Deadline.isSet());
+    }
+
+    @Test
+    public void testRemainingSeconds() {
+        try (Deadline.Scope deadline = Deadline.within(1500, TimeUnit.MILLISECONDS)) {
+            assertEquals(2, Deadline.remainingSeconds());
+        }
+        try (Deadline.Scope deadline = Deadline.within(0, TimeUnit.MILLISECONDS)) {
+            assertEquals(1, Deadline.remainingSeconds());
+        }
+    }
+
+    @Test(expected = DeadlineExceededException.class)
+    public void testPassedDeadline() throws Exception {
+        Deadline.execute(0, TimeUnit.MILLISECONDS, () -> {
+            Deadline.check();
+            return null;
+        });
+    }
+
+    @Test
+    public void testPropagated() throws Exception {
+        final Callable<Boolean> call;
+        try (Deadline.Scope deadline = Deadline.within(1, TimeUnit.MINUTES)) {
+            call = Deadline.propagate(Deadline::isSet);
+        }
+        assertTrue(call.call());
+        assertFalse(Deadline.isSet());
+    }
+}
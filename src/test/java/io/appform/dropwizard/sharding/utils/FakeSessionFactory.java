@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.resource.transaction.spi.TransactionStatus;
+
+import java.lang.reflect.Proxy;
+import java.util.function.Function;
+
+/**
+ * Session factory handing out sessions that do nothing, for testing {@link TransactionHandler} without a database.
+ */
+final class FakeSessionFactory {
+    private FakeSessionFactory() {}
+
+    /**
+     * @param failOpen Fail opening sessions with an {@link IllegalStateException}
+     */
+    static SessionFactory create(boolean failOpen) {
+        final SessionFactory[] sessionFactory = new SessionFactory[1];
+        final Transaction transaction = proxy(Transaction.class, method -> {
+            if (method.equals("getStatus")) {
+                return TransactionStatus.ACTIVE;
+            }
+            return null;
+        });
+        final Session session = proxy(Session.class, method -> {
+            switch (method) {
+                case "getSessionFactory":
+                    return sessionFactory[0];
+                case "getTransaction":
+                case "beginTransaction":
+                    return transaction;
+                default:
+                    return null;
+            }
+        });
+        sessionFactory[0] = proxy(SessionFactory.class, method -> {
+            if (method.equals("openSession")) {
+                if (failOpen) {
+                    throw new IllegalStateException("No database here");
+                }
+                return session;
+            }
+            return null;
+        });
+        return sessionFactory[0];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Function<String, Object> handler) {
+        return (T) Proxy.newProxyInstance(FakeSessionFactory.class.getClassLoader(),
+                                          new Class[]{type},
+                                          (proxy, method, args) -> {
+                                              switch (method.getName()) {
+                                                  case "hashCode":
+                                                      return System.identityHashCode(proxy);
+                                                  case "equals":
+                                                      return proxy == args[0];
+                                                  default:
+                                                      return handler.apply(method.getName());
+                                              }
+                                          });
+    }
+}
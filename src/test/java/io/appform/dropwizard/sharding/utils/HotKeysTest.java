@@ -0,0 +1,117 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import io.appform.dropwizard.sharding.sharding.BalancedShardManager;
+import io.appform.dropwizard.sharding.sharding.ShardManager;
+import io.appform.dropwizard.sharding.sharding.impl.ConsistentHashBucketIdExtractor;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HotKeysTest {
+
+    @Test
+    public void testHotKeyFound() {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final ShardManager shardManager = new BalancedShardManager(4);
+        final HotKeys hotKeys = new HotKeys(4, shardManager.numBuckets(), 1.0, 8, 1, TimeUnit.HOURS,
+                                            metricRegistry, "test");
+        final ShardCalculator<String> shardCalculator = new ShardCalculator<>(
+                shardManager, new ConsistentHashBucketIdExtractor<>(shardManager), hotKeys);
+        for (int i = 0; i < 10_000; i++) {
+            shardCalculator.shardId(0 == i % 4 ? "hot" : UUID.randomUUID().toString());
+        }
+        final int hotShard = shardCalculator.shardId("hot");
+        final List<HotKeys.HotKey> topKeys = hotKeys.topKeys(hotShard);
+        assertEquals(8, topKeys.size());
+        assertEquals("hot", topKeys.get(0).getKey());
+        assertTrue(topKeys.get(0).getCount() >= 2500);
+
+        final int hotBucket = new ConsistentHashBucketIdExtractor<String>(shardManager).bucketId("hot");
+        assertEquals(Integer.toString(hotBucket), hotKeys.topBuckets(hotShard).get(0).getKey());
+
+        final Gauge<?> keyShare = metricRegistry.getGauges()
+                .get(MetricRegistry.name(HotKeys.class, "test", "shard" + hotShard, "hottestKeyShare"));
+        assertTrue((Double) keyShare.getValue() > 0.5);
+    }
+
+    @Test
+    public void testAsyncCallCountedOnce() throws Exception {
+        final ShardManager shardManager = new BalancedShardManager(2);
+        final HotKeys hotKeys = new HotKeys(2, shardManager.numBuckets(), 1.0, 8, 1, TimeUnit.HOURS,
+                                            new MetricRegistry(), "test");
+        final ShardCalculator<String> shardCalculator = new ShardCalculator<>(
+                shardManager, new ConsistentHashBucketIdExtractor<>(shardManager), hotKeys);
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            final ShardExecutors shardExecutors = new ShardExecutors(
+                    Arrays.asList(FakeSessionFactory.create(false), FakeSessionFactory.create(false)),
+                    Arrays.asList(executorService, executorService),
+                    executorService);
+            //The call stands in for a dao, which routes the key itself
+            final int shardId = shardExecutors.onShard(shardCalculator, "key", () -> shardCalculator.shardId("key"))
+                    .get();
+            assertEquals(1, hotKeys.topKeys(shardId).get(0).getCount());
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDecay() throws Exception {
+        final HotKeys hotKeys = new HotKeys(1, 16, 1.0, 4, 50, TimeUnit.MILLISECONDS, new MetricRegistry(), "test");
+        for (int i = 0; i < 100; i++) {
+            hotKeys.record("old", 1, 0);
+        }
+        Thread.sleep(60);
+        hotKeys.record("new", 2, 0);
+        assertEquals(50, hotKeys.topKeys(0).get(0).getCount());
+        assertEquals(50, hotKeys.topBuckets(0).get(0).getCount());
+    }
+
+    @Test
+    public void testSketchBounded() {
+        final HotKeys hotKeys = new HotKeys(1, 16, 1.0, 4, 1, TimeUnit.HOURS, new MetricRegistry(), "test");
+        for (int i = 0; i < 1000; i++) {
+            hotKeys.record("key" + i, i % 16, 0);
+        }
+        assertEquals(4, hotKeys.topKeys(0).size());
+        assertEquals(4, hotKeys.topBuckets(0).size());
+    }
+
+    @Test
+    public void testDisabled() {
+        final HotKeys hotKeys = HotKeys.disabled();
+        assertFalse(hotKeys.isEnabled());
+        hotKeys.record("key", 1, 0);
+        assertEquals(0, hotKeys.numShards());
+    }
+}
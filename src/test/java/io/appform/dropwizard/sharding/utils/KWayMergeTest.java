@@ -0,0 +1,101 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KWayMergeTest {
+
+    @Test
+    public void testMergeMatchesSort() {
+        final Random random = new Random(7);
+        final List<List<Integer>> sources = IntStream.range(0, 16)
+                .mapToObj(i -> random.ints(random.nextInt(100), 0, 1000)
+                        .sorted()
+                        .boxed()
+                        .collect(Collectors.toList()))
+                .collect(Collectors.toList());
+        final List<Integer> all = sources.stream()
+                .flatMap(List::stream)
+                .sorted()
+                .collect(Collectors.toList());
+        for (int skip : new int[]{0, 1, 17, all.size() - 5, all.size() + 10}) {
+            final List<Integer> page = KWayMerge.merge(iterators(sources), Comparator.naturalOrder(), skip, 20);
+            assertEquals(all.subList(Math.min(skip, all.size()), Math.min(skip + 20, all.size())), page);
+        }
+    }
+
+    @Test
+    public void testDescendingAndEmptySources() {
+        final List<List<Integer>> sources = Arrays.asList(Arrays.asList(9, 4, 1),
+                                                          Collections.emptyList(),
+                                                          Arrays.asList(8, 7, 2),
+                                                          Collections.emptyList());
+        assertEquals(Arrays.asList(9, 8, 7, 4, 2, 1),
+                     KWayMerge.merge(iterators(sources), Comparator.reverseOrder(), 0, 100));
+        assertTrue(KWayMerge.merge(iterators(sources), Comparator.reverseOrder(), 0, 0).isEmpty());
+        assertTrue(KWayMerge.merge(Collections.<Iterator<Integer>>emptyList(),
+                                   Comparator.<Integer>naturalOrder(), 0, 10).isEmpty());
+    }
+
+    @Test
+    public void testStopsReadingOncePageIsFull() {
+        final AtomicInteger reads = new AtomicInteger();
+        final List<Iterator<Integer>> sources = IntStream.range(0, 4)
+                .mapToObj(i -> new Iterator<Integer>() {
+                    private int next = i;
+
+                    @Override
+                    public boolean hasNext() {
+                        return true;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        reads.incrementAndGet();
+                        final int value = next;
+                        next += 4;
+                        return value;
+                    }
+                })
+                .collect(Collectors.toList());
+        assertEquals(IntStream.range(10, 20).boxed().collect(Collectors.toList()),
+                     KWayMerge.merge(sources, Comparator.naturalOrder(), 10, 10));
+        assertTrue(reads.get() <= 20 + sources.size());
+    }
+
+    private static List<Iterator<Integer>> iterators(List<List<Integer>> sources) {
+        final List<Iterator<Integer>> iterators = new ArrayList<>();
+        sources.forEach(source -> iterators.add(source.iterator()));
+        return iterators;
+    }
+}
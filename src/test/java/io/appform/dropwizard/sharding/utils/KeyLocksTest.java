@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KeyLocksTest {
+
+    @Test
+    public void testDisabled() {
+        final KeyLocks keyLocks = KeyLocks.disabled();
+        assertFalse(keyLocks.isEnabled());
+        try (KeyLocks.Held first = keyLocks.acquire("key");
+             KeyLocks.Held second = keyLocks.acquire("key")) {
+            //Nothing to do, just should not block
+        }
+    }
+
+    @Test
+    public void testSameKeyQueued() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final KeyLocks keyLocks = new KeyLocks(16, 10, TimeUnit.SECONDS, metricRegistry, "test");
+        final ExecutorService executorService = Executors.newFixedThreadPool(8);
+        final AtomicInteger inside = new AtomicInteger();
+        final AtomicInteger maxInside = new AtomicInteger();
+        try {
+            final Future<?>[] futures = new Future<?>[8];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executorService.submit(() -> {
+                    try (KeyLocks.Held lock = keyLocks.acquire("hot")) {
+                        maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                        Thread.sleep(5);
+                        inside.decrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+        assertEquals(1, maxInside.get());
+        assertEquals(8, metricRegistry.timer(MetricRegistry.name(KeyLocks.class, "test", "wait")).getCount());
+        assertEquals(0, metricRegistry.meter(MetricRegistry.name(KeyLocks.class, "test", "waitTimeouts")).getCount());
+    }
+
+    @Test
+    public void testWaitTimesOut() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final KeyLocks keyLocks = new KeyLocks(16, 10, TimeUnit.MILLISECONDS, metricRegistry, "test");
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread holder = new Thread(() -> {
+            try (KeyLocks.Held lock = keyLocks.acquire("hot")) {
+                locked.countDown();
+                release.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        holder.start();
+        try {
+            assertTrue(locked.await(5, TimeUnit.SECONDS));
+            //Falls through without the lock instead of blocking
+            try (KeyLocks.Held lock = keyLocks.acquire("hot")) {
+                assertEquals(1,
+                             metricRegistry.meter(MetricRegistry.name(KeyLocks.class, "test", "waitTimeouts"))
+                                     .getCount());
+            }
+        }
+        finally {
+            release.countDown();
+            holder.join();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import io.appform.dropwizard.sharding.exceptions.DaoFwdException;
+import io.appform.dropwizard.sharding.exceptions.DeadlineExceededException;
+import lombok.SneakyThrows;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Restrictions;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class ScatterGatherExecutorTest {
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(8);
+
+    @After
+    public void after() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testResultsInTargetOrder() {
+        final ScatterGatherExecutor executor = new ScatterGatherExecutor(executorService, 4, 5, TimeUnit.SECONDS);
+        final List<Integer> shards = IntStream.range(0, 16).boxed().collect(Collectors.toList());
+        final List<Integer> results = executor.scatter(shards, shard -> {
+            sleep(16 - shard);
+            return shard * 2;
+        });
+        assertEquals(shards.stream().map(shard -> shard * 2).collect(Collectors.toList()), results);
+    }
+
+    @Test
+    public void testParallelismBounded() {
+        final ScatterGatherExecutor executor = new ScatterGatherExecutor(executorService, 3, 5, TimeUnit.SECONDS);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        executor.scatter(IntStream.range(0, 32).boxed().collect(Collectors.toList()), shard -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            sleep(5);
+            inFlight.decrementAndGet();
+            return shard;
+        });
+        assertTrue(maxInFlight.get() <= 3);
+        assertTrue(maxInFlight.get() > 1);
+    }
+
+    @Test
+    public void testLatencyIsSlowestShard() {
+        final ScatterGatherExecutor executor = new ScatterGatherExecutor(executorService, 8, 5, TimeUnit.SECONDS);
+        final long start = System.currentTimeMillis();
+        executor.scatter(IntStream.range(0, 8).boxed().collect(Collectors.toList()), shard -> {
+            sleep(200);
+            return shard;
+        });
+        assertTrue(System.currentTimeMillis() - start < 8 * 200);
+    }
+
+    @Test
+    public void testTimeout() {
+        final ScatterGatherExecutor executor = new ScatterGatherExecutor(executorService, 8, 100, TimeUnit.MILLISECONDS);
+        try {
+            executor.scatter(IntStream.range(0, 4).boxed().collect(Collectors.toList()), shard -> {
+                sleep(shard == 3 ? 5_000 : 1);
+                return shard;
+            });
+            fail("Should have timed out");
+        }
+        catch (DaoFwdException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+    }
+
+    @Test
+    public void testDeadline() throws Exception {
+        final ScatterGatherExecutor executor = new ScatterGatherExecutor(executorService, 8, 5, TimeUnit.SECONDS);
+        final long start = System.currentTimeMillis();
+        try (Deadline.Scope deadline = Deadline.within(100, TimeUnit.MILLISECONDS)) {
+            executor.scatter(IntStream.range(0, 4).boxed().collect(Collectors.toList()), shard -> {
+                //Shard calls see the caller's deadline
+                assertTrue(Deadline.isSet());
+                sleep(shard == 3 ? 5_000 : 1);
+                return shard;
+            });
+            fail("Should have hit the deadline");
+        }
+        catch (DeadlineExceededException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertTrue(System.currentTimeMillis() - start < 2_000);
+        assertFalse(Deadline.isSet());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testShardFailurePropagated() {
+        final ScatterGatherExecutor executor = new ScatterGatherExecutor(executorService, 8, 5, TimeUnit.SECONDS);
+        executor.scatter(IntStream.range(0, 4).boxed().collect(Collectors.toList()), shard -> {
+            if (shard == 2) {
+                throw new IllegalStateException("Shard down");
+            }
+            return shard;
+        });
+    }
+
+    @Test
+    public void testSerial() {
+        final String caller = Thread.currentThread().getName();
+        final List<String> threads = ScatterGatherExecutor.serial()
+                .scatter(IntStream.range(0, 4).boxed().collect(Collectors.toList()),
+                         shard -> Thread.currentThread().getName());
+        assertTrue(threads.stream().allMatch(caller::equals));
+    }
+
+    @Test
+    public void testCriteriaCopiedForParallelShards() {
+        final DetachedCriteria criteria = DetachedCriteria.forClass(Object.class)
+                .add(Restrictions.eq("key", "value"));
+        assertSame(criteria, ScatterGatherExecutor.serial().criteriaForShard(criteria));
+        final DetachedCriteria copy = new ScatterGatherExecutor(executorService, 4, 5, TimeUnit.SECONDS)
+                .criteriaForShard(criteria);
+        assertNotSame(criteria, copy);
+        assertEquals(criteria.toString(), copy.toString());
+    }
+
+    @SneakyThrows
+    private static void sleep(long millis) {
+        Thread.sleep(millis);
+    }
+}
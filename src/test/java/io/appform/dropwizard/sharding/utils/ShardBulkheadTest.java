@@ -0,0 +1,135 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import com.codahale.metrics.MetricRegistry;
+import io.appform.dropwizard.sharding.exceptions.ShardSaturatedException;
+import org.hibernate.SessionFactory;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ShardBulkheadTest {
+
+    @Test
+    public void testRejectsWhenSaturated() {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final ShardBulkhead bulkhead = new ShardBulkhead(3, 2, 1, TimeUnit.MILLISECONDS, metricRegistry, "test");
+        bulkhead.acquire();
+        bulkhead.acquire();
+        assertEquals(2, bulkhead.inFlight());
+        try {
+            bulkhead.acquire();
+            fail("Third call should have been rejected");
+        }
+        catch (ShardSaturatedException e) {
+            assertEquals("Shard 3 is saturated", e.getMessage());
+        }
+        assertEquals(1, bulkhead.rejected());
+        assertEquals(2, metricRegistry.getGauges()
+                .get(MetricRegistry.name(ShardBulkhead.class, "test", "shard3", "inFlight"))
+                .getValue());
+
+        bulkhead.release();
+        bulkhead.acquire();
+        assertEquals(2, bulkhead.inFlight());
+    }
+
+    @Test
+    public void testTransactionHandlerHoldsSlot() {
+        final AtomicInteger opened = new AtomicInteger();
+        final SessionFactory sessionFactory = (SessionFactory) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class[]{SessionFactory.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("openSession")) {
+                        opened.incrementAndGet();
+                        throw new IllegalStateException("No database here");
+                    }
+                    if (method.getName().equals("hashCode")) {
+                        return System.identityHashCode(proxy);
+                    }
+                    if (method.getName().equals("equals")) {
+                        return proxy == args[0];
+                    }
+                    return null;
+                });
+        final ShardBulkhead bulkhead = new ShardBulkhead(0, 1, 1, TimeUnit.MILLISECONDS, new MetricRegistry(), "test");
+        ShardBulkhead.register(sessionFactory, bulkhead);
+        try {
+            //Slot is given back when the session can't be opened
+            try {
+                new TransactionHandler(sessionFactory, false).beforeStart();
+                fail("Session factory should have failed");
+            }
+            catch (IllegalStateException e) {
+                assertEquals(0, bulkhead.inFlight());
+            }
+            assertEquals(1, opened.get());
+
+            //Saturated shards are rejected before a session is opened
+            bulkhead.acquire();
+            try {
+                new TransactionHandler(sessionFactory, false).beforeStart();
+                fail("Shard should have been saturated");
+            }
+            catch (ShardSaturatedException e) {
+                assertEquals(1, opened.get());
+                assertEquals(1, bulkhead.rejected());
+            }
+        }
+        finally {
+            ShardBulkhead.unregister(sessionFactory);
+        }
+    }
+
+    @Test
+    public void testSlotReleasedOnError() {
+        final SessionFactory sessionFactory = FakeSessionFactory.create(false);
+        final ShardBulkhead bulkhead = new ShardBulkhead(0, 1, 1, TimeUnit.MILLISECONDS, new MetricRegistry(), "test");
+        ShardBulkhead.register(sessionFactory, bulkhead);
+        try {
+            try {
+                Transactions.execute(sessionFactory, session -> {
+                    throw new AssertionError("Broken");
+                });
+                fail("Error should have been thrown");
+            }
+            catch (AssertionError e) {
+                assertEquals(0, bulkhead.inFlight());
+            }
+            try {
+                Transactions.execute(sessionFactory, true, key -> {
+                    throw new StackOverflowError();
+                }, "key", t -> t);
+                fail("Error should have been thrown");
+            }
+            catch (StackOverflowError e) {
+                assertEquals(0, bulkhead.inFlight());
+            }
+        }
+        finally {
+            ShardBulkhead.unregister(sessionFactory);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import com.codahale.metrics.MetricRegistry;
+import io.appform.dropwizard.sharding.config.BlacklistConfig;
+import io.appform.dropwizard.sharding.exceptions.ShardBlacklistedException;
+import io.appform.dropwizard.sharding.exceptions.ShardSaturatedException;
+import io.appform.dropwizard.sharding.sharding.BalancedShardManager;
+import io.appform.dropwizard.sharding.sharding.ShardManager;
+import io.dropwizard.util.Duration;
+import org.hibernate.QueryTimeoutException;
+import org.hibernate.SessionFactory;
+import org.hibernate.TransactionException;
+import org.hibernate.exception.GenericJDBCException;
+import org.hibernate.exception.LockAcquisitionException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ShardCircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private ShardManager shardManager;
+    private ShardCircuitBreaker breaker;
+
+    @Before
+    public void setup() {
+        shardManager = new BalancedShardManager(4);
+        breaker = new ShardCircuitBreaker(2, shardManager, BlacklistConfig.builder()
+                .autoBlacklist(true)
+                .errorRateThreshold(0.5)
+                .latencyThreshold(Duration.milliseconds(100))
+                .minCalls(10)
+                .evaluationWindow(Duration.seconds(10))
+                .openDuration(Duration.seconds(30))
+                .probeCalls(2)
+                .build(), now::get);
+    }
+
+    @Test
+    public void testTripsOnErrorRate() {
+        for (int i = 0; i < 5; i++) {
+            breaker.allowCall();
+            breaker.record(millis(1), false);
+        }
+        //Not enough calls yet
+        for (int i = 0; i < 4; i++) {
+            breaker.allowCall();
+            breaker.record(millis(1), true);
+        }
+        assertEquals(ShardCircuitBreaker.State.CLOSED, breaker.state());
+        breaker.allowCall();
+        breaker.record(millis(1), true);
+        assertEquals(ShardCircuitBreaker.State.OPEN, breaker.state());
+        assertTrue(shardManager.isBlacklisted(2));
+        assertRejected();
+    }
+
+    @Test
+    public void testTripsOnLatency() {
+        for (int i = 0; i < 20; i++) {
+            breaker.allowCall();
+            breaker.record(millis(500), false);
+        }
+        assertEquals(ShardCircuitBreaker.State.CLOSED, breaker.state());
+        //Latency is evaluated once the window ends
+        now.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        breaker.record(millis(1), false);
+        assertEquals(ShardCircuitBreaker.State.OPEN, breaker.state());
+        assertTrue(shardManager.isBlacklisted(2));
+    }
+
+    @Test
+    public void testRecoversAfterProbes() {
+        trip();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        breaker.allowCall();
+        assertEquals(ShardCircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertFalse(shardManager.isBlacklisted(2));
+        breaker.allowCall();
+        //Only as many calls as probes are let through
+        assertRejected();
+        breaker.record(millis(1), false);
+        breaker.record(millis(1), false);
+        assertEquals(ShardCircuitBreaker.State.CLOSED, breaker.state());
+        breaker.allowCall();
+    }
+
+    @Test
+    public void testFailedProbeTripsAgain() {
+        trip();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        breaker.allowCall();
+        breaker.record(millis(1), true);
+        assertEquals(ShardCircuitBreaker.State.OPEN, breaker.state());
+        assertTrue(shardManager.isBlacklisted(2));
+        assertRejected();
+    }
+
+    @Test
+    public void testShardFailures() {
+        assertTrue(ShardCircuitBreaker.isShardFailure(
+                new RuntimeException(new GenericJDBCException("Broken", new SQLException("Broken")))));
+        assertTrue(ShardCircuitBreaker.isShardFailure(new SQLException("Broken")));
+        assertFalse(ShardCircuitBreaker.isShardFailure(
+                new LockAcquisitionException("Locked", new SQLException("Locked"))));
+        assertFalse(ShardCircuitBreaker.isShardFailure(new IllegalArgumentException("Bad input")));
+    }
+
+    @Test
+    public void testTimeoutsAreNotShardFailures() throws Exception {
+        assertFalse(ShardCircuitBreaker.isShardFailure(
+                new QueryTimeoutException("Timed out", new SQLTimeoutException("Timed out"), "select 1")));
+        assertFalse(ShardCircuitBreaker.isShardFailure(
+                new javax.persistence.QueryTimeoutException("Timed out")));
+        assertFalse(ShardCircuitBreaker.isShardFailure(new TransactionException("transaction timeout expired")));
+        assertTrue(ShardCircuitBreaker.isShardFailure(new TransactionException("commit failed")));
+        try (Deadline.Scope ignored = Deadline.within(1, TimeUnit.MILLISECONDS)) {
+            Thread.sleep(5);
+            assertFalse(ShardCircuitBreaker.isShardFailure(new SQLException("Connection reset")));
+        }
+    }
+
+    @Test
+    public void testSaturatedShardKeepsProbes() {
+        final SessionFactory sessionFactory = FakeSessionFactory.create(false);
+        final ShardBulkhead bulkhead = new ShardBulkhead(2, 1, 1, TimeUnit.MILLISECONDS, new MetricRegistry(), "test");
+        ShardBulkhead.register(sessionFactory, bulkhead);
+        ShardCircuitBreaker.register(sessionFactory, breaker);
+        try {
+            trip();
+            now.addAndGet(TimeUnit.SECONDS.toNanos(31));
+            bulkhead.acquire();
+            for (int i = 0; i < 3; i++) {
+                try {
+                    new TransactionHandler(sessionFactory, true).beforeStart();
+                    fail("Call should have been rejected by the bulkhead");
+                }
+                catch (ShardSaturatedException e) {
+                    assertEquals(ShardCircuitBreaker.State.OPEN, breaker.state());
+                }
+            }
+            bulkhead.release();
+            for (int i = 0; i < 2; i++) {
+                final TransactionHandler handler = new TransactionHandler(sessionFactory, true);
+                handler.beforeStart();
+                handler.afterEnd();
+            }
+            assertEquals(ShardCircuitBreaker.State.CLOSED, breaker.state());
+            assertEquals(0, bulkhead.inFlight());
+        }
+        finally {
+            ShardCircuitBreaker.unregister(sessionFactory);
+            ShardBulkhead.unregister(sessionFactory);
+        }
+    }
+
+    private void trip() {
+        for (int i = 0; i < 10; i++) {
+            breaker.allowCall();
+            breaker.record(millis(1), true);
+        }
+        assertEquals(ShardCircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    private void assertRejected() {
+        try {
+            breaker.allowCall();
+            fail("Call should have been rejected");
+        }
+        catch (ShardBlacklistedException e) {
+            assertEquals("Shard 2 is blacklisted", e.getMessage());
+        }
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
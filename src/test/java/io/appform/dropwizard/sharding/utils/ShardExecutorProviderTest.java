@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ShardExecutorProviderTest {
+
+    @Test
+    public void testPlatformThreadsBounded() throws Exception {
+        testBounded(ShardExecutorProvider.platformThreads());
+    }
+
+    @Test
+    public void testDefaultProviderBounded() throws Exception {
+        testBounded(ShardExecutorProvider.defaultProvider());
+    }
+
+    @Test
+    public void testDefaultProviderFallsBack() {
+        if (VirtualThreadExecutorProvider.isSupported()) {
+            assertTrue(ShardExecutorProvider.defaultProvider() instanceof VirtualThreadExecutorProvider);
+        }
+        else {
+            assertTrue(ShardExecutorProvider.defaultProvider() instanceof PlatformThreadExecutorProvider);
+            try {
+                ShardExecutorProvider.virtualThreads();
+                fail("Virtual threads should not be available");
+            }
+            catch (UnsupportedOperationException e) {
+                //Expected
+            }
+        }
+    }
+
+    private static void testBounded(ShardExecutorProvider provider) throws Exception {
+        final ExecutorService executorService = provider.create("test", 3);
+        try {
+            final AtomicInteger inFlight = new AtomicInteger();
+            final AtomicInteger maxInFlight = new AtomicInteger();
+            final List<Future<Integer>> futures = IntStream.range(0, 30)
+                    .mapToObj(i -> executorService.submit(() -> {
+                        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                        Thread.sleep(5);
+                        inFlight.decrementAndGet();
+                        return i;
+                    }))
+                    .collect(Collectors.toList());
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals(i, (int) futures.get(i).get(5, TimeUnit.SECONDS));
+            }
+            assertTrue(maxInFlight.get() <= 3);
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import io.appform.dropwizard.sharding.replicas.ReplicaRouting;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ShardScopeTest {
+
+    @After
+    public void tearDown() {
+        ReplicaRouting.setReadOnly(false);
+    }
+
+    @Test
+    public void testRoutingRestoredOnCommit() throws Exception {
+        final SessionFactory first = FakeSessionFactory.create(false);
+        final SessionFactory second = FakeSessionFactory.create(false);
+        ReplicaRouting.setReadOnly(true);
+        ShardScope.execute(() -> {
+            ShardScope.current().join(first);
+            ShardScope.current().join(second);
+            assertFalse(ReplicaRouting.isReadOnly());
+            return null;
+        });
+        assertTrue(ReplicaRouting.isReadOnly());
+    }
+
+    @Test
+    public void testRoutingRestoredOnRollback() throws Exception {
+        final SessionFactory first = FakeSessionFactory.create(false);
+        final SessionFactory second = FakeSessionFactory.create(false);
+        ReplicaRouting.setReadOnly(true);
+        try {
+            ShardScope.execute(() -> {
+                ShardScope.current().join(first);
+                ShardScope.current().join(second);
+                throw new IllegalStateException("Broken");
+            });
+            fail("Work should have failed");
+        }
+        catch (IllegalStateException e) {
+            assertTrue(ReplicaRouting.isReadOnly());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SlowOperationLogTest {
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+    @Test
+    public void testThreshold() {
+        final SlowOperationLog slowOperationLog = new SlowOperationLog(100, TimeUnit.MILLISECONDS, 1.0, 10);
+        assertFalse(slowOperationLog.record("test", "Entity", "select", 0,
+                                            TimeUnit.MILLISECONDS.toNanos(99), "key", "criteria"));
+        assertTrue(slowOperationLog.record("test", "Entity", "select", 0, SLOW, "key", "criteria"));
+        assertTrue(slowOperationLog.record("test", "Entity", "scatterGather", DaoMetrics.ALL_SHARDS, SLOW, null, null));
+    }
+
+    @Test
+    public void testRateLimited() throws Exception {
+        final SlowOperationLog slowOperationLog = new SlowOperationLog(100, TimeUnit.MILLISECONDS, 1.0, 3);
+        int logged = 0;
+        for (int i = 0; i < 100; i++) {
+            logged += slowOperationLog.record("test", "Entity", "select", 0, SLOW, "key", null) ? 1 : 0;
+        }
+        assertEquals(3, logged);
+        Thread.sleep(1100);
+        assertTrue(slowOperationLog.record("test", "Entity", "select", 0, SLOW, "key", null));
+    }
+
+    @Test
+    public void testSampled() {
+        final SlowOperationLog none = new SlowOperationLog(100, TimeUnit.MILLISECONDS, 0.0, 1000);
+        final SlowOperationLog half = new SlowOperationLog(100, TimeUnit.MILLISECONDS, 0.5, 1000);
+        int logged = 0;
+        for (int i = 0; i < 500; i++) {
+            assertFalse(none.record("test", "Entity", "select", 0, SLOW, "key", null));
+            logged += half.record("test", "Entity", "select", 0, SLOW, "key", null) ? 1 : 0;
+        }
+        assertTrue(logged > 150 && logged < 350);
+    }
+
+    @Test
+    public void testDisabled() {
+        assertFalse(SlowOperationLog.disabled().isSlow(TimeUnit.HOURS.toNanos(1)));
+    }
+}
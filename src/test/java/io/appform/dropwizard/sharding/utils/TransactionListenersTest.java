@@ -0,0 +1,186 @@
+/*
+ * Copyright 2019 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import org.hibernate.SessionFactory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TransactionListenersTest {
+
+    private static final class RecordingListener implements TransactionListener {
+        private final List<TransactionEvent> started = new ArrayList<>();
+        private final List<TransactionEvent> ended = new ArrayList<>();
+        private volatile boolean enabled = true;
+
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public void afterStart(TransactionEvent event) {
+            started.add(event);
+        }
+
+        @Override
+        public void afterEnd(TransactionEvent event) {
+            ended.add(event);
+        }
+    }
+
+    @Test
+    public void testCommit() {
+        final SessionFactory sessionFactory = FakeSessionFactory.create(false);
+        final RecordingListener listener = register(sessionFactory, 3);
+        try {
+            final TransactionHandler handler = new TransactionHandler(sessionFactory, true);
+            handler.beforeStart();
+            assertEquals(1, listener.started.size());
+            assertTrue(listener.ended.isEmpty());
+            final TransactionEvent event = listener.started.get(0);
+            assertEquals(TransactionEvent.Outcome.RUNNING, event.getOutcome());
+            handler.afterEnd();
+
+            assertEquals(1, listener.ended.size());
+            assertSame(event, listener.ended.get(0));
+            assertEquals("test", event.getNamespace());
+            assertEquals(3, event.getShardId());
+            assertTrue(event.isReadOnly());
+            assertEquals(TransactionEvent.Outcome.COMMITTED, event.getOutcome());
+            assertTrue(event.getSessionOpenNanos() >= 0);
+            assertTrue(event.getDurationNanos() >= 0);
+            assertNull(event.getError());
+        }
+        finally {
+            TransactionListeners.unregister(sessionFactory);
+        }
+    }
+
+    @Test
+    public void testRollback() {
+        final SessionFactory sessionFactory = FakeSessionFactory.create(false);
+        final RecordingListener listener = register(sessionFactory, 0);
+        try {
+            final TransactionHandler handler = new TransactionHandler(sessionFactory, false);
+            handler.beforeStart();
+            final IllegalStateException error = new IllegalStateException("Failed");
+            handler.onError(error);
+
+            final TransactionEvent event = listener.ended.get(0);
+            assertFalse(event.isReadOnly());
+            assertEquals(TransactionEvent.Outcome.ROLLED_BACK, event.getOutcome());
+            assertSame(error, event.getError());
+        }
+        finally {
+            TransactionListeners.unregister(sessionFactory);
+        }
+    }
+
+    @Test
+    public void testFailedToStart() {
+        final SessionFactory sessionFactory = FakeSessionFactory.create(true);
+        final RecordingListener listener = register(sessionFactory, 0);
+        try {
+            final TransactionHandler handler = new TransactionHandler(sessionFactory, true);
+            try {
+                handler.beforeStart();
+                fail("Session should not have opened");
+            }
+            catch (IllegalStateException e) {
+                //Expected
+            }
+            assertTrue(listener.started.isEmpty());
+            assertEquals(1, listener.ended.size());
+            assertEquals(TransactionEvent.Outcome.FAILED_TO_START, listener.ended.get(0).getOutcome());
+            assertEquals(0, listener.ended.get(0).getDurationNanos());
+        }
+        finally {
+            TransactionListeners.unregister(sessionFactory);
+        }
+    }
+
+    @Test
+    public void testFailingListenerIgnored() {
+        final SessionFactory sessionFactory = FakeSessionFactory.create(false);
+        final RecordingListener listener = new RecordingListener();
+        final TransactionListener failing = new TransactionListener() {
+            @Override
+            public void afterStart(TransactionEvent event) {
+                throw new IllegalStateException("Broken listener");
+            }
+        };
+        final List<TransactionListener> listeners = new ArrayList<>();
+        listeners.add(failing);
+        listeners.add(listener);
+        TransactionListeners.register(sessionFactory, new TransactionListeners("test", 0, listeners));
+        try {
+            final TransactionHandler handler = new TransactionHandler(sessionFactory, true);
+            handler.beforeStart();
+            handler.afterEnd();
+            assertEquals(1, listener.started.size());
+            assertEquals(1, listener.ended.size());
+        }
+        finally {
+            TransactionListeners.unregister(sessionFactory);
+        }
+    }
+
+    @Test
+    public void testOnlyEnabledListenersCalled() {
+        final SessionFactory sessionFactory = FakeSessionFactory.create(false);
+        final RecordingListener enabled = new RecordingListener();
+        final RecordingListener disabled = new RecordingListener();
+        disabled.enabled = false;
+        TransactionListeners.register(sessionFactory,
+                                      new TransactionListeners("test", 0, Arrays.asList(enabled, disabled)));
+        try {
+            final TransactionHandler handler = new TransactionHandler(sessionFactory, true);
+            handler.beforeStart();
+            //Listeners toggled while the transaction runs keep the state they had when it started
+            disabled.enabled = true;
+            enabled.enabled = false;
+            handler.afterEnd();
+            assertEquals(1, enabled.started.size());
+            assertEquals(1, enabled.ended.size());
+            assertTrue(disabled.started.isEmpty());
+            assertTrue(disabled.ended.isEmpty());
+        }
+        finally {
+            TransactionListeners.unregister(sessionFactory);
+        }
+    }
+
+    private static RecordingListener register(SessionFactory sessionFactory, int shardId) {
+        final RecordingListener listener = new RecordingListener();
+        TransactionListeners.register(sessionFactory,
+                                      new TransactionListeners("test", shardId, Collections.singletonList(listener)));
+        return listener;
+    }
+}